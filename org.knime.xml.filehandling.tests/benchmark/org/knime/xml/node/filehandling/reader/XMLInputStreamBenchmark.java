@@ -0,0 +1,172 @@
+/*
+ * ------------------------------------------------------------------------
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.filehandling.reader;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.knime.filehandling.core.util.CompressionAwareCountingInputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares reading a generated local XML file of <code>sizeMB</code> megabytes through the
+ * {@link CompressionAwareCountingInputStream}, which is used for all files by default, and through the
+ * {@link MappedFileInputStream} used for local uncompressed files if enabled by {@link XMLRead#MAP_FILES_PROPERTY}.
+ * Every stream is read once as raw bytes and once tokenized by a StAX parser. Files larger than 2 GB exercise the
+ * remapping of the windows. Place the temporary directory (<code>java.io.tmpdir</code>) on the disk to measure, e.g.
+ * an NVMe drive.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class XMLInputStreamBenchmark {
+
+    /** The size of the file. */
+    @Param({"256", "3072"})
+    public int sizeMB;
+
+    /** The stream reading the file. */
+    @Param({"STREAM", "MAPPED"})
+    public String input;
+
+    private Path m_file;
+
+    /**
+     * Generates the file.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        m_file = Files.createTempFile("xml-input-benchmark", ".xml");
+        final long size = sizeMB * (1L << 20);
+        try (BufferedWriter w = Files.newBufferedWriter(m_file, StandardCharsets.UTF_8)) {
+            w.write("<root>");
+            long written = 6;
+            for (long r = 0; written < size; r++) {
+                final String record = "<record id=\"" + r + "\"><value>" + (r * 0.25) + "</value></record>\n";
+                w.write(record);
+                written += record.length();
+            }
+            w.write("</root>");
+        }
+    }
+
+    /**
+     * Deletes the file.
+     *
+     * @throws IOException if the file cannot be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.delete(m_file);
+    }
+
+    private InputStream open() throws IOException {
+        return "MAPPED".equals(input) ? new MappedFileInputStream(m_file)
+            : new CompressionAwareCountingInputStream(m_file);
+    }
+
+    /**
+     * @return the number of bytes read
+     * @throws IOException if the file cannot be read
+     */
+    @Benchmark
+    public long bytes() throws IOException {
+        final byte[] buffer = new byte[1 << 13];
+        long count = 0;
+        try (InputStream in = open()) {
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                count += n;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of parser events
+     * @throws IOException if the file cannot be read
+     * @throws XMLStreamException if the file cannot be parsed
+     */
+    @Benchmark
+    public long tokens() throws IOException, XMLStreamException {
+        long count = 0;
+        try (InputStream in = open()) {
+            final XMLStreamReader parser = XMLInputFactory.newInstance().createXMLStreamReader(in);
+            while (parser.hasNext()) {
+                parser.next();
+                count++;
+            }
+            parser.close();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * ------------------------------------------------------------------------
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.filehandling.reader;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.knime.core.data.DataValue;
+import org.knime.filehandling.core.connections.DefaultFSConnectionFactory;
+import org.knime.filehandling.core.connections.FSConnection;
+import org.knime.filehandling.core.connections.FSPath;
+import org.knime.filehandling.core.node.table.reader.config.DefaultTableReadConfig;
+import org.knime.filehandling.core.node.table.reader.randomaccess.RandomAccessible;
+import org.knime.filehandling.core.node.table.reader.read.Read;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reads a generated folder of small XML files the way the XML Reader does, i.e. one file after the other through
+ * {@link PrefetchingXMLReader#read(FSPath, org.knime.filehandling.core.node.table.reader.config.TableReadConfig)},
+ * with and without the {@link XMLFilePrefetcher} parsing the files ahead on <code>parallelReads</code> threads.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class XMLReaderParallelBenchmark {
+
+    /** Number of files in the folder. */
+    @Param({"50000"})
+    public int files;
+
+    /** Number of files read in parallel, 1 reads them sequentially. */
+    @Param({"1", "2", "4", "8"})
+    public int parallelReads;
+
+    /** Whether every file is read as one cell or split by an XPath query. */
+    @Param({"false", "true"})
+    public boolean useXPath;
+
+    private FSConnection m_connection;
+
+    private Path m_folder;
+
+    private List<FSPath> m_paths;
+
+    private DefaultTableReadConfig<XMLReaderConfig> m_config;
+
+    /**
+     * Generates the folder.
+     *
+     * @throws IOException if a file cannot be written
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        m_folder = Files.createTempDirectory("xml-reader-benchmark");
+        m_connection = DefaultFSConnectionFactory.createLocalFSConnection();
+        m_paths = new ArrayList<>(files);
+        for (int f = 0; f < files; f++) {
+            final StringBuilder b = new StringBuilder("<root>");
+            for (int r = 0; r < 10; r++) {
+                b.append("<item id=\"").append(f * 10 + r).append("\"><value>").append(r * 0.25)
+                    .append("</value></item>");
+            }
+            b.append("</root>");
+            final Path file = m_folder.resolve(String.format("file%06d.xml", f));
+            Files.write(file, b.toString().getBytes(StandardCharsets.UTF_8));
+            m_paths.add(m_connection.getFileSystem().getPath(file.toString()));
+        }
+        final XMLReaderConfig xmlConfig = new XMLReaderConfig();
+        xmlConfig.setUseXPath(useXPath);
+        xmlConfig.setXPath("/root/item");
+        xmlConfig.setUseRootNamespace(false);
+        xmlConfig.setParallelReads(parallelReads);
+        m_config = new DefaultTableReadConfig<>(xmlConfig);
+    }
+
+    /**
+     * Deletes the folder.
+     *
+     * @throws IOException if a file cannot be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        m_connection.close();
+        try (Stream<Path> paths = Files.walk(m_folder)) {
+            for (Path p : (Iterable<Path>)paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    /**
+     * @return the number of rows read
+     * @throws Exception if a file cannot be read
+     */
+    @Benchmark
+    public long read() throws Exception {
+        final PrefetchingXMLReader reader = new PrefetchingXMLReader(new XMLReader());
+        if (parallelReads <= 1) {
+            return readAll(reader);
+        }
+        final long[] rows = new long[1];
+        reader.readWith(new XMLFilePrefetcher(m_paths, parallelReads), () -> rows[0] = readAll(reader));
+        return rows[0];
+    }
+
+    private long readAll(final PrefetchingXMLReader reader) throws IOException {
+        long rows = 0;
+        for (FSPath path : m_paths) {
+            try (Read<DataValue> read = reader.read(path, m_config)) {
+                for (RandomAccessible<DataValue> row = read.next(); row != null; row = read.next()) {
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.filehandling.reader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests the {@link MappedFileInputStream} with windows much smaller than the file, such that every operation crosses
+ * window boundaries.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class MappedFileInputStreamTest {
+
+    private static final int WINDOW = 16;
+
+    @TempDir
+    Path m_dir;
+
+    private Path m_file;
+
+    private byte[] m_content;
+
+    @BeforeEach
+    void createFile() throws IOException {
+        m_content = new byte[10 * WINDOW + 5];
+        for (int i = 0; i < m_content.length; i++) {
+            m_content[i] = (byte)(i * 7);
+        }
+        m_file = m_dir.resolve("content.bin");
+        Files.write(m_file, m_content);
+    }
+
+    private MappedFileInputStream open() throws IOException {
+        return new MappedFileInputStream(m_file, WINDOW);
+    }
+
+    @Test
+    void testReadSingleBytes() throws IOException {
+        try (MappedFileInputStream in = open()) {
+            for (int i = 0; i < m_content.length; i++) {
+                assertThat(in.getCount()).isEqualTo(i);
+                assertThat(in.read()).as("byte %d", i).isEqualTo(m_content[i] & 0xFF);
+            }
+            assertThat(in.read()).isEqualTo(-1);
+            assertThat(in.available()).isZero();
+        }
+    }
+
+    @Test
+    void testReadBlocks() throws IOException {
+        try (MappedFileInputStream in = open()) {
+            final byte[] read = new byte[m_content.length];
+            int length = 0;
+            for (int n = in.read(read, 0, 7); n >= 0; n = in.read(read, length, Math.min(7, read.length - length))) {
+                assertThat(n).isLessThanOrEqualTo(7);
+                length += n;
+                if (length == read.length) {
+                    break;
+                }
+            }
+            assertThat(length).isEqualTo(m_content.length);
+            assertThat(read).isEqualTo(m_content);
+            assertThat(in.read(new byte[4], 0, 4)).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    void testReadAll() throws IOException {
+        try (InputStream in = open()) {
+            assertThat(in.readAllBytes()).isEqualTo(m_content);
+        }
+    }
+
+    @Test
+    void testSkip() throws IOException {
+        try (MappedFileInputStream in = open()) {
+            assertThat(in.skip(WINDOW - 1)).isEqualTo(WINDOW - 1);
+            assertThat(in.read()).isEqualTo(m_content[WINDOW - 1] & 0xFF);
+            // exactly to the end of the current window
+            assertThat(in.skip(WINDOW)).isEqualTo(WINDOW);
+            assertThat(in.read()).isEqualTo(m_content[2 * WINDOW] & 0xFF);
+            assertThat(in.skip(3 * WINDOW + 3)).isEqualTo(3 * WINDOW + 3);
+            assertThat(in.getCount()).isEqualTo(5 * WINDOW + 4);
+            assertThat(in.read()).isEqualTo(m_content[5 * WINDOW + 4] & 0xFF);
+            assertThat(in.skip(0)).isZero();
+            assertThat(in.skip(-5)).isZero();
+            assertThat(in.skip(m_content.length)).isEqualTo(m_content.length - 5 * WINDOW - 5);
+            assertThat(in.read()).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    void testMarkAndReset() throws IOException {
+        try (MappedFileInputStream in = open()) {
+            in.skip(WINDOW - 2);
+            in.mark(0);
+            final byte[] first = new byte[3 * WINDOW];
+            assertThat(in.readNBytes(first, 0, first.length)).isEqualTo(first.length);
+            in.reset();
+            assertThat(in.getCount()).isEqualTo(WINDOW - 2);
+            final byte[] second = new byte[3 * WINDOW];
+            assertThat(in.readNBytes(second, 0, second.length)).isEqualTo(second.length);
+            assertThat(second).isEqualTo(first)
+                .isEqualTo(Arrays.copyOfRange(m_content, WINDOW - 2, 4 * WINDOW - 2));
+
+            // a mark at the end of a window
+            in.skip(2);
+            in.mark(0);
+            in.skip(5 * WINDOW);
+            in.reset();
+            assertThat(in.read()).isEqualTo(m_content[4 * WINDOW] & 0xFF);
+        }
+    }
+
+    @Test
+    void testStartsLikeXML() throws IOException {
+        Files.write(m_file, "<root/>".getBytes(StandardCharsets.UTF_8));
+        try (MappedFileInputStream in = open()) {
+            assertThat(in.startsLikeXML()).isTrue();
+        }
+        Files.write(m_file, new byte[]{(byte)0x1F, (byte)0x8B, 8, 0});
+        try (MappedFileInputStream in = open()) {
+            assertThat(in.startsLikeXML()).isFalse();
+        }
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.filehandling.reader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.knime.core.data.DataValue;
+import org.knime.core.data.def.StringCell;
+import org.knime.filehandling.core.connections.DefaultFSConnectionFactory;
+import org.knime.filehandling.core.connections.FSConnection;
+import org.knime.filehandling.core.connections.FSPath;
+import org.knime.filehandling.core.node.table.reader.config.DefaultTableReadConfig;
+import org.knime.filehandling.core.node.table.reader.config.TableReadConfig;
+import org.knime.filehandling.core.node.table.reader.randomaccess.RandomAccessible;
+import org.knime.filehandling.core.node.table.reader.randomaccess.RandomAccessibleUtils;
+import org.knime.filehandling.core.node.table.reader.read.Read;
+
+/**
+ * Tests the {@link XMLFilePrefetcher} with a reader creating two rows per file, named after the file.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class XMLFilePrefetcherTest {
+
+    private static final int FILE_SIZE = 40;
+
+    @TempDir
+    Path m_dir;
+
+    private FSConnection m_connection;
+
+    private final TableReadConfig<XMLReaderConfig> m_config = new DefaultTableReadConfig<>(new XMLReaderConfig());
+
+    @BeforeEach
+    void connect() {
+        m_connection = DefaultFSConnectionFactory.createLocalFSConnection();
+    }
+
+    @AfterEach
+    void disconnect() {
+        m_connection.close();
+    }
+
+    private List<FSPath> createFiles(final int count) throws IOException {
+        final List<FSPath> paths = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            paths.add(createFile("file" + i + ".xml", FILE_SIZE));
+        }
+        return paths;
+    }
+
+    private FSPath createFile(final String name, final int size) throws IOException {
+        final Path file = m_dir.resolve(name);
+        Files.write(file, new byte[size]);
+        return m_connection.getFileSystem().getPath(file.toString());
+    }
+
+    /**
+     * @return the rows a file is read as by {@link #read(FSPath)}
+     */
+    private static List<String> rows(final FSPath path) {
+        final String name = path.getFileName().toString();
+        return List.of(name + "#0", name + "#1");
+    }
+
+    private static Read<DataValue> read(final FSPath path) {
+        return new ListRead(rows(path));
+    }
+
+    private static List<String> readAll(final Read<DataValue> read) throws IOException {
+        final List<String> rows = new ArrayList<>();
+        try (read) {
+            for (RandomAccessible<DataValue> row = read.next(); row != null; row = read.next()) {
+                rows.add(row.get(0).toString());
+            }
+        }
+        return rows;
+    }
+
+    @Test
+    void testOrder() throws IOException {
+        final List<FSPath> paths = createFiles(12);
+        final Random random = new Random(42);
+        final int[] delays = random.ints(paths.size(), 0, 20).toArray();
+        try (XMLFilePrefetcher prefetcher = new XMLFilePrefetcher(paths, 4, Long.MAX_VALUE, (path, config) -> {
+            try {
+                Thread.sleep(delays[paths.indexOf(path)]);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            return read(path);
+        })) {
+            for (FSPath path : paths) {
+                assertThat(readAll(prefetcher.take(path, m_config))).as(path.toString()).isEqualTo(rows(path));
+            }
+            assertThat(prefetcher.take(createFile("unknown.xml", FILE_SIZE), m_config)).isNull();
+        }
+    }
+
+    @Test
+    void testErrors() throws IOException {
+        final List<FSPath> paths = createFiles(6);
+        final IOException ioException = new IOException("Broken file");
+        final IllegalStateException runtimeException = new IllegalStateException("Broken reader");
+        try (XMLFilePrefetcher prefetcher = new XMLFilePrefetcher(paths, 2, Long.MAX_VALUE, (path, config) -> {
+            if (path.equals(paths.get(2))) {
+                throw ioException;
+            } else if (path.equals(paths.get(4))) {
+                throw runtimeException;
+            }
+            return read(path);
+        })) {
+            assertThat(readAll(prefetcher.take(paths.get(0), m_config))).isEqualTo(rows(paths.get(0)));
+            assertThat(readAll(prefetcher.take(paths.get(1), m_config))).isEqualTo(rows(paths.get(1)));
+            assertThatThrownBy(() -> prefetcher.take(paths.get(2), m_config)).isSameAs(ioException);
+            assertThat(readAll(prefetcher.take(paths.get(3), m_config))).isEqualTo(rows(paths.get(3)));
+            assertThatThrownBy(() -> prefetcher.take(paths.get(4), m_config)).isInstanceOf(IOException.class)
+                .hasCause(runtimeException);
+            assertThat(readAll(prefetcher.take(paths.get(5), m_config))).isEqualTo(rows(paths.get(5)));
+        }
+    }
+
+    @Test
+    void testCloseDuringRead() throws Exception {
+        final List<FSPath> paths = createFiles(4);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final XMLFilePrefetcher prefetcher = new XMLFilePrefetcher(paths, 2, Long.MAX_VALUE, (path, config) -> {
+            if (path.equals(paths.get(1))) {
+                started.countDown();
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw new InterruptedIOException();
+                }
+            }
+            return read(path);
+        });
+        assertThat(readAll(prefetcher.take(paths.get(0), m_config))).isEqualTo(rows(paths.get(0)));
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+        final CompletableFuture<Throwable> taking = new CompletableFuture<>();
+        final Thread taker = new Thread(() -> {
+            try {
+                prefetcher.take(paths.get(1), m_config);
+                taking.complete(null);
+            } catch (Throwable t) { // NOSONAR reported by the future
+                taking.complete(t);
+            }
+        });
+        taker.start();
+        // closing must not wait for the read to end
+        while (taker.isAlive() && taker.getState() != Thread.State.WAITING) {
+            Thread.sleep(10);
+        }
+        prefetcher.close();
+
+        assertThat(taking.get(10, TimeUnit.SECONDS)).isInstanceOf(InterruptedIOException.class);
+        assertThat(interrupted.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(prefetcher.take(paths.get(2), m_config)).isNull();
+        taker.join();
+    }
+
+    @Test
+    void testMemoryBound() throws IOException {
+        final List<FSPath> paths = createFiles(10);
+        final FSPath large = createFile("large.xml", 3 * FILE_SIZE);
+        paths.add(5, large);
+        final AtomicInteger started = new AtomicInteger();
+        final List<FSPath> read = new ArrayList<>();
+        // two files fit into the bound, a third one does not
+        try (XMLFilePrefetcher prefetcher =
+            new XMLFilePrefetcher(paths, 4, 2 * FILE_SIZE + FILE_SIZE / 2, (path, config) -> {
+                started.incrementAndGet();
+                synchronized (read) {
+                    read.add(path);
+                }
+                return read(path);
+            })) {
+            int taken = 0;
+            for (FSPath path : paths) {
+                final Read<DataValue> rows = prefetcher.take(path, m_config);
+                if (path.equals(large)) {
+                    assertThat(rows).as("the large file is read directly").isNull();
+                    continue;
+                }
+                taken++;
+                assertThat(readAll(rows)).isEqualTo(rows(path));
+                assertThat(started.get()).as("files read after taking %d files", taken)
+                    .isLessThanOrEqualTo(taken + 2);
+            }
+        }
+        assertThat(read).hasSize(10).doesNotContain(large);
+    }
+
+    /**
+     * {@link Read} of one cell per row.
+     */
+    private static final class ListRead implements Read<DataValue> {
+
+        private final Iterator<String> m_rows;
+
+        ListRead(final List<String> rows) {
+            m_rows = rows.iterator();
+        }
+
+        @Override
+        public RandomAccessible<DataValue> next() {
+            return m_rows.hasNext() ? RandomAccessibleUtils.createFromArray(new StringCell(m_rows.next())) : null;
+        }
+
+        @Override
+        public OptionalLong getMaxProgress() {
+            return OptionalLong.empty();
+        }
+
+        @Override
+        public long getProgress() {
+            return 0;
+        }
+
+        @Override
+        public void close() {
+            // nothing to close
+        }
+    }
+}
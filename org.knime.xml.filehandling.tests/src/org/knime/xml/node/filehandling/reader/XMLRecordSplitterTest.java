@@ -0,0 +1,284 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.filehandling.reader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+
+import org.junit.jupiter.api.Test;
+import org.knime.core.data.DataValue;
+import org.knime.core.data.util.LockedSupplier;
+import org.knime.core.data.xml.XMLCellFactory;
+import org.knime.core.data.xml.XMLValue;
+import org.knime.core.data.xml.io.LimitedXPathMatcher;
+import org.knime.core.data.xml.io.XMLCellReader;
+import org.knime.core.data.xml.io.XMLCellReaderFactory;
+import org.knime.core.data.xml.util.DefaultNamespaceContext;
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Tests the {@link XMLRecordSplitter} by comparing the parsed records with the matches of the XPath cell reader, which
+ * is used if the file is read sequentially. The records are compared without their namespace declarations, since the
+ * splitter copies the declarations in scope into each record.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class XMLRecordSplitterTest {
+
+    private static final String[] NO_PREFIXES = new String[0];
+
+    private static final NamespaceContext NO_NAMESPACES = new DefaultNamespaceContext(NO_PREFIXES, NO_PREFIXES);
+
+    private static final NamespaceContext NAMESPACE_A =
+        new DefaultNamespaceContext(new String[]{"p"}, new String[]{"urn:a"});
+
+    private static byte[] utf8(final String xml) {
+        return xml.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a form of the XML value that only contains the names and namespaces of the elements and attributes,
+     * the attribute values, the text and the comments and processing instructions.
+     *
+     * @param value the XML value
+     * @return the comparable form of the value
+     */
+    static String normalize(final DataValue value) {
+        @SuppressWarnings("unchecked")
+        final XMLValue<Document> xml = (XMLValue<Document>)value;
+        try (LockedSupplier<Document> supplier = xml.getDocumentSupplier()) {
+            final StringBuilder b = new StringBuilder();
+            normalize(supplier.get().getDocumentElement(), b);
+            return b.toString();
+        }
+    }
+
+    private static void normalize(final Node node, final StringBuilder b) {
+        switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE:
+                b.append("<{").append(node.getNamespaceURI()).append('}').append(node.getLocalName());
+                final NamedNodeMap attributes = node.getAttributes();
+                final TreeSet<String> sorted = new TreeSet<>();
+                for (int i = 0; i < attributes.getLength(); i++) {
+                    final Node attribute = attributes.item(i);
+                    if (!XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attribute.getNamespaceURI())) {
+                        sorted.add('{' + attribute.getNamespaceURI() + '}' + attribute.getLocalName() + "=\""
+                            + attribute.getNodeValue() + '"');
+                    }
+                }
+                sorted.forEach(a -> b.append(' ').append(a));
+                b.append('>');
+                normalizeChildren(node, b);
+                b.append("</>");
+                break;
+            case Node.COMMENT_NODE:
+                b.append("<!--").append(node.getNodeValue()).append("-->");
+                break;
+            case Node.PROCESSING_INSTRUCTION_NODE:
+                b.append("<?").append(node.getNodeName()).append(' ').append(node.getNodeValue()).append("?>");
+                break;
+            default:
+                throw new IllegalStateException("Unexpected node type " + node.getNodeType());
+        }
+    }
+
+    /** Text and CDATA sections are merged, the parsers may split or coalesce them differently. */
+    private static void normalizeChildren(final Node node, final StringBuilder b) {
+        StringBuilder text = null;
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.TEXT_NODE || child.getNodeType() == Node.CDATA_SECTION_NODE) {
+                text = text == null ? new StringBuilder() : text;
+                text.append(child.getNodeValue());
+            } else {
+                if (text != null) {
+                    b.append("[").append(text).append(']');
+                    text = null;
+                }
+                normalize(child, b);
+            }
+        }
+        if (text != null) {
+            b.append("[").append(text).append(']');
+        }
+    }
+
+    private static List<String> readSequentially(final byte[] xml, final String xpath,
+        final NamespaceContext nsContext) throws Exception {
+        final List<String> matches = new ArrayList<>();
+        final XMLCellReader reader = XMLCellReaderFactory.createXPathXMLCellReader2(new ByteArrayInputStream(xml),
+            new LimitedXPathMatcher(xpath, nsContext));
+        try {
+            for (XMLValue<Document> value = reader.readXML(); value != null; value = reader.readXML()) {
+                matches.add(normalize(value));
+            }
+        } finally {
+            reader.close();
+        }
+        return matches;
+    }
+
+    private static List<String> split(final byte[] xml, final String xpath, final NamespaceContext nsContext)
+        throws Exception {
+        final XMLRecordSplitter splitter = XMLRecordSplitter.create(xpath, nsContext, new ByteArrayInputStream(xml));
+        assertThat(splitter).as("splitter for %s", xpath).isNotNull();
+        assertThat(splitter.readProlog()).as("the document can be split").isTrue();
+        final List<String> records = new ArrayList<>();
+        for (byte[] record = splitter.next(); record != null; record = splitter.next()) {
+            records.add(normalize((DataValue)XMLCellFactory.create(new ByteArrayInputStream(record))));
+        }
+        return records;
+    }
+
+    private static void assertSplitAsRead(final String xml, final String xpath, final NamespaceContext nsContext)
+        throws Exception {
+        assertSplitAsRead(utf8(xml), xpath, nsContext);
+    }
+
+    private static void assertSplitAsRead(final byte[] xml, final String xpath, final NamespaceContext nsContext)
+        throws Exception {
+        final List<String> expected = readSequentially(xml, xpath, nsContext);
+        assertThat(expected).as("matches of %s", xpath).isNotEmpty();
+        assertThat(split(xml, xpath, nsContext)).isEqualTo(expected);
+    }
+
+    private static void assertNotSplit(final byte[] xml) throws IOException {
+        final XMLRecordSplitter splitter =
+            XMLRecordSplitter.create("/root/rec", NO_NAMESPACES, new ByteArrayInputStream(xml));
+        assertThat(splitter).isNotNull();
+        assertThat(splitter.readProlog()).as("the document is read sequentially").isFalse();
+    }
+
+    @Test
+    void testInheritedPrefixes() throws Exception {
+        assertSplitAsRead("<a:root xmlns:a=\"urn:a\" xmlns:b=\"urn:b\">"
+            + "<a:rec><b:x b:y=\"1\"/></a:rec><a:rec b:attr=\"2\"/></a:root>", "/p:root/p:rec", NAMESPACE_A);
+        assertSplitAsRead("<a:root xmlns:a=\"urn:a\" xmlns:x=\"urn:x1\">"
+            + "<a:list xmlns:x=\"urn:x2\"><a:rec><x:v/></a:rec></a:list>"
+            + "<a:list><a:rec><x:v/></a:rec></a:list></a:root>", "/p:root/p:list/p:rec", NAMESPACE_A);
+    }
+
+    @Test
+    void testRedeclaredPrefixes() throws Exception {
+        assertSplitAsRead("<a:root xmlns:a=\"urn:a\" xmlns:b=\"urn:b\">"
+            + "<a:rec xmlns:b=\"urn:b2\"><b:x/></a:rec><a:rec><b:x/></a:rec></a:root>", "/p:root/p:rec",
+            NAMESPACE_A);
+        // the records are matched by namespace, not by prefix
+        assertSplitAsRead("<a:root xmlns:a=\"urn:a\"><a:rec/><b:rec xmlns:b=\"urn:a\"/>"
+            + "<a:rec xmlns:a=\"urn:other\"/><rec/></a:root>", "/p:root/p:rec", NAMESPACE_A);
+    }
+
+    @Test
+    void testDefaultNamespaces() throws Exception {
+        final NamespaceContext nsContext = new DefaultNamespaceContext(new String[]{"dns"}, new String[]{"urn:d"});
+        assertSplitAsRead("<root xmlns=\"urn:d\"><rec><v>1</v></rec><rec><v xmlns=\"\">2</v></rec>"
+            + "<other><rec/></other></root>", "/dns:root/dns:rec", nsContext);
+        assertSplitAsRead("<root xmlns=\"urn:d\"><list xmlns=\"\"><rec/><rec>1</rec></list></root>",
+            "/dns:root/list/rec", nsContext);
+    }
+
+    @Test
+    void testAttributeValues() throws Exception {
+        assertSplitAsRead("<root><rec a=\"x>y\" b='say \"hi\"' c=\"it's\" d=\"/>\"/>"
+            + "<rec e=\"&gt;&quot;&amp;\"><v f='>'>t</v></rec><skip g=\"--&gt;\"/><rec h=\"]]>\">x</rec></root>",
+            "/root/rec", NO_NAMESPACES);
+    }
+
+    @Test
+    void testMarkupBetweenRecords() throws Exception {
+        assertSplitAsRead("<?xml version=\"1.0\"?><!-- <root> --><?pi x?><root><!-- <rec>fake</rec> -->"
+            + "<rec>1</rec><![CDATA[<rec>no</rec>]]><?pi <rec>?><rec>2<!-- c --><![CDATA[x<y]]><?p d?></rec>\n"
+            + "<!--->--></root><!-- end -->", "/root/rec", NO_NAMESPACES);
+    }
+
+    @Test
+    void testEmptyElementRecords() throws Exception {
+        assertSplitAsRead("<a:root xmlns:a=\"urn:a\"><a:rec/><a:rec x=\"1\" /><a:rec></a:rec><a:rec\n/></a:root>",
+            "/p:root/p:rec", NAMESPACE_A);
+    }
+
+    @Test
+    void testNestedRecords() throws Exception {
+        assertSplitAsRead("<root><rec><rec>inner</rec></rec><x><rec/></x><rec/></root>", "/root/rec",
+            NO_NAMESPACES);
+    }
+
+    @Test
+    void testByteOrderMark() throws Exception {
+        final byte[] xml = utf8("\uFEFF<?xml version=\"1.0\" encoding=\"UTF-8\"?><root><rec>café</rec></root>");
+        assertSplitAsRead(xml, "/root/rec", NO_NAMESPACES);
+    }
+
+    @Test
+    void testRecordsAcrossBuffers() throws Exception {
+        final StringBuilder b = new StringBuilder("<root>");
+        for (int i = 0; i < 20000; i++) {
+            b.append("<rec id=\"").append(i).append("\">").append("v".repeat(i % 50)).append("</rec>\n");
+        }
+        b.append("<rec>").append("x".repeat(300000)).append("</rec></root>");
+        assertSplitAsRead(b.toString(), "/root/rec", NO_NAMESPACES);
+    }
+
+    @Test
+    void testNotSplit() throws IOException {
+        assertNotSplit("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><root><rec>café</rec></root>"
+            .getBytes(StandardCharsets.ISO_8859_1));
+        assertNotSplit(utf8("<?xml version=\"1.0\"?><!DOCTYPE root [<!ENTITY e \"x\">]><root><rec>&e;</rec></root>"));
+        assertNotSplit("<root><rec/></root>".getBytes(StandardCharsets.UTF_16));
+        assertThat(XMLRecordSplitter.create("//rec", NO_NAMESPACES, new ByteArrayInputStream(new byte[0])))
+            .as("not a simple path").isNull();
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.filehandling.reader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.knime.core.data.DataValue;
+import org.knime.filehandling.core.connections.DefaultFSConnectionFactory;
+import org.knime.filehandling.core.connections.FSConnection;
+import org.knime.filehandling.core.connections.FSPath;
+import org.knime.filehandling.core.node.table.reader.config.DefaultTableReadConfig;
+import org.knime.filehandling.core.node.table.reader.config.TableReadConfig;
+import org.knime.filehandling.core.node.table.reader.randomaccess.RandomAccessible;
+
+/**
+ * Tests the {@link XPathRead} with several threads. Most documents are encoded in ISO-8859-1, hence they cannot be
+ * split into records and the matches are read on a background thread. The remaining documents test that the file is
+ * split or read from its start again, whichever applies, with the same result as a sequential read.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class XPathReadTest {
+
+    private static final String XPATH = "/root/item";
+
+    @TempDir
+    Path m_dir;
+
+    private FSConnection m_connection;
+
+    @BeforeEach
+    void connect() {
+        m_connection = DefaultFSConnectionFactory.createLocalFSConnection();
+    }
+
+    @AfterEach
+    void disconnect() {
+        m_connection.close();
+    }
+
+    private FSPath createFile(final String name, final int items, final String tail) throws IOException {
+        final StringBuilder b = new StringBuilder("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n<root>\n");
+        for (int i = 0; i < items; i++) {
+            b.append("  <item id=\"").append(i).append("\">café ").append(i).append("</item>\n");
+        }
+        b.append(tail);
+        final Path file = m_dir.resolve(name);
+        Files.write(file, b.toString().getBytes(StandardCharsets.ISO_8859_1));
+        return m_connection.getFileSystem().getPath(file.toString());
+    }
+
+    private FSPath createFile(final String name, final byte[] content) throws IOException {
+        final Path file = m_dir.resolve(name);
+        Files.write(file, content);
+        return m_connection.getFileSystem().getPath(file.toString());
+    }
+
+    private static TableReadConfig<XMLReaderConfig> createConfig() {
+        return createConfig(XPATH, false);
+    }
+
+    private static TableReadConfig<XMLReaderConfig> createConfig(final String xpath, final boolean useRootNamespace) {
+        final XMLReaderConfig config = new XMLReaderConfig();
+        config.setUseXPath(true);
+        config.setXPath(xpath);
+        config.setUseRootNamespace(useRootNamespace);
+        return new DefaultTableReadConfig<>(config);
+    }
+
+    private static List<String> readNormalized(final FSPath path, final TableReadConfig<XMLReaderConfig> config,
+        final int threads) throws IOException {
+        final List<String> values = new ArrayList<>();
+        try (XPathRead read = new XPathRead(path, config, threads)) {
+            for (RandomAccessible<DataValue> row = read.next(); row != null; row = read.next()) {
+                values.add(XMLRecordSplitterTest.normalize(row.get(0)));
+            }
+        }
+        return values;
+    }
+
+    private void assertSplitAsSequential(final String name, final byte[] content, final String xpath,
+        final boolean useRootNamespace) throws IOException {
+        final FSPath path = createFile(name, content);
+        final List<String> expected = readNormalized(path, createConfig(xpath, useRootNamespace), 1);
+        assertThat(expected).as(name).hasSize(3);
+        assertThat(readNormalized(path, createConfig(xpath, useRootNamespace), 4)).as(name).isEqualTo(expected);
+    }
+
+    private static List<String> read(final XPathRead read, final int rows) throws IOException {
+        final List<String> values = new ArrayList<>();
+        while (values.size() < rows) {
+            final RandomAccessible<DataValue> row = read.next();
+            if (row == null) {
+                break;
+            }
+            values.add(row.get(0).toString());
+        }
+        return values;
+    }
+
+    private static boolean isProducerAlive(final FSPath path) {
+        final String name = XPathRead.PRODUCER_NAME + path.getFileName();
+        return Thread.getAllStackTraces().keySet().stream()
+            .anyMatch(t -> t.isAlive() && t.getName().equals(name));
+    }
+
+    @Test
+    void testReadAll() throws IOException {
+        final FSPath path = createFile("all.xml", 1000, "</root>");
+        final List<String> expected;
+        try (XPathRead read = new XPathRead(path, createConfig(), 1)) {
+            expected = read(read, Integer.MAX_VALUE);
+        }
+        assertThat(expected).hasSize(1000);
+        assertThat(expected.get(1)).contains("café 1");
+        try (XPathRead read = new XPathRead(path, createConfig(), 4)) {
+            assertThat(read(read, Integer.MAX_VALUE)).isEqualTo(expected);
+            assertThat(read.next()).isNull();
+        }
+        assertThat(isProducerAlive(path)).isFalse();
+    }
+
+    @Test
+    void testCloseHalfway() throws IOException {
+        final FSPath path = createFile("large.xml", 100000, "</root>");
+        final List<String> expected;
+        try (XPathRead read = new XPathRead(path, createConfig(), 1)) {
+            expected = read(read, 10);
+        }
+        // the producer is ahead of the read, parsing the next matches while the read is closed
+        try (XPathRead read = new XPathRead(path, createConfig(), 4)) {
+            assertThat(read(read, 10)).isEqualTo(expected);
+        }
+        assertThat(isProducerAlive(path)).as("the producer stopped before the streams were closed").isFalse();
+    }
+
+    @Test
+    void testCloseBeforeReading() throws IOException {
+        final FSPath path = createFile("unread.xml", 100000, "</root>");
+        new XPathRead(path, createConfig(), 2).close();
+        assertThat(isProducerAlive(path)).isFalse();
+    }
+
+    @Test
+    void testProducerError() throws IOException {
+        final FSPath path = createFile("broken.xml", 100, "  <item><broken></item>\n</root>");
+        try (XPathRead read = new XPathRead(path, createConfig(), 4)) {
+            assertThat(read(read, 100)).hasSize(100);
+            assertThatThrownBy(read::next).as("error of the producer").isInstanceOf(IOException.class);
+            // the read stays at its end
+            assertThat(read.next()).isNull();
+        }
+    }
+
+    @Test
+    void testSplitAsSequential() throws IOException {
+        final String records = "<item id=\"1\">café</item><item/><item><v>3</v></item>";
+        // the mark set before the prolog is read becomes invalid after 256 KiB
+        final String comment = "<!-- " + "x".repeat(300000) + " -->\n";
+        assertSplitAsSequential("utf8.xml", ("<root>" + records + "</root>").getBytes(StandardCharsets.UTF_8), XPATH,
+            false);
+        assertSplitAsSequential("bom.xml",
+            ("\uFEFF<?xml version=\"1.0\" encoding=\"UTF-8\"?><root>" + records + "</root>")
+                .getBytes(StandardCharsets.UTF_8),
+            XPATH, false);
+        assertSplitAsSequential("latin1.xml",
+            ("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>" + comment + "<root>" + records + "</root>")
+                .getBytes(StandardCharsets.ISO_8859_1),
+            XPATH, false);
+        assertSplitAsSequential("doctype.xml",
+            (comment + "<!DOCTYPE root [<!ENTITY e \"café\">]><root>" + records.replace("café", "&e;") + "</root>")
+                .getBytes(StandardCharsets.UTF_8),
+            XPATH, false);
+        assertSplitAsSequential("comment.xml",
+            (comment + "<root>" + records + "</root>").getBytes(StandardCharsets.UTF_8), XPATH, false);
+        // the mark set before the root namespace is read becomes invalid as well
+        assertSplitAsSequential("namespace.xml",
+            (comment + "<root xmlns=\"urn:d\">" + records + "</root>").getBytes(StandardCharsets.UTF_8),
+            "/dns:root/dns:item", true);
+    }
+}
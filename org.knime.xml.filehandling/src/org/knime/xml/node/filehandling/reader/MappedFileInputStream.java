@@ -0,0 +1,236 @@
+/*
+ * ------------------------------------------------------------------------
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.filehandling.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@link InputStream} reading a local file through memory mapped windows of a {@link FileChannel}. The bytes are read
+ * directly from the page cache instead of being copied through the layers of a stream stack. Since a single mapping
+ * is limited to 2 GB, larger files are mapped window by window. Marking is supported at any position.
+ * <p>
+ * A mapping is only released once its buffer is garbage collected, which keeps the file locked on Windows. If the file
+ * is truncated while it is read, the access to the missing pages fails with an {@link InternalError} raised by the
+ * JVM at some later point instead of an {@link IOException}. Hence the stream is only used if enabled explicitly, see
+ * {@link XMLRead#openStream(org.knime.filehandling.core.connections.FSPath, long)}.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class MappedFileInputStream extends InputStream {
+
+    /** The size of a mapped window, the last window of a file may be smaller. */
+    static final long WINDOW_SIZE = 1L << 28;
+
+    private final FileChannel m_channel;
+
+    private final long m_size;
+
+    private final long m_windowSize;
+
+    /** The position of the current window in the file. */
+    private long m_windowStart;
+
+    private MappedByteBuffer m_window;
+
+    private long m_mark;
+
+    /**
+     * Constructor.
+     *
+     * @param path the local file
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    MappedFileInputStream(final Path path) throws IOException {
+        this(path, WINDOW_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param path the local file
+     * @param windowSize the size of a mapped window
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    MappedFileInputStream(final Path path, final long windowSize) throws IOException {
+        m_windowSize = windowSize;
+        m_channel = FileChannel.open(path, StandardOpenOption.READ);
+        boolean mapped = false;
+        try {
+            m_size = m_channel.size();
+            map(0);
+            mapped = true;
+        } finally {
+            if (!mapped) {
+                m_channel.close();
+            }
+        }
+    }
+
+    /**
+     * Checks whether the file starts like an uncompressed XML document, i.e. with a byte order mark, white space or
+     * <code>&lt;</code> in UTF-8 or UTF-16, without reading from the stream.
+     *
+     * @return whether the file starts like an uncompressed XML document
+     */
+    boolean startsLikeXML() {
+        if (m_size < 2) {
+            return false;
+        }
+        final int b0 = m_window.get(0) & 0xFF;
+        final int b1 = m_window.get(1) & 0xFF;
+        switch (b0) {
+            case '<':
+            case ' ':
+            case '\t':
+            case '\n':
+            case '\r':
+                return true;
+            case 0xEF:
+                return b1 == 0xBB;
+            case 0xFE:
+                return b1 == 0xFF;
+            case 0xFF:
+                return b1 == 0xFE;
+            case 0:
+                return b1 == '<';
+            default:
+                return false;
+        }
+    }
+
+    private void map(final long position) throws IOException {
+        m_windowStart = position;
+        m_window = m_channel.map(MapMode.READ_ONLY, position, Math.min(m_windowSize, m_size - position));
+    }
+
+    /**
+     * Maps the next window if the current one is read completely.
+     *
+     * @return {@code false} at the end of the file
+     */
+    private boolean ensureAvailable() throws IOException {
+        if (m_window.hasRemaining()) {
+            return true;
+        }
+        final long next = m_windowStart + m_window.limit();
+        if (next >= m_size) {
+            return false;
+        }
+        map(next);
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return ensureAvailable() ? (m_window.get() & 0xFF) : -1;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        final int n = Math.min(len, m_window.remaining());
+        m_window.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        final long skipped = Math.max(0, Math.min(n, m_size - getCount()));
+        seek(getCount() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int)Math.min(Integer.MAX_VALUE, m_size - getCount());
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(final int readlimit) {
+        m_mark = getCount();
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        seek(m_mark);
+    }
+
+    private void seek(final long position) throws IOException {
+        if (position >= m_windowStart && position <= m_windowStart + m_window.limit()) {
+            m_window.position((int)(position - m_windowStart));
+        } else {
+            map(position);
+        }
+    }
+
+    /**
+     * @return the number of bytes read from the file
+     */
+    long getCount() {
+        return m_windowStart + m_window.position();
+    }
+
+    @Override
+    public void close() throws IOException {
+        // the mapping is released once the buffer is garbage collected
+        m_channel.close();
+    }
+}
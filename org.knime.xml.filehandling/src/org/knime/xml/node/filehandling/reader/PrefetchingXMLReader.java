@@ -0,0 +1,127 @@
+/*
+ * ------------------------------------------------------------------------
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.filehandling.reader;
+
+import java.io.IOException;
+
+import org.knime.core.data.DataType;
+import org.knime.core.data.DataValue;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.filehandling.core.connections.FSPath;
+import org.knime.filehandling.core.node.table.reader.GenericTableReader;
+import org.knime.filehandling.core.node.table.reader.TableReader;
+import org.knime.filehandling.core.node.table.reader.config.TableReadConfig;
+import org.knime.filehandling.core.node.table.reader.read.Read;
+import org.knime.filehandling.core.node.table.reader.spec.TypedReaderTableSpec;
+
+/**
+ * Decorates the reader of the XML reader node such that the files read ahead by an {@link XMLFilePrefetcher} are
+ * taken from it. The prefetcher is only used while the files of a source group are read, see
+ * {@link #readWith(XMLFilePrefetcher, SourceGroupRead)}, all other reads are passed to the decorated reader.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class PrefetchingXMLReader implements TableReader<XMLReaderConfig, DataType, DataValue> {
+
+    private final GenericTableReader<FSPath, XMLReaderConfig, DataType, DataValue> m_reader;
+
+    private volatile XMLFilePrefetcher m_prefetcher;
+
+    /**
+     * Constructor.
+     *
+     * @param reader the decorated reader
+     */
+    PrefetchingXMLReader(final GenericTableReader<FSPath, XMLReaderConfig, DataType, DataValue> reader) {
+        m_reader = reader;
+    }
+
+    @Override
+    public Read<DataValue> read(final FSPath path, final TableReadConfig<XMLReaderConfig> config) throws IOException {
+        final XMLFilePrefetcher prefetcher = m_prefetcher;
+        if (prefetcher != null) {
+            final Read<DataValue> prefetched = prefetcher.take(path, config);
+            if (prefetched != null) {
+                return prefetched;
+            }
+        }
+        return m_reader.read(path, config);
+    }
+
+    @Override
+    public TypedReaderTableSpec<DataType> readSpec(final FSPath path, final TableReadConfig<XMLReaderConfig> config,
+            final ExecutionMonitor exec) throws IOException {
+        return m_reader.readSpec(path, config, exec);
+    }
+
+    /**
+     * Runs the read of a source group, which takes the files it reads from the given prefetcher, if it read them
+     * ahead. The prefetcher is closed afterwards.
+     *
+     * @param prefetcher the prefetcher reading the files of the source group
+     * @param read the read of the source group
+     * @throws Exception if the read fails
+     */
+    void readWith(final XMLFilePrefetcher prefetcher, final SourceGroupRead read) throws Exception {
+        try (prefetcher) {
+            m_prefetcher = prefetcher;
+            read.run();
+        } finally {
+            m_prefetcher = null;
+        }
+    }
+
+    /**
+     * The read of a source group.
+     */
+    @FunctionalInterface
+    interface SourceGroupRead {
+
+        /**
+         * @throws Exception if the read fails
+         */
+        void run() throws Exception; // NOSONAR the multi table read throws Exception
+    }
+}
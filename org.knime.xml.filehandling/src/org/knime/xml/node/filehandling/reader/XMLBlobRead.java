@@ -94,7 +94,7 @@ public RandomAccessible<DataValue> next() throws IOException {
             return null;
         } else {
             try {
-                return createRandomAccessible(XMLCellFactory.create(m_compressionAwareStream));
+                return createRandomAccessible(XMLCellFactory.create(m_inputStream));
             } catch (ParserConfigurationException | SAXException | XMLStreamException e) {
                 throw new IOException(e.getMessage(), e);
             }
@@ -0,0 +1,315 @@
+/*
+ * ------------------------------------------------------------------------
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.filehandling.reader;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.knime.core.data.DataValue;
+import org.knime.core.util.ThreadPool;
+import org.knime.filehandling.core.connections.FSPath;
+import org.knime.filehandling.core.node.table.reader.config.TableReadConfig;
+import org.knime.filehandling.core.node.table.reader.randomaccess.RandomAccessible;
+import org.knime.filehandling.core.node.table.reader.read.Read;
+
+/**
+ * Reads the files of a source group ahead of the sequential multi table read using a fixed number of threads of the
+ * global thread pool. The rows of a file are handed out by {@link #take(FSPath, TableReadConfig)} once the read asks
+ * for the file, hence the order of the rows and their keys do not depend on the scheduling.
+ * <p>
+ * At most two files per thread are read ahead and their summed size is bounded by a fraction of the maximum heap.
+ * Files which are larger than this bound are not prefetched but read directly by the {@link XMLReader}. The reading
+ * starts with the first call of {@link #take(FSPath, TableReadConfig)}, i.e. no file is read if the prefetcher is not
+ * consulted.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class XMLFilePrefetcher implements AutoCloseable {
+
+    /** The parsed documents take several times the size of the file in memory. */
+    static final long MAX_BYTES_AHEAD = Runtime.getRuntime().maxMemory() / 32;
+
+    private final Iterator<FSPath> m_paths;
+
+    private final int m_parallelism;
+
+    private final long m_maxBytesAhead;
+
+    private final FileReader m_reader;
+
+    private final Map<FSPath, Pending> m_pending = new LinkedHashMap<>();
+
+    private long m_pendingBytes;
+
+    /** The next path to submit, already taken from the iterator. */
+    private FSPath m_next;
+
+    private long m_nextSize;
+
+    /** The file whose rows {@link #take(FSPath, TableReadConfig)} waits for, {@code null} if it does not wait. */
+    private Pending m_taking;
+
+    private TableReadConfig<XMLReaderConfig> m_config;
+
+    private ThreadPool m_pool;
+
+    private boolean m_closed;
+
+    /**
+     * Constructor.
+     *
+     * @param paths
+     *            the paths in the order in which they are read
+     * @param parallelism
+     *            the number of threads reading the files
+     */
+    XMLFilePrefetcher(final Iterable<FSPath> paths, final int parallelism) {
+        this(paths, parallelism, MAX_BYTES_AHEAD, (path, config) -> XMLReader.readFile(path, config, 1));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param paths
+     *            the paths in the order in which they are read
+     * @param parallelism
+     *            the number of threads reading the files
+     * @param maxBytesAhead
+     *            the maximum summed size of the files read ahead
+     * @param reader
+     *            reads a single file on one of the threads
+     */
+    XMLFilePrefetcher(final Iterable<FSPath> paths, final int parallelism, final long maxBytesAhead,
+            final FileReader reader) {
+        m_paths = paths.iterator();
+        m_parallelism = parallelism;
+        m_maxBytesAhead = maxBytesAhead;
+        m_reader = reader;
+    }
+
+    /**
+     * Returns the prefetched rows of the given file.
+     *
+     * @param path
+     *            the path of the file
+     * @param config
+     *            the {@link TableReadConfig} used to read the files
+     * @return a read of the rows of the file or {@code null} if the file was not prefetched and needs to be read
+     *         directly
+     * @throws IOException
+     *             if the file could not be read or parsed, or the prefetcher was closed while waiting for the file
+     */
+    Read<DataValue> take(final FSPath path, final TableReadConfig<XMLReaderConfig> config) throws IOException {
+        final Pending pending;
+        synchronized (this) {
+            if (m_closed) {
+                return null;
+            }
+            if (m_pool == null) {
+                m_config = config;
+                m_pool = XMLReadTasks.createPool(m_parallelism);
+            }
+            fill();
+            pending = m_pending.remove(path);
+            if (pending == null) {
+                return null;
+            }
+            m_pendingBytes -= pending.m_size;
+            fill();
+            m_taking = pending;
+        }
+        // waiting without the lock, such that the prefetcher can be closed meanwhile
+        try {
+            return new PrefetchedRead(XMLReadTasks.await(pending.m_rows), pending.m_size);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw (IOException)new InterruptedIOException("Reading " + path + " was interrupted.").initCause(e);
+        } catch (CancellationException e) {
+            throw (IOException)new InterruptedIOException("Reading " + path + " was cancelled.").initCause(e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        } finally {
+            synchronized (this) {
+                m_taking = null;
+            }
+        }
+    }
+
+    private void fill() throws IOException {
+        while (m_pending.size() < 2 * m_parallelism && (m_next != null || m_paths.hasNext())) {
+            if (m_next == null) {
+                m_next = m_paths.next();
+                m_nextSize = Files.size(m_next);
+            }
+            if (m_nextSize > m_maxBytesAhead) {
+                // read directly by the reader once it gets there
+                m_next = null;
+            } else if (m_pending.isEmpty() || m_pendingBytes + m_nextSize <= m_maxBytesAhead) {
+                final FSPath path = m_next;
+                m_next = null;
+                final Future<List<RandomAccessible<DataValue>>> rows =
+                    XMLReadTasks.submit(m_pool, () -> readAll(path, m_config));
+                m_pending.put(path, new Pending(rows, m_nextSize));
+                m_pendingBytes += m_nextSize;
+            } else {
+                // continued once the reader took the files ahead of it
+                return;
+            }
+        }
+    }
+
+    private List<RandomAccessible<DataValue>> readAll(final FSPath path,
+            final TableReadConfig<XMLReaderConfig> config) throws IOException {
+        final List<RandomAccessible<DataValue>> rows = new ArrayList<>();
+        try (Read<DataValue> read = m_reader.read(path, config)) {
+            for (RandomAccessible<DataValue> row = read.next(); row != null; row = read.next()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Reading " + path + " was cancelled.");
+                }
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Stops the reading threads and discards the files read ahead. A {@link #take(FSPath, TableReadConfig)} waiting
+     * for a file fails.
+     */
+    @Override
+    public synchronized void close() {
+        m_closed = true;
+        if (m_taking != null) {
+            m_taking.m_rows.cancel(true);
+        }
+        for (Pending pending : m_pending.values()) {
+            pending.m_rows.cancel(true);
+        }
+        m_pending.clear();
+        m_pendingBytes = 0;
+    }
+
+    /**
+     * Reads a single file.
+     */
+    @FunctionalInterface
+    interface FileReader {
+
+        /**
+         * @param path the file
+         * @param config the {@link TableReadConfig} used to read the files
+         * @return the read of the file, which is closed after reading all its rows
+         * @throws IOException if the file cannot be opened
+         */
+        Read<DataValue> read(FSPath path, TableReadConfig<XMLReaderConfig> config) throws IOException;
+    }
+
+    private static final class Pending {
+
+        private final Future<List<RandomAccessible<DataValue>>> m_rows;
+
+        private final long m_size;
+
+        Pending(final Future<List<RandomAccessible<DataValue>>> rows, final long size) {
+            m_rows = rows;
+            m_size = size;
+        }
+    }
+
+    /**
+     * {@link Read} of the rows of a prefetched file.
+     */
+    private static final class PrefetchedRead implements Read<DataValue> {
+
+        private final Iterator<RandomAccessible<DataValue>> m_rows;
+
+        private final long m_size;
+
+        private boolean m_done;
+
+        PrefetchedRead(final List<RandomAccessible<DataValue>> rows, final long size) {
+            m_rows = rows.iterator();
+            m_size = size;
+        }
+
+        @Override
+        public RandomAccessible<DataValue> next() {
+            if (m_rows.hasNext()) {
+                return m_rows.next();
+            }
+            m_done = true;
+            return null;
+        }
+
+        @Override
+        public OptionalLong getMaxProgress() {
+            return OptionalLong.of(m_size);
+        }
+
+        @Override
+        public long getProgress() {
+            return m_done ? m_size : 0;
+        }
+
+        @Override
+        public void close() {
+            // nothing to release, the file was closed after reading it
+        }
+    }
+}
@@ -109,6 +109,8 @@
 
     private static final String CFG_FAIL_IF_NOT_FOUND = "fail_if_not_found";
 
+    private static final String CFG_PARALLEL_READS = "parallel_reads";
+
     @Override
     public void loadInDialog(final XMLMultiTableReadConfig config, final NodeSettingsRO settings,
             final PortObjectSpec[] specs) {
@@ -127,6 +129,7 @@ private static void loadSettingsTabInDialog(final XMLMultiTableReadConfig config
         xmlReaderCfg.setUseRootNamespace(settings.getBoolean(CFG_USE_ROOTS_NS, true));
         xmlReaderCfg.setRootNamespacePrefix(settings.getString(CFG_ROOTS_NS_PREFIX, "dns"));
         xmlReaderCfg.setFailIfNotFound(settings.getBoolean(CFG_FAIL_IF_NOT_FOUND, false));
+        xmlReaderCfg.setParallelReads(settings.getInt(CFG_PARALLEL_READS, 1));
         config.setAppendItemIdentifierColumn(
                 settings.getBoolean(CFG_APPEND_PATH_COLUMN, config.appendItemIdentifierColumn()));
         config.setItemIdentifierColumnName(
@@ -168,6 +171,8 @@ private static void loadSettingsTabInModel(final XMLMultiTableReadConfig config,
         xmlReaderCfg.setUseRootNamespace(settings.getBoolean(CFG_USE_ROOTS_NS));
         xmlReaderCfg.setRootNamespacePrefix(settings.getString(CFG_ROOTS_NS_PREFIX));
         xmlReaderCfg.setFailIfNotFound(settings.getBoolean(CFG_FAIL_IF_NOT_FOUND));
+        // added later, hence the default for workflows saved without it
+        xmlReaderCfg.setParallelReads(settings.getInt(CFG_PARALLEL_READS, 1));
         config.setAppendItemIdentifierColumn(settings.getBoolean(CFG_APPEND_PATH_COLUMN));
         config.setItemIdentifierColumnName(settings.getString(CFG_PATH_COLUMN_NAME));
         xmlReaderCfg.setNamespacePrefixes(settings.getStringArray(CFG_NS_PREFIXES));
@@ -194,6 +199,7 @@ private static void saveSettingsTab(final XMLMultiTableReadConfig config, final
         settings.addString(CFG_ROOTS_NS_PREFIX, xmlReaderCfg.getRootNamespacePrefix());
         settings.addBoolean(CFG_USE_ROOTS_NS, xmlReaderCfg.useRootNamespace());
         settings.addBoolean(CFG_FAIL_IF_NOT_FOUND, xmlReaderCfg.failIfNotFound());
+        settings.addInt(CFG_PARALLEL_READS, xmlReaderCfg.getParallelReads());
     }
 
     private static void saveLimitRowsTab(final XMLMultiTableReadConfig config, final NodeSettingsWO settings) {
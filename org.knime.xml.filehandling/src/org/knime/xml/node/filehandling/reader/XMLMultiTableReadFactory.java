@@ -80,6 +80,8 @@ final class XMLMultiTableReadFactory implements MultiTableReadFactory<FSPath, XM
 
     private final MultiTableReadFactory<FSPath, XMLReaderConfig, DataType> m_defaultFactory;
 
+    private final PrefetchingXMLReader m_reader;
+
     private static IllegalArgumentException createNoRowsException() {
         return new IllegalArgumentException("Nothing found for XPath ");
     }
@@ -91,11 +93,19 @@ public StagedMultiTableRead<FSPath, DataType> create(final SourceGroup<FSPath> s
         final StagedMultiTableRead<FSPath, DataType> stagedultiTableReadFactory = m_defaultFactory
                 .create(sourceGroup, config, exec);
         return new XMLStagedMultiTableRead(stagedultiTableReadFactory,
-                config.getTableReadConfig().getReaderSpecificConfig());
+                config.getTableReadConfig().getReaderSpecificConfig(), m_reader);
     }
 
-    XMLMultiTableReadFactory(final MultiTableReadFactory<FSPath, XMLReaderConfig, DataType> defaultFactory) {
+    /**
+     * Constructor.
+     *
+     * @param defaultFactory the factory creating the reads
+     * @param reader the reader used by the reads of the default factory
+     */
+    XMLMultiTableReadFactory(final MultiTableReadFactory<FSPath, XMLReaderConfig, DataType> defaultFactory,
+            final PrefetchingXMLReader reader) {
         m_defaultFactory = defaultFactory;
+        m_reader = reader;
     }
 
     @Override
@@ -104,7 +114,7 @@ public StagedMultiTableRead<FSPath, DataType> createFromConfig(final SourceGroup
 
         final var defaultRead = m_defaultFactory.createFromConfig(sourceGroup, config);
         return new XMLStagedMultiTableRead(defaultRead,
-                config.getTableReadConfig().getReaderSpecificConfig());
+                config.getTableReadConfig().getReaderSpecificConfig(), m_reader);
     }
 
     @Override
@@ -122,16 +132,19 @@ private static final class XMLStagedMultiTableRead implements StagedMultiTableRe
 
         private final XMLReaderConfig m_config;
 
+        private final PrefetchingXMLReader m_reader;
+
         XMLStagedMultiTableRead(final StagedMultiTableRead<FSPath, DataType> stagedMutltiTableRead,
-                final XMLReaderConfig config) {
+                final XMLReaderConfig config, final PrefetchingXMLReader reader) {
             m_stagedMutltiTableRead = stagedMutltiTableRead;
             m_config = config;
+            m_reader = reader;
         }
 
         @Override
         public MultiTableRead<DataType> withoutTransformation(final SourceGroup<FSPath> sourceGroup) {
             final MultiTableRead<DataType> multiTableRead = m_stagedMutltiTableRead.withoutTransformation(sourceGroup);
-            return new XMLMultiTableRead(multiTableRead, m_config);
+            return new XMLMultiTableRead(multiTableRead, sourceGroup, m_config, m_reader);
         }
 
         @Override
@@ -139,7 +152,7 @@ public MultiTableRead<DataType> withTransformation(final SourceGroup<FSPath> sou
                 final TableTransformation<DataType> selectorModel) {
             final MultiTableRead<DataType> multiTableRead = m_stagedMutltiTableRead.withTransformation(sourceGroup,
                     selectorModel);
-            return new XMLMultiTableRead(multiTableRead, m_config);
+            return new XMLMultiTableRead(multiTableRead, sourceGroup, m_config, m_reader);
         }
 
         @Override
@@ -158,11 +171,18 @@ private static final class XMLMultiTableRead implements MultiTableRead<DataType>
 
         private final MultiTableRead<DataType> m_multiTableRead;
 
+        private final SourceGroup<FSPath> m_sourceGroup;
+
         private final XMLReaderConfig m_config;
 
-        XMLMultiTableRead(final MultiTableRead<DataType> multiTableRead, final XMLReaderConfig config) {
+        private final PrefetchingXMLReader m_reader;
+
+        XMLMultiTableRead(final MultiTableRead<DataType> multiTableRead, final SourceGroup<FSPath> sourceGroup,
+                final XMLReaderConfig config, final PrefetchingXMLReader reader) {
             m_multiTableRead = multiTableRead; //NOSONAR similar code for JSON
+            m_sourceGroup = sourceGroup;
             m_config = config;
+            m_reader = reader;
         }
 
         @Override
@@ -187,6 +207,18 @@ public PreviewRowIterator createPreviewIterator() {
         @Override
         public void fillRowOutput(final RowOutput output, final ExecutionMonitor exec, final FileStoreFactory fsFactory)
                 throws Exception {
+            final int parallelReads = m_config.getParallelReads();
+            if (parallelReads <= 1) {
+                fillRowOutputSequentially(output, exec, fsFactory);
+                return;
+            }
+            // the default read still consumes the files one after the other, they are just parsed ahead of it
+            m_reader.readWith(new XMLFilePrefetcher(m_sourceGroup, parallelReads),
+                    () -> fillRowOutputSequentially(output, exec, fsFactory));
+        }
+
+        private void fillRowOutputSequentially(final RowOutput output, final ExecutionMonitor exec,
+                final FileStoreFactory fsFactory) throws Exception {
             if (m_config.failIfNotFound()) {
                 final CountingRowOutput countingRowOutput = new CountingRowOutput(output);
                 m_multiTableRead.fillRowOutput(countingRowOutput, exec, fsFactory);
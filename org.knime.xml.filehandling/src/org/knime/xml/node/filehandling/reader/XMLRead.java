@@ -49,15 +49,21 @@
 package org.knime.xml.node.filehandling.reader;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.OptionalLong;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.stream.XMLStreamException;
 
+import org.apache.commons.lang3.SystemUtils;
 import org.knime.core.data.DataValue;
 import org.knime.core.data.xml.XMLCellFactory;
+import org.knime.filehandling.core.connections.FSCategory;
+import org.knime.filehandling.core.connections.FSLocation;
 import org.knime.filehandling.core.connections.FSPath;
 import org.knime.filehandling.core.node.table.reader.config.TableReadConfig;
 import org.knime.filehandling.core.node.table.reader.randomaccess.RandomAccessible;
@@ -74,7 +80,21 @@
  */
 abstract class XMLRead implements Read<DataValue> {
 
-    protected final CompressionAwareCountingInputStream m_compressionAwareStream;
+    /** The system property enabling the memory mapping of local files. */
+    static final String MAP_FILES_PROPERTY = "knime.xml.reader.mmap";
+
+    /** Local files of at least this size are memory mapped, for smaller ones mapping does not pay off. */
+    private static final long MIN_MAPPED_SIZE = 1L << 20;
+
+    /**
+     * Whether local files are memory mapped, which must be enabled with the system property
+     * {@value #MAP_FILES_PROPERTY}. It is never done on Windows, where a mapped file stays locked until the mapping is
+     * garbage collected.
+     */
+    private static final boolean MAP_FILES = Boolean.getBoolean(MAP_FILES_PROPERTY) && !SystemUtils.IS_OS_WINDOWS;
+
+    /** The stream of the file, see {@link #openStream(FSPath, long)}. */
+    protected final InputStream m_inputStream;
 
     private final long m_size;
 
@@ -98,7 +118,7 @@ abstract class XMLRead implements Read<DataValue> {
         m_xmlReaderConfig = m_config.getReaderSpecificConfig();
 
         m_size = Files.size(path);
-        m_compressionAwareStream = new CompressionAwareCountingInputStream(path);
+        m_inputStream = openStream(path, m_size);
         m_linesRead = 0;
     }
 
@@ -112,7 +132,7 @@ public RandomAccessible<DataValue> next() throws IOException {
             return null;
         } else {
             try {
-                return createRandomAccessible(XMLCellFactory.create(m_compressionAwareStream));
+                return createRandomAccessible(XMLCellFactory.create(m_inputStream));
             } catch (ParserConfigurationException | SAXException | XMLStreamException e) {
                 throw new IOException("Could not parse XML file", e);
             }
@@ -132,7 +152,7 @@ protected static RandomAccessible<DataValue> createRandomAccessible(final DataVa
 
     @Override
     public void close() throws IOException {
-        m_compressionAwareStream.close();
+        m_inputStream.close();
     }
 
     @Override
@@ -142,6 +162,53 @@ public OptionalLong getMaxProgress() {
 
     @Override
     public long getProgress() {
-        return m_compressionAwareStream.getCount();
+        return getCount(m_inputStream);
+    }
+
+    /**
+     * Opens the file. Local files which start like an uncompressed XML document are read through a
+     * {@link MappedFileInputStream} if enabled by {@value #MAP_FILES_PROPERTY}, all others through a
+     * {@link CompressionAwareCountingInputStream}, which also decompresses them.
+     *
+     * @param path the file
+     * @param size the size of the file
+     * @return the stream
+     * @throws IOException if the file cannot be opened
+     */
+    @SuppressWarnings("resource")
+    static InputStream openStream(final FSPath path, final long size) throws IOException {
+        final Path localPath = MAP_FILES && size >= MIN_MAPPED_SIZE ? toLocalPath(path) : null;
+        if (localPath != null) {
+            final MappedFileInputStream mapped = new MappedFileInputStream(localPath);
+            if (mapped.startsLikeXML()) {
+                return mapped;
+            }
+            mapped.close();
+        }
+        return new CompressionAwareCountingInputStream(path);
+    }
+
+    private static Path toLocalPath(final FSPath path) {
+        final FSLocation location = path.toFSLocation();
+        if (location.getFSCategory() != FSCategory.LOCAL) {
+            return null;
+        }
+        try {
+            final Path localPath = Paths.get(location.getPath());
+            return Files.isRegularFile(localPath) ? localPath : null;
+        } catch (InvalidPathException e) { // NOSONAR read through the file system of the path instead
+            return null;
+        }
+    }
+
+    /**
+     * @param in a stream opened by {@link #openStream(FSPath, long)}
+     * @return the number of bytes read from the file
+     */
+    static long getCount(final InputStream in) {
+        if (in instanceof MappedFileInputStream) {
+            return ((MappedFileInputStream)in).getCount();
+        }
+        return ((CompressionAwareCountingInputStream)in).getCount();
     }
 }
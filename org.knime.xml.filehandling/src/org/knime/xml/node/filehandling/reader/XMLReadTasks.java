@@ -0,0 +1,116 @@
+/*
+ * ------------------------------------------------------------------------
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.filehandling.reader;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.knime.core.node.KNIMEConstants;
+import org.knime.core.util.ThreadPool;
+import org.knime.core.util.ThreadUtils;
+
+/**
+ * Runs the tasks of the XML reader which read ahead of the calling thread on the
+ * {@link KNIMEConstants#GLOBAL_THREAD_POOL global thread pool}.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class XMLReadTasks {
+
+    private XMLReadTasks() {
+    }
+
+    /**
+     * @param threads the maximum number of tasks running at the same time
+     * @return a new sub pool of the global thread pool
+     */
+    static ThreadPool createPool(final int threads) {
+        return KNIMEConstants.GLOBAL_THREAD_POOL.createSubPool(threads);
+    }
+
+    /**
+     * Enqueues the task, which runs with the node context of the calling thread.
+     *
+     * @param pool the pool created by {@link #createPool(int)}
+     * @param task the task
+     * @return the future of the task
+     */
+    static <T> Future<T> submit(final ThreadPool pool, final Callable<T> task) {
+        return pool.enqueue(ThreadUtils.callableWithContext(task));
+    }
+
+    /**
+     * Waits for the result of a task. If the calling thread belongs to a thread pool, e.g. it executes a node, it
+     * does not count as active while waiting, such that the task can run even if the pool is fully used.
+     *
+     * @param future the future of the task
+     * @return the result of the task
+     * @throws InterruptedException if the calling thread was interrupted while waiting
+     * @throws ExecutionException if the task failed
+     * @throws CancellationException if the task was cancelled
+     */
+    static <T> T await(final Future<T> future) throws InterruptedException, ExecutionException {
+        final ThreadPool pool = ThreadPool.currentPool();
+        if (pool == null) {
+            return future.get();
+        }
+        try {
+            return pool.runInvisible(future::get);
+        } catch (ExecutionException e) {
+            // the pool wraps whatever the waiting threw
+            final Throwable cause = e.getCause();
+            if (cause instanceof ExecutionException) {
+                throw (ExecutionException)cause;
+            } else if (cause instanceof InterruptedException) {
+                throw (InterruptedException)cause;
+            } else if (cause instanceof CancellationException) {
+                throw (CancellationException)cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -69,12 +69,30 @@
  */
 final class XMLReader implements TableReader<XMLReaderConfig, DataType, DataValue> {
 
-    @SuppressWarnings("resource") // closing the read is the responsibility of the caller
     @Override
     public Read<DataValue> read(final FSPath path, final TableReadConfig<XMLReaderConfig> config) throws IOException {
+        return readFile(path, config, config.getReaderSpecificConfig().getParallelReads());
+    }
+
+    /**
+     * Creates the {@link Read} of a file.
+     *
+     * @param path
+     *            the path of the file to read
+     * @param config
+     *            the {@link TableReadConfig} used
+     * @param threads
+     *            the number of threads which may parse the matches of the XPath query in the file
+     * @return the decorated read of the file
+     * @throws IOException
+     *             if the file cannot be opened or parsed
+     */
+    @SuppressWarnings("resource") // closing the read is the responsibility of the caller
+    static Read<DataValue> readFile(final FSPath path, final TableReadConfig<XMLReaderConfig> config,
+            final int threads) throws IOException {
         final XMLReaderConfig xmlReaderConfig = config.getReaderSpecificConfig();
         if (xmlReaderConfig.useXPath()) {
-            return decorateForReading(new XPathRead(path, config), config);
+            return decorateForReading(new XPathRead(path, config, threads), config);
         } else {
             return decorateForReading(new XMLBlobRead(path, config), config);
         }
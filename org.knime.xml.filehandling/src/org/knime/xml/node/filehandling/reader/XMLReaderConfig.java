@@ -72,6 +72,8 @@ final class XMLReaderConfig implements ReaderSpecificConfig<XMLReaderConfig> {
     private String m_rootNamespacePrefix = "dns";
 
     private boolean m_failIfNotFound = false;
+
+    private int m_parallelReads = 1;
     
     /**
      * Constructor.
@@ -88,6 +90,7 @@ private XMLReaderConfig(final XMLReaderConfig toCopy) {
         setUseRootNamespace(toCopy.useRootNamespace());
         setRootNamespacePrefix(toCopy.getRootNamespacePrefix());
         setFailIfNotFound(toCopy.failIfNotFound());
+        setParallelReads(toCopy.getParallelReads());
     }
 
     @Override
@@ -215,4 +218,19 @@ public void setFailIfNotFound(final boolean failIfNotFound) {
         m_failIfNotFound = failIfNotFound;
     }
 
+    /**
+     * @return the number of files that are read in parallel
+     */
+    public int getParallelReads() {
+        return m_parallelReads;
+    }
+
+    /**
+     * @param parallelReads
+     *            the number of files that are read in parallel, values below 1 are treated as 1
+     */
+    public void setParallelReads(final int parallelReads) {
+        m_parallelReads = Math.max(1, parallelReads);
+    }
+
 }
@@ -123,6 +123,8 @@ final class XMLReaderNodeDialog2 extends AbstractPathTableReaderNodeDialog<XMLRe
 
     private final JCheckBox m_skipRowsChecker = new JCheckBox("Skip first data rows ");
 
+    private final JSpinner m_parallelReads = new JSpinner(new SpinnerNumberModel(1, 1, 64, 1));
+
     private final JSpinner m_skipRowsSpinner = new JSpinner(
             new SpinnerNumberModel(STEP_SIZE, ROW_START, ROW_END, STEP_SIZE));
 
@@ -181,6 +183,9 @@ final class XMLReaderNodeDialog2 extends AbstractPathTableReaderNodeDialog<XMLRe
         m_failIfNotFound
                 .setToolTipText("When unchecked and path does not match any input, empty table will be generated.");
 
+        m_parallelReads.setToolTipText(
+                "Number of threads parsing the files of a folder or the XPath matches of a large file.");
+
         m_useXPathFilter = new JCheckBox("Use XPath filter");
         m_useXPathFilter.addActionListener(l -> enableXPathComponents());
 
@@ -337,6 +342,8 @@ private JPanel createReaderOptionPanel() {
                 .setBorder(BorderFactory.createTitledBorder(BorderFactory.createEtchedBorder(), "Reader options"));
         readerOptionsPanel.add(new JLabel("Output column name"), gbc.insetRight(10).build());
         readerOptionsPanel.add(m_columnName, gbc.incX().build());
+        readerOptionsPanel.add(new JLabel("Reading threads"), gbc.resetX().incY().build());
+        readerOptionsPanel.add(m_parallelReads, gbc.incX().build());
         readerOptionsPanel.add(Box.createHorizontalBox(), gbc.fillHorizontal().incX().setWeightX(1).build());
 
         return readerOptionsPanel;
@@ -403,6 +410,7 @@ private void saveXMLReaderSettings(final XMLReaderConfig config) {
         config.setUseRootNamespace(m_useRootsNS.isSelected());
         config.setRootNamespacePrefix(m_rootNSPrefix.getText());
         config.setFailIfNotFound(m_failIfNotFound.isSelected());
+        config.setParallelReads((Integer)m_parallelReads.getValue());
     }
 
     @Override
@@ -425,6 +433,7 @@ protected XMLMultiTableReadConfig loadSettings(final NodeSettingsRO settings, fi
         m_useRootsNS.setSelected(xmlReaderConfig.useRootNamespace());
         m_rootNSPrefix.setText(xmlReaderConfig.getRootNamespacePrefix());
         m_failIfNotFound.setSelected(xmlReaderConfig.failIfNotFound());
+        m_parallelReads.setValue(Math.min(xmlReaderConfig.getParallelReads(), 64));
 
         enableXPathComponents();
 
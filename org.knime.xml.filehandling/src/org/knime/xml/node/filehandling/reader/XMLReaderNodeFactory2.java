@@ -91,8 +91,9 @@ private static TypeTester<DataType, DataType> createTypeTester(final DataType ty
     protected MultiTableReadFactory<FSPath, XMLReaderConfig, DataType> createMultiTableReadFactory(
             final GenericTableReader<FSPath, XMLReaderConfig, DataType, DataValue> reader) {
 
-        final var defaultFactory = super.createMultiTableReadFactory(reader);
-        return new XMLMultiTableReadFactory(defaultFactory);
+        final var prefetchingReader = new PrefetchingXMLReader(reader);
+        final var defaultFactory = super.createMultiTableReadFactory(prefetchingReader);
+        return new XMLMultiTableReadFactory(defaultFactory, prefetchingReader);
     }
 
     @Override
@@ -0,0 +1,580 @@
+/*
+ * ------------------------------------------------------------------------
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.filehandling.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+
+/**
+ * Splits an XML document into the elements matching a simple absolute path like <code>/dns:root/dns:record</code>
+ * without parsing it. The document is only tokenized as far as needed to find the start and end of the matching
+ * elements, i.e. the tags of their ancestors are read, the content of the matching elements is copied byte by byte.
+ * The returned records are stand-alone documents: the namespace declarations of the ancestors which are in scope of a
+ * record are added to its start tag. Parsing the records, which is the expensive part, can then be done concurrently.
+ * <p>
+ * Only documents encoded in UTF-8 (or US-ASCII) and without document type declaration can be split, since the entities
+ * declared by a DTD would be lost. The document is expected to be well-formed, malformed records are reported by the
+ * parser of the record.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class XMLRecordSplitter {
+
+    private static final Pattern SIMPLE_PATH =
+        Pattern.compile("(?:/(?:[A-Za-z_][\\w.\\-]*:)?[A-Za-z_][\\w.\\-]*)+");
+
+    private static final Pattern STEP = Pattern.compile("/(?:([A-Za-z_][\\w.\\-]*):)?([A-Za-z_][\\w.\\-]*)");
+
+    private static final Pattern ENCODING = Pattern.compile("encoding\\s*=\\s*[\"']([^\"']*)[\"']");
+
+    private final String[] m_stepNamespaces;
+
+    private final String[] m_stepNames;
+
+    private final InputStream m_in;
+
+    private final byte[] m_buf = new byte[1 << 16];
+
+    private int m_pos;
+
+    private int m_limit;
+
+    /** The bytes of the current record or start tag, only valid while recording. */
+    private byte[] m_record = new byte[1 << 12];
+
+    private int m_recordLength;
+
+    /** Index in the buffer from which on the bytes are recorded, -1 if not recording. */
+    private int m_recordFrom = -1;
+
+    /** The namespace declarations of the open ancestors, one map per element (null if it declares none). */
+    private final List<Map<String, String>> m_frames = new ArrayList<>();
+
+    private XMLRecordSplitter(final String[] stepNamespaces, final String[] stepNames, final InputStream in) {
+        m_stepNamespaces = stepNamespaces;
+        m_stepNames = stepNames;
+        m_in = in;
+    }
+
+    /**
+     * Creates a splitter for the given query.
+     *
+     * @param xpath the query
+     * @param nsContext the namespaces of the prefixes used in the query
+     * @param in the document, closing it is the responsibility of the caller
+     * @return the splitter or {@code null} if the query is not a simple absolute path or uses an unknown prefix
+     */
+    static XMLRecordSplitter create(final String xpath, final NamespaceContext nsContext, final InputStream in) {
+        final String query = xpath.trim();
+        if (!SIMPLE_PATH.matcher(query).matches()) {
+            return null;
+        }
+        final List<String> namespaces = new ArrayList<>();
+        final List<String> names = new ArrayList<>();
+        final Matcher m = STEP.matcher(query);
+        while (m.find()) {
+            final String prefix = m.group(1);
+            String uri = XMLConstants.NULL_NS_URI;
+            if (prefix != null) {
+                uri = nsContext.getNamespaceURI(prefix);
+                if (uri == null || uri.isEmpty()) {
+                    return null;
+                }
+            }
+            namespaces.add(uri);
+            names.add(m.group(2));
+        }
+        return new XMLRecordSplitter(namespaces.toArray(new String[0]), names.toArray(new String[0]), in);
+    }
+
+    /**
+     * Reads the prolog of the document up to the root element.
+     *
+     * @return {@code false} if the document cannot be split, because it is not encoded in UTF-8, declares a document
+     *         type or is empty
+     * @throws IOException if the document cannot be read
+     */
+    boolean readProlog() throws IOException {
+        if (!ensure(4)) {
+            return false;
+        }
+        final int b0 = m_buf[m_pos] & 0xFF;
+        final int b1 = m_buf[m_pos + 1] & 0xFF;
+        if (b0 == 0xEF && b1 == 0xBB && (m_buf[m_pos + 2] & 0xFF) == 0xBF) {
+            m_pos += 3;
+        } else if (b0 == 0xFE || b0 == 0xFF || b0 == 0 || b1 == 0) {
+            // UTF-16 or UTF-32
+            return false;
+        }
+        while (true) {
+            if (skipToTag() < 0 || !ensure(2)) {
+                return false;
+            }
+            final byte c = m_buf[m_pos + 1];
+            if (c == '?') {
+                startRecording();
+                skipPast("?>");
+                final String pi = new String(m_record, 0, stopRecording(), StandardCharsets.UTF_8);
+                if (pi.startsWith("<?xml") && !isUTF8(pi)) {
+                    return false;
+                }
+            } else if (c == '!') {
+                if (!ensure(4)) {
+                    return false;
+                }
+                if (m_buf[m_pos + 2] != '-' || m_buf[m_pos + 3] != '-') {
+                    // a document type declaration
+                    return false;
+                }
+                skipPast("-->");
+            } else {
+                return true;
+            }
+        }
+    }
+
+    private static boolean isUTF8(final String declaration) {
+        final Matcher m = ENCODING.matcher(declaration);
+        if (!m.find()) {
+            return true;
+        }
+        final String encoding = m.group(1).trim();
+        return "UTF-8".equalsIgnoreCase(encoding) || "UTF8".equalsIgnoreCase(encoding)
+            || "US-ASCII".equalsIgnoreCase(encoding) || "ASCII".equalsIgnoreCase(encoding);
+    }
+
+    /**
+     * Returns the next record, must only be called after {@link #readProlog()} returned {@code true}.
+     *
+     * @return the bytes of the next matching element as stand-alone document or {@code null} at the end of the
+     *         document
+     * @throws IOException if the document cannot be read or the structure of its tags is broken
+     */
+    byte[] next() throws IOException {
+        while (skipToTag() >= 0) {
+            if (!ensure(2)) {
+                throw new IOException("Unexpected end of the XML file.");
+            }
+            final byte c = m_buf[m_pos + 1];
+            if (c == '/') {
+                if (m_frames.isEmpty()) {
+                    throw new IOException("Unexpected end tag in the XML file.");
+                }
+                skipPast(">");
+                m_frames.remove(m_frames.size() - 1);
+            } else if (c == '!' || c == '?') {
+                skipMarkup();
+            } else {
+                final byte[] record = readStartTag();
+                if (record != null) {
+                    return record;
+                }
+            }
+        }
+        if (!m_frames.isEmpty()) {
+            throw new IOException("Unexpected end of the XML file.");
+        }
+        return null;
+    }
+
+    /**
+     * Reads the start tag at the current position and either returns the element as record, enters it or skips it.
+     */
+    private byte[] readStartTag() throws IOException {
+        final int depth = m_frames.size();
+        startRecording();
+        m_pos++;
+        final String name = readName();
+        Map<String, String> declarations = null;
+        boolean empty = false;
+        while (true) {
+            final int b = skipWhitespace();
+            if (b < 0) {
+                throw new IOException("Unexpected end of the XML file.");
+            }
+            if (b == '>') {
+                break;
+            }
+            if (b == '/') {
+                empty = true;
+                break;
+            }
+            final String attribute = readName();
+            if (skipWhitespace() != '=') {
+                throw new IOException("Invalid attribute '" + attribute + "' in the XML file.");
+            }
+            m_pos++;
+            final int quote = skipWhitespace();
+            if (quote != '"' && quote != '\'') {
+                throw new IOException("Invalid attribute '" + attribute + "' in the XML file.");
+            }
+            m_pos++;
+            final int valueStart = recordedLength();
+            skipPast(quote == '"' ? "\"" : "'");
+            recordUpToPosition();
+            if (attribute.equals("xmlns") || attribute.startsWith("xmlns:")) {
+                if (declarations == null) {
+                    declarations = new LinkedHashMap<>();
+                }
+                declarations.put(attribute,
+                    new String(m_record, valueStart, recordedLength() - 1 - valueStart, StandardCharsets.UTF_8));
+            }
+        }
+        if (depth >= m_stepNames.length || !matches(depth, name, declarations)) {
+            stopRecording();
+            skipRest(empty);
+            return null;
+        }
+        if (depth < m_stepNames.length - 1) {
+            stopRecording();
+            if (empty) {
+                skipPast(">");
+            } else {
+                m_pos++;
+                m_frames.add(declarations);
+            }
+            return null;
+        }
+        // the record, the declarations in scope are added in front of the end of its start tag
+        recordUpToPosition();
+        appendInScopeDeclarations(declarations);
+        skipRest(empty);
+        final int length = stopRecording();
+        return Arrays.copyOf(m_record, length);
+    }
+
+    private boolean matches(final int depth, final String name, final Map<String, String> declarations)
+        throws IOException {
+        final int colon = name.indexOf(':');
+        final String localName = colon < 0 ? name : name.substring(colon + 1);
+        if (!localName.equals(m_stepNames[depth])) {
+            return false;
+        }
+        final String attribute = colon < 0 ? "xmlns" : ("xmlns:" + name.substring(0, colon));
+        String uri = declarations == null ? null : declarations.get(attribute);
+        for (int i = m_frames.size() - 1; uri == null && i >= 0; i--) {
+            final Map<String, String> frame = m_frames.get(i);
+            uri = frame == null ? null : frame.get(attribute);
+        }
+        if (uri == null) {
+            if (colon >= 0) {
+                throw new IOException("The namespace prefix of the element '" + name + "' is not declared.");
+            }
+            uri = XMLConstants.NULL_NS_URI;
+        }
+        return unescape(uri).equals(m_stepNamespaces[depth]);
+    }
+
+    private void appendInScopeDeclarations(final Map<String, String> declarations) {
+        final Map<String, String> inScope = new LinkedHashMap<>();
+        for (int i = m_frames.size() - 1; i >= 0; i--) {
+            final Map<String, String> frame = m_frames.get(i);
+            if (frame != null) {
+                frame.forEach(inScope::putIfAbsent);
+            }
+        }
+        final StringBuilder b = new StringBuilder();
+        inScope.forEach((attribute, value) -> {
+            if (declarations == null || !declarations.containsKey(attribute)) {
+                b.append(' ').append(attribute).append("=\"").append(value.replace("\"", "&quot;")).append('"');
+            }
+        });
+        append(b.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String unescape(final String value) {
+        if (value.indexOf('&') < 0) {
+            return value;
+        }
+        return value.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"").replace("&apos;", "'")
+            .replace("&amp;", "&");
+    }
+
+    /**
+     * Skips the rest of the element whose start tag was read up to the closing <code>&gt;</code> or
+     * <code>/&gt;</code>, which is at the current position.
+     */
+    private void skipRest(final boolean empty) throws IOException {
+        if (empty) {
+            skipPast(">");
+            return;
+        }
+        m_pos++;
+        int depth = 1;
+        while (depth > 0) {
+            if (skipToTag() < 0 || !ensure(2)) {
+                throw new IOException("Unexpected end of the XML file.");
+            }
+            final byte c = m_buf[m_pos + 1];
+            if (c == '/') {
+                skipPast(">");
+                depth--;
+            } else if (c == '!' || c == '?') {
+                skipMarkup();
+            } else if (!skipTag()) {
+                depth++;
+            }
+        }
+    }
+
+    /**
+     * Skips a start tag, considering quoted attribute values.
+     *
+     * @return whether the tag is an empty element tag
+     */
+    private boolean skipTag() throws IOException {
+        int previous = 0;
+        int quote = 0;
+        while (true) {
+            if (m_pos >= m_limit && !fill()) {
+                throw new IOException("Unexpected end of the XML file.");
+            }
+            final int b = m_buf[m_pos++];
+            if (quote != 0) {
+                if (b == quote) {
+                    quote = 0;
+                }
+            } else if (b == '"' || b == '\'') {
+                quote = b;
+            } else if (b == '>') {
+                return previous == '/';
+            }
+            previous = b;
+        }
+    }
+
+    /**
+     * Skips a comment, CDATA section, processing instruction or declaration at the current position.
+     */
+    private void skipMarkup() throws IOException {
+        if (m_buf[m_pos + 1] == '?') {
+            skipPast("?>");
+        } else if (startsWith("<!--")) {
+            skipPast("-->");
+        } else if (startsWith("<![CDATA[")) {
+            skipPast("]]>");
+        } else {
+            skipPast(">");
+        }
+    }
+
+    private boolean startsWith(final String prefix) throws IOException {
+        if (!ensure(prefix.length())) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (m_buf[m_pos + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Moves the position behind the next occurrence of the given ASCII delimiter.
+     */
+    private void skipPast(final String delimiter) throws IOException {
+        final int n = delimiter.length();
+        int matched = 0;
+        while (matched < n) {
+            if (m_pos >= m_limit && !fill()) {
+                throw new IOException("Unexpected end of the XML file.");
+            }
+            final byte b = m_buf[m_pos++];
+            if (b == delimiter.charAt(matched)) {
+                matched++;
+            } else {
+                matched = partialMatch(delimiter, matched, b);
+            }
+        }
+    }
+
+    /**
+     * @return the length of the longest prefix of the delimiter which is a suffix of its first <code>matched</code>
+     *         characters followed by <code>b</code>
+     */
+    private static int partialMatch(final String delimiter, final int matched, final byte b) {
+        for (int k = matched; k > 0; k--) {
+            if (delimiter.charAt(k - 1) == b
+                && delimiter.regionMatches(0, delimiter, matched - k + 1, k - 1)) {
+                return k;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Moves the position to the next <code>&lt;</code>.
+     *
+     * @return the position in the buffer or -1 at the end of the document
+     */
+    private int skipToTag() throws IOException {
+        while (true) {
+            for (int i = m_pos; i < m_limit; i++) {
+                if (m_buf[i] == '<') {
+                    m_pos = i;
+                    return i;
+                }
+            }
+            m_pos = m_limit;
+            if (!fill()) {
+                return -1;
+            }
+        }
+    }
+
+    private int skipWhitespace() throws IOException {
+        while (true) {
+            if (m_pos >= m_limit && !fill()) {
+                return -1;
+            }
+            final int b = m_buf[m_pos];
+            if (b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+                return b;
+            }
+            m_pos++;
+        }
+    }
+
+    private String readName() throws IOException {
+        final int start = recordedLength();
+        while (true) {
+            if (m_pos >= m_limit && !fill()) {
+                throw new IOException("Unexpected end of the XML file.");
+            }
+            final int b = m_buf[m_pos];
+            if (b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '>' || b == '/' || b == '=') {
+                break;
+            }
+            m_pos++;
+        }
+        recordUpToPosition();
+        return new String(m_record, start, m_recordLength - start, StandardCharsets.UTF_8);
+    }
+
+    private void startRecording() {
+        m_recordLength = 0;
+        m_recordFrom = m_pos;
+    }
+
+    /**
+     * @return the number of bytes recorded up to the current position
+     */
+    private int recordedLength() {
+        return m_recordLength + m_pos - m_recordFrom;
+    }
+
+    private void recordUpToPosition() {
+        append(m_buf, m_recordFrom, m_pos - m_recordFrom);
+        m_recordFrom = m_pos;
+    }
+
+    private int stopRecording() {
+        recordUpToPosition();
+        m_recordFrom = -1;
+        return m_recordLength;
+    }
+
+    private void append(final byte[] bytes) {
+        append(bytes, 0, bytes.length);
+    }
+
+    private void append(final byte[] bytes, final int offset, final int length) {
+        if (m_recordLength + length > m_record.length) {
+            m_record = Arrays.copyOf(m_record, Math.max(2 * m_record.length, m_recordLength + length));
+        }
+        System.arraycopy(bytes, offset, m_record, m_recordLength, length);
+        m_recordLength += length;
+    }
+
+    /**
+     * Makes sure that at least the given number of bytes are available from the current position on.
+     *
+     * @return {@code false} if the document ends before
+     */
+    private boolean ensure(final int n) throws IOException {
+        while (m_limit - m_pos < n) {
+            if (!fill()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads more bytes into the buffer, keeping the bytes from the current position on and the recorded ones.
+     *
+     * @return {@code false} at the end of the document
+     */
+    private boolean fill() throws IOException {
+        if (m_recordFrom >= 0) {
+            recordUpToPosition();
+        }
+        final int remaining = m_limit - m_pos;
+        System.arraycopy(m_buf, m_pos, m_buf, 0, remaining);
+        m_limit = remaining;
+        m_pos = 0;
+        if (m_recordFrom >= 0) {
+            m_recordFrom = 0;
+        }
+        final int read = m_in.read(m_buf, m_limit, m_buf.length - m_limit);
+        if (read <= 0) {
+            return false;
+        }
+        m_limit += read;
+        return true;
+    }
+}
@@ -48,11 +48,21 @@
  */
 package org.knime.xml.node.filehandling.reader;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.xml.XMLConstants;
 import javax.xml.namespace.NamespaceContext;
@@ -64,6 +74,7 @@
 import javax.xml.stream.XMLStreamReader;
 
 import org.apache.commons.lang3.StringUtils;
+import org.knime.core.data.DataCell;
 import org.knime.core.data.DataValue;
 import org.knime.core.data.xml.XMLCellFactory;
 import org.knime.core.data.xml.XMLValue;
@@ -72,6 +83,8 @@
 import org.knime.core.data.xml.io.XMLCellReaderFactory;
 import org.knime.core.data.xml.util.DefaultNamespaceContext;
 import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.util.ThreadPool;
+import org.knime.core.util.ThreadUtils;
 import org.knime.filehandling.core.connections.FSPath;
 import org.knime.filehandling.core.node.table.reader.config.TableReadConfig;
 import org.knime.filehandling.core.node.table.reader.randomaccess.RandomAccessible;
@@ -87,8 +100,52 @@
  */
 final class XPathRead extends XMLRead {
 
+    /** Marks the end of the matches in {@link #m_cells}. */
+    private static final Object END = new Object();
+
+    /** The name of the thread reading the matches of {@link #m_reader}, followed by the name of the file. */
+    static final String PRODUCER_NAME = "XML Reader - ";
+
+    /**
+     * The number of bytes which can be read from {@link #m_input} to peek at the beginning of the file, e.g. for the
+     * namespace of the root element, and still rewind to its start.
+     */
+    private static final int MAX_PEEK = 1 << 18;
+
+    /** Configured once per thread, the factories are not guaranteed to be thread-safe. */
+    private static final ThreadLocal<XMLInputFactory> ROOT_INPUT_FACTORY =
+        ThreadLocal.withInitial(XPathRead::createRootInputFactory);
+
+    /** Reads the matches sequentially, {@code null} if the records are split and parsed concurrently. */
     private final XMLCellReader m_reader;
 
+    /** Splits the file into the matching records, {@code null} if the matches are read sequentially. */
+    private final XMLRecordSplitter m_splitter;
+
+    private final int m_threads;
+
+    private final Deque<Future<DataCell>> m_pendingRecords = new ArrayDeque<>();
+
+    /**
+     * The cells created by {@link #m_producer} from the matches of {@link #m_reader}, followed by {@link #END} or the
+     * exception which stopped the reading; {@code null} if the matches are read on the calling thread.
+     */
+    private BlockingQueue<Object> m_cells;
+
+    /** The thread reading the matches of {@link #m_reader}, {@code null} if they are read on the calling thread. */
+    private Thread m_producer;
+
+    private boolean m_cellsDone;
+
+    /** The stream of the file, the one of the super class unless the file had to be opened again. */
+    private InputStream m_stream;
+
+    /** {@link #m_stream}, buffered if necessary, such that it can be rewound to the start after peeking. */
+    private InputStream m_input;
+
+    /** Parses the records of {@link #m_splitter}, {@code null} if the matches are read sequentially. */
+    private ThreadPool m_pool;
+
     private final Path m_path;
 
     private final LimitedXPathMatcher m_xpathMatcher;
@@ -106,12 +163,16 @@ final class XPathRead extends XMLRead {
      *
      * @param path the {@link Path} to the file
      * @param config the {@link TableReadConfig} of the node
+     * @param threads the number of threads parsing the matches, if more than one and the query is a simple path,
+     *            the file is split into the matching records which are parsed concurrently, otherwise the matches
+     *            are parsed on a background thread
      * @throws IOException
      * @throws InvalidSettingsException
      * @throws ParserConfigurationException
      * @throws XMLStreamException
      */
-    XPathRead(final FSPath path, final TableReadConfig<XMLReaderConfig> config) throws IOException {
+    XPathRead(final FSPath path, final TableReadConfig<XMLReaderConfig> config, final int threads)
+        throws IOException {
         super(path, config);
 
         m_useRootNamespace = m_xmlReaderConfig.useRootNamespace();
@@ -119,14 +180,23 @@ final class XPathRead extends XMLRead {
         m_namespaces = m_xmlReaderConfig.getNamespaces();
         m_rootNamespacePrefix = m_xmlReaderConfig.getRootNamespacePrefix();
         m_path = path;
+        m_threads = threads;
+
+        m_stream = m_inputStream;
+        m_input = m_stream.markSupported() ? m_stream : new BufferedInputStream(m_stream);
 
         boolean initSuccessfull = false;
         try {
             performSanityChecks();
 
-            m_xpathMatcher = createXPathMatcher();
+            final NamespaceContext nsContext = createNamespaceContext();
+            m_xpathMatcher = createXPathMatcher(nsContext);
 
-            m_reader = createXMLReader();
+            m_splitter = m_threads > 1 && !m_xpathMatcher.rootMatches() ? createSplitter(nsContext) : null;
+            m_reader = m_splitter == null ? createXMLReader() : null;
+            if (m_reader != null && m_threads > 1) {
+                startProducer();
+            }
 
             initSuccessfull = true;
         } catch (ParserConfigurationException | XMLStreamException e) {
@@ -145,6 +215,12 @@ final class XPathRead extends XMLRead {
     @Override
     public RandomAccessible<DataValue> next() throws IOException {
         m_linesRead++;
+        if (m_splitter != null) {
+            return nextRecord();
+        }
+        if (m_cells != null) {
+            return nextCell();
+        }
 
         final XMLValue<Document> value = m_reader.readXML();
         if (value != null) {
@@ -202,18 +278,20 @@ private void checkForEmptyRootNamespace() throws IOException {
         }
     }
 
-    private LimitedXPathMatcher createXPathMatcher() throws IOException {
-        final NamespaceContext nsContext;
+    private NamespaceContext createNamespaceContext() throws IOException {
         if (!m_useRootNamespace) {
-            nsContext = new DefaultNamespaceContext(m_namespacePrefixes, m_namespaces);
+            return new DefaultNamespaceContext(m_namespacePrefixes, m_namespaces);
         } else { // adding the root namespace into the context
             final List<String> nsPrefixes = new ArrayList<>(Arrays.asList(m_namespacePrefixes));
             final List<String> namespaces = new ArrayList<>(Arrays.asList(m_namespaces));
             nsPrefixes.add(m_rootNamespacePrefix);
             getRootNameSpace(namespaces);
-            nsContext = new DefaultNamespaceContext(nsPrefixes.toArray(new String[nsPrefixes.size()]),
+            return new DefaultNamespaceContext(nsPrefixes.toArray(new String[nsPrefixes.size()]),
                 namespaces.toArray(new String[namespaces.size()]));
         }
+    }
+
+    private LimitedXPathMatcher createXPathMatcher(final NamespaceContext nsContext) throws IOException {
         try {
             return new LimitedXPathMatcher(m_xmlReaderConfig.getXPath(), nsContext);
         } catch (InvalidSettingsException e) {
@@ -259,15 +337,11 @@ private void validateXPathUsingRootPrefix() throws IOException {
      * @throws IOException
      */
     private void getRootNameSpace(final List<String> namespaces) throws FactoryConfigurationError, IOException {
-        final XMLInputFactory factory = XMLInputFactory.newInstance();
-        factory.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, "");
-        factory.setProperty(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
-        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
-        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
-
         XMLStreamReader parser = null;
-        try (final var inputStreamTmp = createInputStream()) {
-            parser = factory.createXMLStreamReader(inputStreamTmp);
+        m_input.mark(MAX_PEEK);
+        try {
+            // the parser does not close the stream, which is rewound afterwards
+            parser = ROOT_INPUT_FACTORY.get().createXMLStreamReader(m_input);
             extractRootNamespace(namespaces, parser);
         } catch (XMLStreamException e) {
             throw new IOException("The namespace of the root element cannot be read.", e);
@@ -280,6 +354,33 @@ private void getRootNameSpace(final List<String> namespaces) throws FactoryConfi
                 }
             }
         }
+        rewind();
+    }
+
+    private static XMLInputFactory createRootInputFactory() {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        factory.setProperty(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return factory;
+    }
+
+    /**
+     * Rewinds {@link #m_input} to the start of the file, which must have been marked before peeking. The file is only
+     * opened again if more than {@link #MAX_PEEK} bytes were read.
+     */
+    private void rewind() throws IOException {
+        try {
+            m_input.reset();
+        } catch (IOException e) { // NOSONAR the mark is invalid, reading from the start again
+            final CompressionAwareCountingInputStream stream = createInputStream();
+            if (m_stream != m_inputStream) {
+                m_stream.close();
+            }
+            m_stream = stream;
+            m_input = new BufferedInputStream(m_stream);
+        }
     }
 
     private static void extractRootNamespace(final List<String> namespaces, final XMLStreamReader parser)
@@ -302,17 +403,154 @@ private static void extractRootNamespace(final List<String> namespaces, final XM
 
     private XMLCellReader createXMLReader() throws ParserConfigurationException, XMLStreamException {
         if (m_xpathMatcher.rootMatches()) {
-            return XMLCellReaderFactory.createXMLCellReader(m_compressionAwareStream);
+            return XMLCellReaderFactory.createXMLCellReader(m_input);
         } else {
-            return XMLCellReaderFactory.createXPathXMLCellReader2(m_compressionAwareStream, m_xpathMatcher);
+            return XMLCellReaderFactory.createXPathXMLCellReader2(m_input, m_xpathMatcher);
         }
     }
 
+    /**
+     * Creates the {@link XMLRecordSplitter} reading {@link #m_input}, which is rewound if the file cannot be split.
+     *
+     * @return the splitter positioned at the root element or {@code null} if the file cannot be split
+     */
+    private XMLRecordSplitter createSplitter(final NamespaceContext nsContext) throws IOException {
+        final XMLRecordSplitter splitter = XMLRecordSplitter.create(m_xmlReaderConfig.getXPath(), nsContext, m_input);
+        if (splitter == null) {
+            return null;
+        }
+        m_input.mark(MAX_PEEK);
+        if (!splitter.readProlog()) {
+            rewind();
+            return null;
+        }
+        m_pool = XMLReadTasks.createPool(m_threads);
+        return splitter;
+    }
+
+    /**
+     * Returns the next record parsed by {@link #m_pool}. At most two records per thread are split ahead, their cells
+     * are returned in the order of the file.
+     */
+    private RandomAccessible<DataValue> nextRecord() throws IOException {
+        while (m_pendingRecords.size() < 2 * m_threads) {
+            final byte[] record = m_splitter.next();
+            if (record == null) {
+                break;
+            }
+            m_pendingRecords
+                .add(XMLReadTasks.submit(m_pool, () -> XMLCellFactory.create(new ByteArrayInputStream(record))));
+        }
+        final Future<DataCell> cell = m_pendingRecords.poll();
+        if (cell == null) {
+            return null;
+        }
+        try {
+            return createRandomAccessible(XMLReadTasks.await(cell));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw (IOException)new InterruptedIOException("Reading " + m_path + " was interrupted.").initCause(e);
+        } catch (ExecutionException e) {
+            throw new IOException("Could not parse XML file", e.getCause());
+        }
+    }
+
+    /**
+     * Reads the matches and creates their cells on a background thread, such that decompressing and parsing the file
+     * overlaps with the processing of the rows by the caller of {@link #next()}.
+     */
+    private void startProducer() {
+        m_cells = new ArrayBlockingQueue<>(2 * m_threads);
+        m_producer = ThreadUtils.threadWithContext(this::produceCells, PRODUCER_NAME + m_path.getFileName());
+        m_producer.setDaemon(true);
+        m_producer.start();
+    }
+
+    private void produceCells() {
+        Object last = END;
+        try {
+            for (XMLValue<Document> value = m_reader.readXML(); value != null; value = m_reader.readXML()) {
+                m_cells.put(XMLCellFactory.create(value.getDocumentSupplier().get()));
+            }
+        } catch (InterruptedException e) { // NOSONAR the read was closed, nobody waits for the end
+            return;
+        } catch (IOException | RuntimeException | Error e) { // NOSONAR rethrown by next()
+            last = e;
+        }
+        try {
+            m_cells.put(last);
+        } catch (InterruptedException e) { // NOSONAR the read was closed, nobody waits for the end
+            // nothing to do
+        }
+    }
+
+    private RandomAccessible<DataValue> nextCell() throws IOException {
+        if (m_cellsDone) {
+            return null;
+        }
+        final Object cell;
+        try {
+            cell = m_cells.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw (IOException)new InterruptedIOException("Reading " + m_path + " was interrupted.").initCause(e);
+        }
+        if (cell instanceof DataCell) {
+            return createRandomAccessible((DataCell)cell);
+        }
+        m_cellsDone = true;
+        if (cell instanceof IOException) {
+            throw (IOException)cell;
+        } else if (cell instanceof RuntimeException) {
+            throw new IOException("Could not parse XML file", (RuntimeException)cell);
+        } else if (cell instanceof Error) {
+            throw (Error)cell;
+        }
+        return null;
+    }
+
+    @Override
+    public long getProgress() {
+        return m_stream != null ? getCount(m_stream) : super.getProgress();
+    }
+
     @Override
     public void close() throws IOException {
+        for (Future<DataCell> cell : m_pendingRecords) {
+            cell.cancel(true);
+        }
+        m_pendingRecords.clear();
+        stopProducer();
         super.close();
         if (m_reader != null) {
             m_reader.close();
         }
+        if (m_stream != null && m_stream != m_inputStream) {
+            m_stream.close();
+        }
+    }
+
+    /**
+     * Stops {@link #m_producer}, which must not use {@link #m_reader} and the streams anymore when they are closed.
+     * The parser does not react to the interrupt, hence the producer may finish the current match first.
+     */
+    private void stopProducer() {
+        if (m_producer == null) {
+            return;
+        }
+        m_producer.interrupt();
+        // a producer blocked on the full queue can see the interrupt
+        m_cells.clear();
+        boolean interrupted = false;
+        while (m_producer.isAlive()) {
+            try {
+                m_producer.join();
+            } catch (InterruptedException e) { // NOSONAR the interrupt is restored once the producer stopped
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
     }
 }
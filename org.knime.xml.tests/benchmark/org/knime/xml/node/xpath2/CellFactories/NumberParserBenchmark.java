@@ -0,0 +1,175 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.xpath2.CellFactories;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link NumberParser} with the previous parsing of numeric XPath results, which called
+ * {@link Integer#parseInt(String)} and {@link Double#parseDouble(String)} and handled empty, <code>NaN</code> and
+ * <code>inf</code> values in the {@link NumberFormatException} handler.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NumberParserBenchmark {
+
+    private static final int SIZE = 1024;
+
+    /**
+     * The values to parse: only numbers, every second value empty, or every second value <code>NaN</code> or
+     * <code>inf</code>.
+     */
+    @Param({"dense", "sparse", "nan"})
+    public String data;
+
+    private String[] m_integers;
+
+    private String[] m_decimals;
+
+    /**
+     * Generates the values.
+     */
+    @Setup
+    public void setup() {
+        final Random random = new Random(42);
+        m_integers = new String[SIZE];
+        m_decimals = new String[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            if (i % 2 == 1 && data.equals("sparse")) {
+                m_integers[i] = "";
+                m_decimals[i] = "";
+            } else if (i % 2 == 1 && data.equals("nan")) {
+                m_integers[i] = i % 4 == 1 ? "NaN" : "inf";
+                m_decimals[i] = m_integers[i];
+            } else {
+                m_integers[i] = Integer.toString(random.nextInt(2000000) - 1000000);
+                m_decimals[i] = Double.toString(Math.round(random.nextDouble() * 1e6) / 1e3);
+            }
+        }
+    }
+
+    /**
+     * @return the sum of the parsed values
+     */
+    @Benchmark
+    public long parseIntJDK() {
+        long sum = 0;
+        for (String s : m_integers) {
+            try {
+                sum += Integer.parseInt(s);
+            } catch (NumberFormatException e) {
+                sum += s.isEmpty() ? 0 : -1;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @return the sum of the parsed values
+     */
+    @Benchmark
+    public long parseInt() {
+        long sum = 0;
+        for (String s : m_integers) {
+            final long value = NumberParser.parseInt(s);
+            if (value != NumberParser.NO_INT) {
+                sum += value;
+            } else if (NumberParser.isIntegerNaNOrInfinity(s)) {
+                sum--;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @return the sum of the parsed values
+     */
+    @Benchmark
+    public double parseDoubleJDK() {
+        double sum = 0;
+        for (String s : m_decimals) {
+            try {
+                sum += Double.parseDouble(s);
+            } catch (NumberFormatException e) {
+                sum += s.equalsIgnoreCase("inf") ? 1 : 0;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @return the sum of the parsed values
+     */
+    @Benchmark
+    public double parseDouble() {
+        double sum = 0;
+        for (String s : m_decimals) {
+            if (!NumberParser.isBlank(s)) {
+                sum += NumberParser.parseDouble(s);
+            }
+        }
+        return sum;
+    }
+}
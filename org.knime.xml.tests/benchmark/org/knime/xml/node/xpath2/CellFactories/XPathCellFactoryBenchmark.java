@@ -0,0 +1,214 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.xpath2.CellFactories;
+
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataColumnSpecCreator;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.xml.XMLCell;
+import org.knime.xml.node.xpath2.XPathNodeSettings;
+import org.knime.xml.node.xpath2.XPathNodeSettings.XPathMultiColOption;
+import org.knime.xml.node.xpath2.XPathNodeSettings.XPathOutput;
+import org.knime.xml.node.xpath2.XPathSettings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+/**
+ * Measures the throughput of the XPath node cell factories on generated documents. The documents consist of
+ * <code>records</code> item elements, each nested in <code>depth</code> levels of elements which use
+ * <code>namespaces</code> different namespaces. Every {@link XPathOutput} type is queried as single cell, collection
+ * and multiple columns, i.e. with the {@link XPathSingleCellFactory}, {@link XPathCollectionCellFactory} and
+ * {@link XPathMultiColCollectionCellFactory}.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XPathCellFactoryBenchmark {
+
+    /** Number of item elements in the document. */
+    @Param({"10", "1000"})
+    public int records;
+
+    /** Number of element levels around every item. */
+    @Param({"1", "8"})
+    public int depth;
+
+    /** Number of namespaces used by the elements, 0 for no namespace. */
+    @Param({"0", "4"})
+    public int namespaces;
+
+    /** Type of the query result. */
+    @Param({"Boolean", "Double", "Integer", "String", "Node"})
+    public XPathOutput output;
+
+    /** How multiple results are returned. */
+    @Param({"SingleCell", "CollectionCell", "MultipleColumns"})
+    public XPathMultiColOption multipleTagOption;
+
+    private AbstractXPathCellFactory m_factory;
+
+    private Document m_doc;
+
+    /**
+     * Generates the document and creates the cell factory.
+     *
+     * @throws Exception if the document cannot be parsed or the settings are invalid
+     */
+    @Setup
+    public void setup() throws Exception {
+        final DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(true);
+        m_doc = dbf.newDocumentBuilder().parse(new InputSource(new StringReader(createDocument())));
+
+        final XPathNodeSettings settings = new XPathNodeSettings();
+        settings.setInputColumn("xml");
+        settings.setRemoveInputColumn(false);
+        settings.setUseRootsNS(false);
+        final String[] prefixes = new String[namespaces];
+        final String[] uris = new String[namespaces];
+        for (int i = 0; i < namespaces; i++) {
+            prefixes[i] = "p" + i;
+            uris[i] = "http://www.knime.com/benchmark/" + i;
+        }
+        settings.setNsPrefixes(prefixes);
+        settings.setNamespaces(uris);
+
+        final XPathSettings xps = new XPathSettings();
+        xps.setNewColumn("result");
+        xps.setXpathQuery(createQuery());
+        xps.setReturnType(output);
+        xps.setMultipleTagOption(multipleTagOption);
+        settings.setXPathQueryList(Collections.singletonList(xps));
+
+        final DataTableSpec spec = new DataTableSpec(new DataColumnSpecCreator("xml", XMLCell.TYPE).createSpec());
+        switch (multipleTagOption) {
+            case SingleCell:
+                m_factory = XPathSingleCellFactory.create(spec, settings, xps);
+                break;
+            case MultipleColumns:
+                m_factory = XPathMultiColCollectionCellFactory.create(spec, settings, xps);
+                break;
+            default:
+                m_factory = XPathCollectionCellFactory.create(spec, settings, xps);
+        }
+    }
+
+    /**
+     * @return the cells of the query
+     */
+    @Benchmark
+    public DataCell[] getCells() {
+        return m_factory.getCells(m_doc);
+    }
+
+    private String prefix(final int level) {
+        return namespaces == 0 ? "" : "p" + (level % namespaces) + ":";
+    }
+
+    private String createDocument() {
+        final StringBuilder b = new StringBuilder("<root");
+        for (int i = 0; i < namespaces; i++) {
+            b.append(" xmlns:p").append(i).append("=\"http://www.knime.com/benchmark/").append(i).append('"');
+        }
+        b.append('>');
+        for (int r = 0; r < records; r++) {
+            for (int l = 0; l < depth; l++) {
+                b.append('<').append(prefix(l)).append("level").append(l).append('>');
+            }
+            final String item = prefix(depth) + "item";
+            b.append('<').append(item).append(" id=\"").append(r).append("\" name=\"item ").append(r).append("\">");
+            b.append("<value>").append(r * 0.25).append("</value>");
+            b.append("<flag>").append(r % 2 == 0).append("</flag>");
+            b.append("</").append(item).append('>');
+            for (int l = depth - 1; l >= 0; l--) {
+                b.append("</").append(prefix(l)).append("level").append(l).append('>');
+            }
+        }
+        return b.append("</root>").toString();
+    }
+
+    private String createQuery() {
+        final StringBuilder b = new StringBuilder("/root");
+        for (int l = 0; l < depth; l++) {
+            b.append('/').append(prefix(l)).append("level").append(l);
+        }
+        b.append('/').append(prefix(depth)).append("item");
+        switch (output) {
+            case Boolean:
+                return b.append("/flag").toString();
+            case Double:
+                return b.append("/value").toString();
+            case Integer:
+                return b.append("/@id").toString();
+            case String:
+                return b.append("/@name").toString();
+            default:
+                return b.toString();
+        }
+    }
+}
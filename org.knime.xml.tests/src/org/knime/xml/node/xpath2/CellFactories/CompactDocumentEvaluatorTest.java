@@ -0,0 +1,126 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.xpath2.CellFactories;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.knime.xml.node.xpath2.XPathNodeSettings;
+import org.knime.xml.node.xpath2.ui.XPathNamespaceContext;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+/**
+ * Tests that the {@link CompactDocumentEvaluator} selects the same values as the JDK's XPath implementation.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class CompactDocumentEvaluatorTest {
+
+    private static final String XML = "<?xml version=\"1.0\"?><!-- c --><r xmlns=\"urn:d\" xmlns:p=\"urn:p\">"
+        + "<i id=\"1\" p:t=\"x\">a<!--k-->b<j>c</j></i>"
+        + "<i id=\"2\"><i id=\"3\" t=\"y\">d<![CDATA[e<]]>f</i></i>"
+        + "<p:q>g<?pi data?></p:q>"
+        + "<i id=\"4\"><j>h</j><j>i</j></i></r>";
+
+    private static XPathNodeSettings createSettings() {
+        final XPathNodeSettings settings = new XPathNodeSettings();
+        settings.setNsPrefixes(new String[]{"p"});
+        settings.setNamespaces(new String[]{"urn:p"});
+        settings.setUseRootsNS(true);
+        settings.setRootsNSPrefix("dns");
+        return settings;
+    }
+
+    static Document parse(final String xml, final boolean coalescing) throws Exception {
+        final DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(true);
+        dbf.setCoalescing(coalescing);
+        return dbf.newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"/dns:r/dns:i/@id", "//dns:i/@id", "//dns:i[2]/@id", "//dns:j", "/dns:r/dns:i[1]/text()",
+        "//dns:i[@t='y']", "//dns:i[@p:t]/@id", "/dns:r/*", "//p:q", "//dns:i//dns:j", "//*[1]/@id",
+        "/dns:r/dns:i[@id='4']/dns:j[2]"})
+    void testEvaluate(final String query) throws Exception {
+        final StreamingXPath path = StreamingXPath.parse(query, Arrays.asList("p", "dns"), true);
+        assertThat(path).isNotNull();
+        // the document of the cell is read as the node does
+        final List<String> result = new CompactDocumentEvaluator(createSettings(), new StreamingXPath[]{path})
+            .evaluate(new DocumentSerializingReader(parse(XML, false)))[0];
+
+        final Document doc = parse(XML, true);
+        final XPath xpath = XPathFactory.newDefaultInstance().newXPath();
+        xpath.setNamespaceContext(new XPathNamespaceContext(new String[]{"p", "dns"}, new String[]{"urn:p", "urn:d"}));
+        final NodeList nodes = (NodeList)xpath.evaluate(query, doc, XPathConstants.NODESET);
+        final List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            expected.add(nodes.item(i).getTextContent());
+        }
+        assertThat(result).isEqualTo(expected);
+    }
+
+    @Test
+    void testDescendantsOnlyInCompactSubset() {
+        assertThat(StreamingXPath.parse("//dns:i", Arrays.asList("dns"), false)).isNull();
+        assertThat(StreamingXPath.parse("//@id", Arrays.asList("dns"), true)).isNull();
+        assertThat(StreamingXPath.parse("/dns:r//", Arrays.asList("dns"), true)).isNull();
+    }
+}
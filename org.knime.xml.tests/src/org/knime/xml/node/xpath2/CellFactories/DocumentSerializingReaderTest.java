@@ -0,0 +1,97 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.xpath2.CellFactories;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.Reader;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.w3c.dom.Document;
+
+/**
+ * Tests that the {@link DocumentSerializingReader} writes the document such that it is parsed into the same document.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class DocumentSerializingReaderTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {"<r/>", "<?xml version=\"1.0\"?><!-- c --><?pi?><r a=\"1\"/><!--d-->",
+        "<!DOCTYPE r><r xmlns=\"urn:d\" xmlns:p=\"urn:p\"><p:i p:t=\"x\">a<!--k-->b<j/></p:i></r>",
+        "<r a=\"&lt;&amp;&gt;&quot;'&#9;&#10;&#13;\">&lt;&amp;&gt;\"'\t\n&#13;<![CDATA[<&>]]></r>",
+        "<r><?pi data?><i>ä😀</i></r>"})
+    void testRoundTrip(final String xml) throws Exception {
+        final Document doc = CompactDocumentEvaluatorTest.parse(xml, false);
+        final String serialized = read(new DocumentSerializingReader(doc));
+        final Document parsed = CompactDocumentEvaluatorTest.parse(serialized, false);
+        assertThat(parsed.getDocumentElement().isEqualNode(doc.getDocumentElement())).as(serialized).isTrue();
+        // the document type is not written
+        final int children = doc.getChildNodes().getLength() - (doc.getDoctype() == null ? 0 : 1);
+        assertThat(parsed.getChildNodes().getLength()).isEqualTo(children);
+    }
+
+    @Test
+    void testSerializeElement() throws Exception {
+        final Document doc = CompactDocumentEvaluatorTest.parse("<r><i a=\"1\">x<j/></i><k/></r>", false);
+        assertThat(read(new DocumentSerializingReader(doc.getDocumentElement().getFirstChild())))
+            .isEqualTo("<i a=\"1\">x<j/></i>");
+    }
+
+    private static String read(final Reader reader) throws Exception {
+        final StringWriter writer = new StringWriter();
+        // a small buffer reads the text of a node in several parts
+        final char[] buf = new char[3];
+        int n;
+        while ((n = reader.read(buf, 0, buf.length)) >= 0) {
+            writer.write(buf, 0, n);
+        }
+        return writer.toString();
+    }
+}
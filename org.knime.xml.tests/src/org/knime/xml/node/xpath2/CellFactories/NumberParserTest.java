@@ -0,0 +1,119 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.xpath2.CellFactories;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Tests that {@link NumberParser} accepts the same texts and returns the same values as the JDK.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class NumberParserTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {"0", "-0", "+5", "00012", "2147483647", "-2147483648"})
+    void testParseInt(final String s) {
+        assertThat(NumberParser.parseInt(s)).isEqualTo(Integer.parseInt(s));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "-", "+", " 1", "1.0", "1e3", "2147483648", "-2147483649", "99999999999", "NaN"})
+    void testNoInt(final String s) {
+        assertThat(NumberParser.parseInt(s)).isEqualTo(NumberParser.NO_INT);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"0", "-0", "1.", ".5", " 12.5 ", "+1.5E-3", "0.1", "1e22", "1e23", "1e-22", "1e-400",
+        "1e400", "9007199254740993", "123456789012345678", "1.7976931348623157E308", "4.9E-324"})
+    void testParseDecimal(final String s) {
+        assertThat(Double.doubleToRawLongBits(NumberParser.parseDecimal(s)))
+            .isEqualTo(Double.doubleToRawLongBits(Double.parseDouble(s)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", " ", ".", "-", "e5", "1e", "1e+", "1.5f", "0x1p3", "NaN", "Infinity", "1,5", "1 2"})
+    void testNoDecimal(final String s) {
+        assertThat(NumberParser.parseDecimal(s)).isNaN();
+    }
+
+    @Test
+    void testParseDecimalRandom() {
+        final Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            final double d = random.nextBoolean() ? Double.longBitsToDouble(random.nextLong())
+                : Math.round(random.nextDouble() * 1e6) / 1e3;
+            if (!Double.isNaN(d) && !Double.isInfinite(d)) {
+                final String s = Double.toString(d);
+                assertThat(NumberParser.parseDecimal(s)).as(s).isEqualTo(d);
+            }
+        }
+    }
+
+    @Test
+    void testParseDouble() {
+        assertThat(NumberParser.parseDouble("nan")).isNaN();
+        assertThat(NumberParser.parseDouble("INF")).isEqualTo(Double.POSITIVE_INFINITY);
+        assertThat(NumberParser.parseDouble("-inf")).isEqualTo(Double.NEGATIVE_INFINITY);
+        assertThat(NumberParser.parseDouble("-Infinity")).isEqualTo(Double.NEGATIVE_INFINITY);
+        assertThat(NumberParser.parseDouble("0x1p3")).isEqualTo(8.0);
+        assertThatThrownBy(() -> NumberParser.parseDouble("abc")).isInstanceOf(NumberFormatException.class);
+    }
+
+    @Test
+    void testIsBlank() {
+        assertThat(NumberParser.isBlank("")).isTrue();
+        assertThat(NumberParser.isBlank(" \t\n")).isTrue();
+        assertThat(NumberParser.isBlank(" 1 ")).isFalse();
+    }
+}
@@ -0,0 +1,528 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.xpath2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.knime.base.node.preproc.ungroup.UngroupOperation2;
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataColumnSpec;
+import org.knime.core.data.DataColumnSpecCreator;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.DataType;
+import org.knime.core.data.RowKey;
+import org.knime.core.data.collection.CollectionDataValue;
+import org.knime.core.data.container.AbstractCellFactory;
+import org.knime.core.data.container.ColumnRearranger;
+import org.knime.core.data.def.DefaultRow;
+import org.knime.core.data.def.StringCell;
+import org.knime.core.data.filestore.internal.NotInWorkflowDataRepository;
+import org.knime.core.data.xml.XMLCell;
+import org.knime.core.data.xml.XMLCellFactory;
+import org.knime.core.node.BufferedDataContainer;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.DefaultNodeProgressMonitor;
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.Node;
+import org.knime.core.node.NodeFactory;
+import org.knime.core.node.NodeSettings;
+import org.knime.core.node.port.PortObjectSpec;
+import org.knime.core.node.streamable.BufferedDataTableRowOutput;
+import org.knime.core.node.streamable.DataTableRowInput;
+import org.knime.core.node.streamable.InputPortRole;
+import org.knime.core.node.streamable.MergeOperator;
+import org.knime.core.node.streamable.PartitionInfo;
+import org.knime.core.node.streamable.PortInput;
+import org.knime.core.node.streamable.PortObjectInput;
+import org.knime.core.node.streamable.PortOutput;
+import org.knime.core.node.streamable.StreamableOperator;
+import org.knime.core.node.streamable.StreamableOperatorInternals;
+import org.knime.core.node.workflow.FlowObjectStack;
+import org.knime.core.node.workflow.FlowVariable;
+import org.knime.core.node.workflow.NodeID;
+import org.knime.core.node.workflow.SingleNodeContainer;
+import org.knime.core.node.workflow.VariableType;
+import org.knime.xml.node.xpath2.CellFactories.XPathCollectionCellFactory;
+import org.knime.xml.node.xpath2.CellFactories.XPathMultiColCollectionCellFactory;
+import org.knime.xml.node.xpath2.CellFactories.XPathSingleCellFactory;
+import org.knime.xml.node.xpath2.XPathNodeSettings.XPathMultiColOption;
+import org.knime.xml.node.xpath2.XPathNodeSettings.XPathOutput;
+
+/**
+ * Tests that the {@link XPathNodeModel} creates the same table as before it ungrouped the query results and wrote the
+ * multiple column values itself. The expected table is created the way the node did it before: the query results are
+ * appended as collection columns, ungrouped by the {@link UngroupOperation2} and the multiple column collections are
+ * split into their columns.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class XPathNodeModelTest {
+
+    /** The input documents, one of them is missing and one contains none of the queried elements. */
+    private static final String[] DOCUMENTS = {
+        "<r id=\"1\" label=\"id\"><a>a1</a><a>a2</a><a>a3</a><b>b1</b><c>c1</c><c>c2</c>"
+            + "<v name=\"x\">1</v><v name=\"a\">2</v><v name=\"id\">3</v></r>",
+        "<r id=\"2\" label=\"id\"><b>b1</b><b>b2</b><v name=\"y\">4</v><v name=\"x\">5</v></r>",
+        "<r id=\"3\" label=\"id\"/>",
+        null,
+        "<r id=\"5\" label=\"id\"><a>a1</a><c>c1</c><c>c2</c><c>c3</c><c>c4</c></r>"};
+
+    private static final NodeID NODE_ID = new NodeID(0);
+
+    private ExecutionContext m_exec;
+
+    /** The flow variables pushed by the last created model. */
+    private FlowObjectStack m_variables;
+
+    @BeforeEach
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    void createExecutionContext() {
+        m_exec = new ExecutionContext(new DefaultNodeProgressMonitor(), new Node((NodeFactory)new XPathNodeFactory()),
+            SingleNodeContainer.MemoryPolicy.CacheSmallInMemory, NotInWorkflowDataRepository.newInstance());
+    }
+
+    private static XPathSettings createQuery(final String column, final String query, final XPathOutput type,
+        final XPathMultiColOption option) {
+        final XPathSettings xps = new XPathSettings();
+        xps.setNewColumn(column);
+        xps.setXpathQuery(query);
+        xps.setReturnType(type);
+        xps.setMultipleTagOption(option);
+        return xps;
+    }
+
+    private static XPathSettings createQuery(final String column, final String query, final XPathMultiColOption option,
+        final String attributeForColName) {
+        final XPathSettings xps = createQuery(column, query, XPathOutput.String, option);
+        xps.setUseAttributeForColName(true);
+        xps.setAttributeForColName(attributeForColName);
+        return xps;
+    }
+
+    private static NodeSettings createSettings(final boolean removeInputColumn, final XPathSettings... queries) {
+        final XPathNodeSettings settings = new XPathNodeSettings();
+        settings.setInputColumn("xml");
+        settings.setRemoveInputColumn(removeInputColumn);
+        settings.setNsPrefixes(new String[0]);
+        settings.setNamespaces(new String[0]);
+        settings.setUseRootsNS(false);
+        settings.setQueryStatistics(true);
+        settings.setXPathQueryList(List.of(queries));
+        final NodeSettings nodeSettings = new NodeSettings("xpath");
+        settings.saveSettings(nodeSettings);
+        return nodeSettings;
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private XPathNodeModel createModel(final NodeSettings settings) throws Exception {
+        // the node provides the flow object stacks to which the statistics are pushed
+        final Node node = new Node((NodeFactory)new XPathNodeFactory());
+        m_variables = new FlowObjectStack(NODE_ID);
+        node.setFlowObjectStack(new FlowObjectStack(NODE_ID), m_variables);
+        final XPathNodeModel model = (XPathNodeModel)node.getNodeModel();
+        model.validateSettings(settings);
+        model.loadValidatedSettingsFrom(settings);
+        return model;
+    }
+
+    private BufferedDataTable createTable(final String... documents) throws Exception {
+        return createTable(0, documents);
+    }
+
+    private BufferedDataTable createTable(final long firstRow, final String... documents) throws Exception {
+        final DataTableSpec spec = new DataTableSpec(new DataColumnSpecCreator("xml", XMLCell.TYPE).createSpec(),
+            new DataColumnSpecCreator("id", StringCell.TYPE).createSpec());
+        final BufferedDataContainer container = m_exec.createDataContainer(spec);
+        for (int i = 0; i < documents.length; i++) {
+            final DataCell xml =
+                documents[i] == null ? DataType.getMissingCell() : XMLCellFactory.create(documents[i]);
+            container.addRowToTable(new DefaultRow(RowKey.createRowKey(firstRow + i), xml,
+                new StringCell("id" + (firstRow + i))));
+        }
+        container.close();
+        return container.getTable();
+    }
+
+    /**
+     * Queries whose columns are known before the execution, ungrouping two queries whose empty results are empty
+     * collections and one whose empty results are missing.
+     */
+    private static NodeSettings createUngroupSettings(final boolean removeInputColumn) {
+        final XPathSettings a = createQuery("a", "/r/a", XPathOutput.String, XPathMultiColOption.UngroupToRows);
+        a.setMissingCellOnEmptySet(false);
+        final XPathSettings b = createQuery("b", "/r/b", XPathOutput.String, XPathMultiColOption.UngroupToRows);
+        b.setMissingCellOnEmptySet(false);
+        final XPathSettings c = createQuery("c", "/r/c", XPathOutput.String, XPathMultiColOption.UngroupToRows);
+        return createSettings(removeInputColumn,
+            createQuery("number", "/r/@id", XPathOutput.Integer, XPathMultiColOption.SingleCell), a,
+            createQuery("all a", "/r/a", XPathOutput.String, XPathMultiColOption.CollectionCell), b, c);
+    }
+
+    /**
+     * Queries whose column names are taken from the documents, including names which are used by other columns.
+     */
+    private static NodeSettings createMultiColumnSettings() {
+        return createSettings(false,
+            createQuery("a", "/r/a", XPathOutput.String, XPathMultiColOption.MultipleColumns),
+            createQuery("v", "/r/v", XPathMultiColOption.MultipleColumns, "/r/v/@name"),
+            createQuery("label", "/r/@id", XPathMultiColOption.SingleCell, "/r/@label"),
+            createQuery("a", "/r/c", XPathOutput.String, XPathMultiColOption.UngroupToRows),
+            createQuery("a", "/r/b", XPathOutput.String, XPathMultiColOption.CollectionCell));
+    }
+
+    @Test
+    void testUngroupToRows() throws Exception {
+        final BufferedDataTable in = createTable(DOCUMENTS);
+        for (final boolean removeInputColumn : new boolean[]{false, true}) {
+            final NodeSettings settings = createUngroupSettings(removeInputColumn);
+            final XPathNodeModel model = createModel(settings);
+            final DataTableSpec spec = (DataTableSpec)model.configure(new DataTableSpec[]{in.getDataTableSpec()})[0];
+            final BufferedDataTable out = model.execute(new BufferedDataTable[]{in}, m_exec)[0];
+            final BufferedDataTable expected = executeAsBefore(settings, in);
+
+            assertThat(toStrings(spec)).isEqualTo(toStrings(expected.getDataTableSpec()));
+            assertThat(toStrings(out.getDataTableSpec())).isEqualTo(toStrings(expected.getDataTableSpec()));
+            assertThat(toStrings(out)).isEqualTo(toStrings(expected));
+        }
+    }
+
+    @Test
+    void testMultipleColumns() throws Exception {
+        final BufferedDataTable in = createTable(DOCUMENTS);
+        final NodeSettings settings = createMultiColumnSettings();
+        final XPathNodeModel model = createModel(settings);
+        assertThat(model.configure(new DataTableSpec[]{in.getDataTableSpec()})[0]).as("spec depends on the data")
+            .isNull();
+        final BufferedDataTable out = model.execute(new BufferedDataTable[]{in}, m_exec)[0];
+        final BufferedDataTable expected = executeAsBefore(settings, in);
+
+        assertThat(toStrings(out.getDataTableSpec())).isEqualTo(toStrings(expected.getDataTableSpec()))
+            .contains("id(#0)");
+        assertThat(toStrings(out)).isEqualTo(toStrings(expected));
+    }
+
+    @Test
+    void testDistributedPartitions() throws Exception {
+        final NodeSettings settings = createUngroupSettings(true);
+        final XPathNodeModel model = createModel(settings);
+        assertThat(model.getInputPortRoles()).containsExactly(InputPortRole.DISTRIBUTED_STREAMABLE);
+
+        final BufferedDataTable[] partitions =
+            {createTable(0, DOCUMENTS[0], DOCUMENTS[1], DOCUMENTS[2]), createTable(3, DOCUMENTS[3], DOCUMENTS[4])};
+        final List<String> rows = new ArrayList<>();
+        for (BufferedDataTable output : executeStreamed(model, partitions)) {
+            rows.addAll(toStrings(output));
+        }
+
+        // the row keys of the partitions are unique as they are derived from the input row keys
+        final List<String> expected = new ArrayList<>();
+        for (BufferedDataTable partition : partitions) {
+            expected.addAll(toStrings(executeAsBefore(settings, partition)));
+        }
+        assertThat(rows).isEqualTo(expected);
+        assertThat(getStatistics()).as("published query statistics").isNotNull();
+    }
+
+    @Test
+    void testStreamingSchemaPass() throws Exception {
+        final BufferedDataTable in = createTable(DOCUMENTS);
+        final NodeSettings settings = createMultiColumnSettings();
+        final XPathNodeModel model = createModel(settings);
+        assertThat(model.getInputPortRoles()).containsExactly(InputPortRole.NONDISTRIBUTED_NONSTREAMABLE);
+
+        final BufferedDataTable out = executeStreamed(model, in)[0];
+        final BufferedDataTable expected = executeAsBefore(settings, in);
+        assertThat(toStrings(out.getDataTableSpec())).isEqualTo(toStrings(expected.getDataTableSpec()));
+        assertThat(toStrings(out)).isEqualTo(toStrings(expected));
+        assertThat(getStatistics()).as("published query statistics").isNotNull();
+    }
+
+    /**
+     * Executes the model in the order of the streaming executor: the intermediate runs while the model iterates, then
+     * one final run per partition, all partitions at the same time. The execution is finished only if the model
+     * provides a merge operator.
+     *
+     * @return the output of every partition
+     */
+    private BufferedDataTable[] executeStreamed(final XPathNodeModel model, final BufferedDataTable... partitions)
+        throws Exception {
+        final PortObjectSpec[] inSpecs = {partitions[0].getDataTableSpec()};
+        final boolean streamable = model.getInputPortRoles()[0].isStreamable();
+        final MergeOperator merge = model.createMergeOperator();
+        StreamableOperatorInternals internals = model.createInitialStreamableOperatorInternals();
+        while (model.iterate(internals)) {
+            final StreamableOperator operator = model.createStreamableOperator(new PartitionInfo(0, 1), inSpecs);
+            operator.loadInternals(internals);
+            operator.runIntermediate(new PortInput[]{new PortObjectInput(partitions[0])}, m_exec);
+            internals = merge == null ? operator.saveInternals()
+                : merge.mergeIntermediate(new StreamableOperatorInternals[]{operator.saveInternals()});
+        }
+        final DataTableSpec spec = (DataTableSpec)model.computeFinalOutputSpecs(internals, inSpecs)[0];
+
+        final BufferedDataTable[] outputs = new BufferedDataTable[partitions.length];
+        final StreamableOperatorInternals[] partitionInternals = new StreamableOperatorInternals[partitions.length];
+        final ExecutorService executor = Executors.newFixedThreadPool(partitions.length);
+        try {
+            final List<Future<?>> runs = new ArrayList<>();
+            for (int i = 0; i < partitions.length; i++) {
+                final StreamableOperator operator =
+                    model.createStreamableOperator(new PartitionInfo(i, partitions.length), inSpecs);
+                operator.loadInternals(internals);
+                final int index = i;
+                runs.add(executor.submit(() -> {
+                    final PortInput input = streamable ? new DataTableRowInput(partitions[index])
+                        : new PortObjectInput(partitions[index]);
+                    final BufferedDataTableRowOutput output =
+                        new BufferedDataTableRowOutput(m_exec.createDataContainer(spec));
+                    operator.runFinal(new PortInput[]{input}, new PortOutput[]{output}, m_exec);
+                    outputs[index] = output.getDataTable();
+                    partitionInternals[index] = operator.saveInternals();
+                    return null;
+                }));
+            }
+            for (Future<?> run : runs) {
+                run.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        if (merge != null) {
+            model.finishStreamableExecution(merge.mergeFinal(partitionInternals), m_exec, new PortOutput[1]);
+        }
+        return outputs;
+    }
+
+    /**
+     * @return the query statistics pushed by the last created model, <code>null</code> if they were not published
+     */
+    private String getStatistics() {
+        return m_variables.peekFlowVariable(XPathNodeModel.STATISTICS_VARIABLE, VariableType.StringType.INSTANCE)
+            .map(FlowVariable::getStringValue).orElse(null);
+    }
+
+    private static List<String> toStrings(final DataTableSpec spec) {
+        final List<String> columns = new ArrayList<>();
+        for (DataColumnSpec column : spec) {
+            columns.add(column.getName());
+            columns.add(column.getType().toString());
+        }
+        return columns;
+    }
+
+    private static List<String> toStrings(final BufferedDataTable table) {
+        final List<String> rows = new ArrayList<>();
+        for (DataRow row : table) {
+            final StringBuilder b = new StringBuilder(row.getKey().getString());
+            for (DataCell cell : row) {
+                b.append(" | ").append(cell);
+            }
+            rows.add(b.toString());
+        }
+        return rows;
+    }
+
+    /* ---------------- the execution before the node ungrouped and expanded the results itself ---------------- */
+
+    /**
+     * Appends the collection columns of the queries, renames the columns whose names are taken from an attribute,
+     * ungroups the collections to rows and splits the multiple column collections, one table after the other.
+     */
+    private BufferedDataTable executeAsBefore(final NodeSettings nodeSettings, final BufferedDataTable in)
+        throws Exception {
+        final XPathNodeSettings settings = new XPathNodeSettings();
+        settings.loadSettingsModel(nodeSettings);
+        final DataTableSpec spec = in.getDataTableSpec();
+        final List<Integer> multiColPos = new ArrayList<Integer>();
+        final List<Integer> ungroupIndices = new ArrayList<Integer>();
+
+        final ColumnRearranger rearranger = new ColumnRearranger(spec);
+        final int offset = spec.getNumColumns() - (settings.getRemoveInputColumn() ? 1 : 0);
+        int xpsIndex = 0;
+        final Set<String> colNames = new HashSet<String>();
+        for (XPathSettings xps : settings.getXPathQueryList()) {
+            xps.setColIndexOfOutputTable(offset + xpsIndex);
+            xpsIndex++;
+            final String specName = XPathNodeSettings.uniqueName(xps.getNewColumn(), "", 0, colNames);
+            colNames.add(specName);
+
+            final XPathMultiColOption option = xps.getMultipleTagOption();
+            if (option.equals(XPathMultiColOption.MultipleColumns)) {
+                xpsIndex++;
+                rearranger.append(XPathMultiColCollectionCellFactory.create(spec, settings, xps, specName));
+                multiColPos.add(xps.getCurrentColumnIndex());
+            } else if (option.equals(XPathMultiColOption.SingleCell)) {
+                rearranger.append(XPathSingleCellFactory.create(spec, settings, xps, specName));
+            } else {
+                if (option.equals(XPathMultiColOption.UngroupToRows)) {
+                    ungroupIndices.add(xps.getCurrentColumnIndex());
+                }
+                rearranger.append(XPathCollectionCellFactory.create(spec, settings, xps, specName));
+            }
+        }
+        if (settings.getRemoveInputColumn()) {
+            rearranger.remove(spec.findColumnIndex(settings.getInputColumn()));
+        }
+        BufferedDataTable table = m_exec.createColumnRearrangeTable(in, rearranger, m_exec);
+        table = m_exec.createSpecReplacerTable(table, renameSingleNameCells(settings, table.getDataTableSpec()));
+
+        if (!ungroupIndices.isEmpty()) {
+            final int[] indices = ungroupIndices.stream().mapToInt(Integer::intValue).toArray();
+            table = new UngroupOperation2(false, false, true, indices).compute(m_exec, table, null);
+        }
+        if (!multiColPos.isEmpty()) {
+            table = m_exec.createColumnRearrangeTable(table, insertMultiColumns(settings, multiColPos, table), m_exec);
+        }
+        return table;
+    }
+
+    private static DataTableSpec renameSingleNameCells(final XPathNodeSettings settings, final DataTableSpec spec) {
+        final Set<String> usedNames = new HashSet<String>(List.of(spec.getColumnNames()));
+        for (XPathSettings x : settings.getXPathQueryList()) {
+            usedNames.remove(spec.getColumnSpec(x.getCurrentColumnIndex()).getName());
+        }
+        final DataColumnSpec[] colSpecs = new DataColumnSpec[spec.getNumColumns()];
+        for (int i = 0; i < colSpecs.length; i++) {
+            colSpecs[i] = spec.getColumnSpec(i);
+        }
+        for (XPathSettings x : settings.getXPathQueryList()) {
+            if (!x.getMultipleTagOption().equals(XPathMultiColOption.MultipleColumns)
+                && x.getUseAttributeForColName()) {
+                final String name = XPathNodeSettings.uniqueName(x.getColumnNames().get(0), "", 0, usedNames);
+                usedNames.add(name);
+                final DataColumnSpecCreator creator = new DataColumnSpecCreator(colSpecs[x.getCurrentColumnIndex()]);
+                creator.setName(name);
+                colSpecs[x.getCurrentColumnIndex()] = creator.createSpec();
+            }
+        }
+        return new DataTableSpec(colSpecs);
+    }
+
+    private static ColumnRearranger insertMultiColumns(final XPathNodeSettings settings,
+        final List<Integer> multiColPos, final BufferedDataTable in) {
+        final DataTableSpec spec = in.getDataTableSpec();
+        final ColumnRearranger rearranger = new ColumnRearranger(spec);
+        final Set<String> usedColNames = new HashSet<String>();
+        for (int i = 0; i < spec.getNumColumns(); i++) {
+            if (!multiColPos.contains(i)) {
+                usedColNames.add(spec.getColumnSpec(i).getName());
+            } else {
+                i++;
+            }
+        }
+
+        final Iterator<Integer> positions = multiColPos.iterator();
+        int offset = 0;
+        for (XPathSettings x : settings.getXPathQueryList()) {
+            if (!x.getMultipleTagOption().equals(XPathMultiColOption.MultipleColumns)) {
+                continue;
+            }
+            final List<String> columnNames = x.getColumnNames();
+            final int pos = positions.next();
+            final DataType type = spec.getColumnSpec(pos).getType().getCollectionElementType();
+            final DataColumnSpec[] colSpecs = new DataColumnSpec[columnNames.size()];
+            final Map<String, Integer> reverseColNames = new HashMap<String, Integer>();
+            for (int i = 0; i < colSpecs.length; i++) {
+                final String name = XPathNodeSettings.uniqueName(columnNames.get(i), "", i, usedColNames);
+                usedColNames.add(name);
+                colSpecs[i] = new DataColumnSpecCreator(name, type).createSpec();
+                reverseColNames.put(columnNames.get(i), i);
+            }
+            rearranger.insertAt(offset + pos + 2, new SplitCollectionCellFactory(colSpecs, reverseColNames, pos));
+            rearranger.remove(offset + pos + 1, offset + pos);
+            offset += colSpecs.length - 2;
+        }
+        return rearranger;
+    }
+
+    /**
+     * Inserts the values of a collection into the columns of the names in the following name collection.
+     */
+    private static final class SplitCollectionCellFactory extends AbstractCellFactory {
+
+        private final Map<String, Integer> m_reverseColNames;
+
+        private final int m_valueColIndex;
+
+        SplitCollectionCellFactory(final DataColumnSpec[] specs, final Map<String, Integer> reverseColNames,
+            final int valueColIndex) {
+            super(true, specs);
+            m_reverseColNames = reverseColNames;
+            m_valueColIndex = valueColIndex;
+        }
+
+        @Override
+        public DataCell[] getCells(final DataRow row) {
+            final DataCell[] cells = new DataCell[getColumnSpecs().length];
+            if (!row.getCell(m_valueColIndex).isMissing()) {
+                final Iterator<DataCell> values = ((CollectionDataValue)row.getCell(m_valueColIndex)).iterator();
+                final Iterator<DataCell> names = ((CollectionDataValue)row.getCell(m_valueColIndex + 1)).iterator();
+                while (values.hasNext()) {
+                    cells[m_reverseColNames.get(names.next().toString())] = values.next();
+                }
+            }
+            for (int i = 0; i < cells.length; i++) {
+                if (cells[i] == null) {
+                    cells[i] = DataType.getMissingCell();
+                }
+            }
+            return cells;
+        }
+    }
+}
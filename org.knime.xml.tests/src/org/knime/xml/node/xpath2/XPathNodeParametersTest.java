@@ -76,15 +76,15 @@ private static SnapshotTestConfiguration getConfig() {
         return SnapshotTestConfiguration.builder() //
             .withInputPortObjectSpecs(createInputPortSpecs()) //
             .testJsonFormsForModel(XPathNodeParameters.class) //
-            .testJsonFormsWithInstance(SettingsType.MODEL, () -> readSettings()) //
-            .testNodeSettingsStructure(() -> readSettings()) //
+            .testJsonFormsWithInstance(SettingsType.MODEL, () -> readSettings("XPathNodeParameters.xml")) //
+            .testNodeSettingsStructure(() -> readSettings("XPathNodeParameters.xml")) //
             .build();
     }
 
-    private static XPathNodeParameters readSettings() {
+    static XPathNodeParameters readSettings(final String fileName) {
         try {
             var path = getSnapshotPath(XPathNodeParameters.class).getParent().resolve("node_settings")
-                .resolve("XPathNodeParameters.xml");
+                .resolve(fileName);
             try (var fis = new FileInputStream(path.toFile())) {
                 var nodeSettings = NodeSettings.loadFromXML(fis);
                 return NodeParametersUtil.loadSettings(nodeSettings.getNodeSettings(SettingsType.MODEL.getConfigKey()),
@@ -95,7 +95,7 @@ private static XPathNodeParameters readSettings() {
         }
     }
 
-    private static PortObjectSpec[] createInputPortSpecs() {
+    static PortObjectSpec[] createInputPortSpecs() {
         return new PortObjectSpec[]{createDefaultTestTableSpec()};
     }
 
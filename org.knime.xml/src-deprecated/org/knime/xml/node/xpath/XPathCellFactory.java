@@ -49,21 +49,14 @@
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 
-import javax.xml.XMLConstants;
-import javax.xml.namespace.NamespaceContext;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
 import org.knime.core.data.DataCell;
 import org.knime.core.data.DataColumnSpec;
@@ -83,6 +76,7 @@
 import org.knime.core.data.xml.XMLValue;
 import org.knime.core.node.InvalidSettingsException;
 import org.knime.xml.node.xpath.XPathNodeSettings.XPathOutput;
+import org.knime.xml.node.xpath2.XPathExpressionCache;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -97,7 +91,10 @@ final class XPathCellFactory extends AbstractCellFactory {
 
     private XPathNodeSettings m_settings;
     private int m_xmlIndex;
-    private XPathExpression m_xpathExpr;
+    /** true if the query has to be compiled with the root's namespace of
+     * every document. The compiled expressions are not stored in the
+     * factory, since it is processed by several threads. */
+    private boolean m_needsRootsNS;
 
     /**
      * @param spec the DataTabelSpec of the input
@@ -150,21 +147,21 @@ private XPathCellFactory(final XPathNodeSettings settings, final int xmlIndex,
         super(true, colsSpecs);
         m_settings = settings;
         m_xmlIndex = xmlIndex;
-        initXPathExpression();
+        m_needsRootsNS = initXPathExpression() == null;
     }
 
     /**
+     * @return the compiled expression or null if the query compiles only
+     * with the roots namespace
      * @throws InvalidSettingsException
      *
      */
-    private void initXPathExpression() throws InvalidSettingsException {
-         XPathFactory factory = XPathFactory.newInstance();
-         XPath xpath = factory.newXPath();
-         xpath.setNamespaceContext(new XPathNamespaceContext(m_settings
-                 .getNsPrefixes(), m_settings.getNamespaces()));
+    private XPathExpression initXPathExpression()
+            throws InvalidSettingsException {
          try {
-             XPathExpression xpathExpr = xpath.compile(m_settings
-                     .getXpathQuery());
+             XPathExpression xpathExpr = XPathExpressionCache.compile(
+                     m_settings.getXpathQuery(), m_settings.getNsPrefixes(),
+                     m_settings.getNamespaces());
 
              if (m_settings.getUseRootsNS()
                      && Arrays.binarySearch(m_settings.getNsPrefixes(),
@@ -173,14 +170,14 @@ private void initXPathExpression() throws InvalidSettingsException {
                          "The namespace table uses the prefix "
                                  + "reserved for the " + "roots namespace.");
              } else {
-                 m_xpathExpr = xpathExpr;
+                 return xpathExpr;
              }
          } catch (XPathExpressionException e) {
              if (m_settings.getUseRootsNS()) {
                  // try to compile it with roots default prefix
                  createXPathExpr(null);
                  // the xpath compiles with the roots default prefix
-                 m_xpathExpr = null;
+                 return null;
              } else {
                  throw new InvalidSettingsException(
                          "XPath expression cannot be compiled.", e);
@@ -223,13 +220,10 @@ private XPathExpression createXPathExpr(final XMLValue xmlValue)
             }
         }
 
-        XPathFactory factory = XPathFactory.newInstance();
-        XPath xpath = factory.newXPath();
-        xpath.setNamespaceContext(new XPathNamespaceContext(nsPrefixes
-                .toArray(new String[nsPrefixes.size()]), namespaces
-                .toArray(new String[namespaces.size()])));
         try {
-            return xpath.compile(m_settings.getXpathQuery());
+            return XPathExpressionCache.compile(m_settings.getXpathQuery(),
+                    nsPrefixes.toArray(new String[nsPrefixes.size()]),
+                    namespaces.toArray(new String[namespaces.size()]));
         } catch (XPathExpressionException e) {
             throw new InvalidSettingsException("XPath query cannot be parsed.",
                     e);
@@ -253,9 +247,12 @@ private DataCell getCell(final DataRow row) {
         DataCell newCell = null;
         try {
             final XPathOutput returnType = m_settings.getReturnType();
-            XPathExpression xpathExpr = m_xpathExpr == null
+            // the cache holds the expressions compiled by the calling thread
+            XPathExpression xpathExpr = m_needsRootsNS
             ? createXPathExpr(xmlValue)
-                    : m_xpathExpr;
+                    : XPathExpressionCache.compile(m_settings.getXpathQuery(),
+                            m_settings.getNsPrefixes(),
+                            m_settings.getNamespaces());
             if (returnType.equals(XPathOutput.Boolean)) {
                 newCell = evaluateBoolean(xpathExpr, xmlValue);
             } else if (returnType.equals(XPathOutput.Number)) {
@@ -446,48 +443,4 @@ private DataCell evaluateNodeSet(final XPathExpression xpathExpr,
         return newCell;
     }
 
-    private static class XPathNamespaceContext implements NamespaceContext {
-        private final Map<String, String> m_namespaces;
-
-        public XPathNamespaceContext(final String[] prefixes,
-                final String[] namespaces) {
-            m_namespaces = new HashMap<String, String>();
-            for (int i = 0; i < prefixes.length; i++) {
-                if (prefixes[i].isEmpty()) {
-                    throw new IllegalArgumentException("There are empty "
-                            + "namespace prefixes. Please provide a "
-                            + "prefix for every namespace.");
-                }
-                m_namespaces.put(prefixes[i], namespaces[i]);
-            }
-        }
-
-        @Override
-        public String getNamespaceURI(final String prefix) {
-            if (prefix == null) {
-                throw new NullPointerException("Null prefix");
-            }
-            if ("xml".equals(prefix)) {
-                return XMLConstants.XML_NS_URI;
-            } else if (m_namespaces.containsKey(prefix)) {
-                return m_namespaces.get(prefix);
-            } else {
-                return XMLConstants.NULL_NS_URI;
-            }
-        }
-
-        @Override
-        public String getPrefix(final String uri) {
-            // This method isn't necessary for XPath processing.
-            throw new UnsupportedOperationException();
-        }
-
-        @SuppressWarnings("rawtypes")
-        @Override
-        public Iterator getPrefixes(final String uri) {
-            // This method isn't necessary for XPath processing.
-            throw new UnsupportedOperationException();
-        }
-
-    }
 }
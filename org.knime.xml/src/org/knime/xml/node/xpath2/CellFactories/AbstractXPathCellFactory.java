@@ -0,0 +1,155 @@
+/*
+ * ------------------------------------------------------------------------
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.xpath2.CellFactories;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataColumnSpec;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataType;
+import org.knime.core.data.container.AbstractCellFactory;
+import org.knime.core.data.util.LockedSupplier;
+import org.knime.core.data.xml.XMLValue;
+import org.knime.xml.node.xpath2.XPathNodeSettings;
+import org.knime.xml.node.xpath2.XPathSettings;
+import org.w3c.dom.Document;
+
+/**
+ * Base class of the cell factories which evaluate a single XPath query. The document of a row is locked once and the
+ * query is evaluated by {@link #getCells(Document)}, which allows {@link XPathMultiQueryCellFactory} to evaluate all
+ * queries of a row while holding the lock only once. Factories which support ungrouping without collections, writing
+ * directly into multiple columns or streaming evaluation implement {@link CollectionElementsCellFactory},
+ * {@link MultiColumnCellFactory} and {@link StreamableCellFactory}.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+public abstract class AbstractXPathCellFactory extends AbstractCellFactory {
+
+    private final XPathNodeSettings m_settings;
+
+    private final XPathSettings m_xpathSettings;
+
+    private final int m_xmlIndex;
+
+    /**
+     * @param settings settings for the XPath node
+     * @param xpathSettings settings for one xpath query
+     * @param xmlIndex index of the XML column
+     * @param colsSpecs the specs of the appended columns
+     */
+    AbstractXPathCellFactory(final XPathNodeSettings settings, final XPathSettings xpathSettings,
+        final int xmlIndex, final DataColumnSpec[] colsSpecs) {
+        super(true, colsSpecs);
+        m_settings = settings;
+        m_xpathSettings = xpathSettings;
+        m_xmlIndex = xmlIndex;
+    }
+
+    /**
+     * @return settings for the XPath node
+     */
+    XPathNodeSettings getSettings() {
+        return m_settings;
+    }
+
+    /**
+     * @return settings for the xpath query of this factory
+     */
+    XPathSettings getXPathSettings() {
+        return m_xpathSettings;
+    }
+
+    /**
+     * @return index of the XML column
+     */
+    int getXMLIndex() {
+        return m_xmlIndex;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DataCell[] getCells(final DataRow row) {
+        DataCell xmlCell = row.getCell(m_xmlIndex);
+        if (xmlCell.isMissing()) {
+            return createMissingCells();
+        }
+        @SuppressWarnings("unchecked")
+        XMLValue<Document> xmlValue = (XMLValue<Document>)xmlCell;
+        try (LockedSupplier<Document> supplier = xmlValue.getDocumentSupplier()) {
+            return getCells(supplier.get());
+        }
+    }
+
+    /**
+     * @return missing cells for all columns of this factory, used if the XML cell is missing
+     */
+    DataCell[] createMissingCells() {
+        DataCell[] cells = new DataCell[getColumnSpecs().length];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = DataType.getMissingCell();
+        }
+        return cells;
+    }
+
+    /**
+     * Evaluates the query on the document of a row. The caller holds the lock of the document.
+     *
+     * @param doc the document of the XML cell
+     * @return the new cells
+     */
+    abstract DataCell[] getCells(Document doc);
+
+    /**
+     * Registers the column names which are taken from the document at the {@link XPathSettings} without creating the
+     * cells. Used to determine the output spec before the queries are evaluated. The caller holds the lock of the
+     * document.
+     *
+     * @param doc the document of the XML cell
+     */
+    void collectColumnNames(final Document doc) {
+        // column name does not depend on the document
+    }
+}
@@ -0,0 +1,468 @@
+/*
+ * ------------------------------------------------------------------------
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.xpath2.CellFactories;
+
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * A compact, read-only representation of an XML document for evaluating queries. Instead of one object per node, the
+ * nodes are numbered in document order and stored in a few arrays: the kind, the parent, the end of the subtree and
+ * the name of every node. The descendants of a node are the nodes following it up to the end of its subtree. Names
+ * are interned per document, the text of all nodes and the attribute values share a single character buffer.
+ * <p>
+ * Only elements, text, comments and processing instructions are stored, adjacent text is merged into a single text
+ * node. The document node itself is represented by the node id <code>-1</code>.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class CompactDocument {
+
+    /** Kind of an element node. */
+    static final byte ELEMENT = 0;
+
+    /** Kind of a text node. */
+    static final byte TEXT = 1;
+
+    /** Kind of a comment node. */
+    static final byte COMMENT = 2;
+
+    /** Kind of a processing instruction node. */
+    static final byte PROCESSING_INSTRUCTION = 3;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int m_size;
+
+    private final byte[] m_kind;
+
+    private final int[] m_parent;
+
+    /** Exclusive end of the subtree of every node. */
+    private final int[] m_end;
+
+    /** The name of an element, the target of a processing instruction. */
+    private final int[] m_name;
+
+    /** Start of the text of a node in the character buffer. */
+    private final int[] m_dataStart;
+
+    private final int[] m_dataLength;
+
+    /** Index of the first attribute of every node, the attributes of node i end at the first one of node i + 1. */
+    private final int[] m_attributes;
+
+    /** Index of the first namespace declaration of every node, analogous to the attributes. */
+    private final int[] m_namespaces;
+
+    private final int[] m_attributeName;
+
+    private final int[] m_attributeStart;
+
+    private final int[] m_attributeLength;
+
+    /** The namespace declarations as names with the declared prefix and URI. */
+    private final int[] m_namespaceName;
+
+    private final String[] m_namePrefixes;
+
+    private final String[] m_nameUris;
+
+    private final String[] m_nameLocalNames;
+
+    private final char[] m_data;
+
+    private final int m_root;
+
+    private CompactDocument(final Builder b) {
+        m_size = b.m_size;
+        m_kind = Arrays.copyOf(b.m_kind, m_size);
+        m_parent = Arrays.copyOf(b.m_parent, m_size);
+        m_end = Arrays.copyOf(b.m_end, m_size);
+        m_name = Arrays.copyOf(b.m_name, m_size);
+        m_dataStart = Arrays.copyOf(b.m_dataStart, m_size);
+        m_dataLength = Arrays.copyOf(b.m_dataLength, m_size);
+        m_attributes = Arrays.copyOf(b.m_attributes, m_size + 1);
+        m_attributes[m_size] = b.m_numAttributes;
+        m_namespaces = Arrays.copyOf(b.m_namespaces, m_size + 1);
+        m_namespaces[m_size] = b.m_numNamespaces;
+        m_attributeName = Arrays.copyOf(b.m_attributeName, b.m_numAttributes);
+        m_attributeStart = Arrays.copyOf(b.m_attributeStart, b.m_numAttributes);
+        m_attributeLength = Arrays.copyOf(b.m_attributeLength, b.m_numAttributes);
+        m_namespaceName = Arrays.copyOf(b.m_namespaceName, b.m_numNamespaces);
+        final int numNames = b.m_names.size();
+        m_namePrefixes = Arrays.copyOf(b.m_namePrefixes, numNames);
+        m_nameUris = Arrays.copyOf(b.m_nameUris, numNames);
+        m_nameLocalNames = Arrays.copyOf(b.m_nameLocalNames, numNames);
+        m_data = Arrays.copyOf(b.m_data, b.m_dataSize);
+        m_root = b.m_root;
+    }
+
+    /**
+     * Parses the serialized XML into a compact document.
+     *
+     * @param xml reads the serialized XML document
+     * @return the compact document
+     * @throws XMLStreamException if the document cannot be parsed
+     */
+    static CompactDocument parse(final Reader xml) throws XMLStreamException {
+        final Builder b = new Builder();
+        final XMLStreamReader reader =
+            StreamingXPathEvaluator.INPUT_FACTORY.get().createXMLStreamReader(xml);
+        try {
+            int current = -1;
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        current = b.startElement(reader, current);
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        b.m_end[current] = b.m_size;
+                        current = b.m_parent[current];
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        b.characters(reader, current);
+                        break;
+                    case XMLStreamConstants.COMMENT:
+                        b.addNode(COMMENT, current, -1);
+                        b.appendData(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                        break;
+                    case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                        b.addNode(PROCESSING_INSTRUCTION, current, b.intern("", reader.getPITarget(), ""));
+                        final String data = StreamingXPathEvaluator.nullToEmpty(reader.getPIData());
+                        b.appendData(data.toCharArray(), 0, data.length());
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return new CompactDocument(b);
+    }
+
+    /**
+     * @return the number of nodes, not counting the document node
+     */
+    int size() {
+        return m_size;
+    }
+
+    /**
+     * @return the root element or <code>-1</code> if the document is empty
+     */
+    int getRoot() {
+        return m_root;
+    }
+
+    /**
+     * @param node a node
+     * @return the kind of the node
+     */
+    byte getKind(final int node) {
+        return m_kind[node];
+    }
+
+    /**
+     * @param node a node or the document node
+     * @return the exclusive end of the subtree of the node
+     */
+    int getEnd(final int node) {
+        return node < 0 ? m_size : m_end[node];
+    }
+
+    /**
+     * @param node a node or the document node
+     * @return the first child of the node or <code>-1</code> if it has no children
+     */
+    int getFirstChild(final int node) {
+        return node + 1 < getEnd(node) ? node + 1 : -1;
+    }
+
+    /**
+     * @param node a node
+     * @return the next sibling of the node or <code>-1</code> if it is the last child of its parent
+     */
+    int getNextSibling(final int node) {
+        return m_end[node] < getEnd(m_parent[node]) ? m_end[node] : -1;
+    }
+
+    /**
+     * @param node an element
+     * @return the local name of the element
+     */
+    String getLocalName(final int node) {
+        return m_nameLocalNames[m_name[node]];
+    }
+
+    /**
+     * @param node an element
+     * @return the namespace URI of the element, the empty string if it has no namespace
+     */
+    String getNamespaceURI(final int node) {
+        return m_nameUris[m_name[node]];
+    }
+
+    /**
+     * @param node an element
+     * @return the index of the first attribute of the element
+     */
+    int getAttributeStart(final int node) {
+        return m_attributes[node];
+    }
+
+    /**
+     * @param node an element
+     * @return the exclusive end index of the attributes of the element
+     */
+    int getAttributeEnd(final int node) {
+        return m_attributes[node + 1];
+    }
+
+    /**
+     * @param attribute the index of an attribute
+     * @return the local name of the attribute
+     */
+    String getAttributeLocalName(final int attribute) {
+        return m_nameLocalNames[m_attributeName[attribute]];
+    }
+
+    /**
+     * @param attribute the index of an attribute
+     * @return the namespace URI of the attribute, the empty string if it has no namespace
+     */
+    String getAttributeNamespaceURI(final int attribute) {
+        return m_nameUris[m_attributeName[attribute]];
+    }
+
+    /**
+     * @param attribute the index of an attribute
+     * @return the value of the attribute
+     */
+    String getAttributeValue(final int attribute) {
+        return new String(m_data, m_attributeStart[attribute], m_attributeLength[attribute]);
+    }
+
+    /**
+     * @param node a text, comment or processing instruction node
+     * @return the text of the node
+     */
+    String getData(final int node) {
+        return new String(m_data, m_dataStart[node], m_dataLength[node]);
+    }
+
+    /**
+     * @param node a node
+     * @return the string value of the node, i.e. the text of all text nodes in its subtree for elements
+     */
+    String getStringValue(final int node) {
+        if (m_kind[node] != ELEMENT) {
+            return getData(node);
+        }
+        final StringBuilder b = new StringBuilder();
+        for (int n = node + 1; n < m_end[node]; n++) {
+            if (m_kind[n] == TEXT) {
+                b.append(m_data, m_dataStart[n], m_dataLength[n]);
+            }
+        }
+        return b.toString();
+    }
+
+    /**
+     * Collects the nodes of a document in growable arrays.
+     */
+    private static final class Builder {
+
+        private int m_size;
+
+        private byte[] m_kind = new byte[INITIAL_CAPACITY];
+
+        private int[] m_parent = new int[INITIAL_CAPACITY];
+
+        private int[] m_end = new int[INITIAL_CAPACITY];
+
+        private int[] m_name = new int[INITIAL_CAPACITY];
+
+        private int[] m_dataStart = new int[INITIAL_CAPACITY];
+
+        private int[] m_dataLength = new int[INITIAL_CAPACITY];
+
+        private int[] m_attributes = new int[INITIAL_CAPACITY];
+
+        private int[] m_namespaces = new int[INITIAL_CAPACITY];
+
+        private int m_numAttributes;
+
+        private int[] m_attributeName = new int[INITIAL_CAPACITY];
+
+        private int[] m_attributeStart = new int[INITIAL_CAPACITY];
+
+        private int[] m_attributeLength = new int[INITIAL_CAPACITY];
+
+        private int m_numNamespaces;
+
+        private int[] m_namespaceName = new int[INITIAL_CAPACITY];
+
+        private final Map<String, Integer> m_names = new HashMap<String, Integer>();
+
+        private String[] m_namePrefixes = new String[INITIAL_CAPACITY];
+
+        private String[] m_nameUris = new String[INITIAL_CAPACITY];
+
+        private String[] m_nameLocalNames = new String[INITIAL_CAPACITY];
+
+        private int m_dataSize;
+
+        private char[] m_data = new char[INITIAL_CAPACITY * 16];
+
+        private int m_root = -1;
+
+        int addNode(final byte kind, final int parent, final int name) {
+            if (m_size == m_kind.length) {
+                final int capacity = m_size * 2;
+                m_kind = Arrays.copyOf(m_kind, capacity);
+                m_parent = Arrays.copyOf(m_parent, capacity);
+                m_end = Arrays.copyOf(m_end, capacity);
+                m_name = Arrays.copyOf(m_name, capacity);
+                m_dataStart = Arrays.copyOf(m_dataStart, capacity);
+                m_dataLength = Arrays.copyOf(m_dataLength, capacity);
+                m_attributes = Arrays.copyOf(m_attributes, capacity);
+                m_namespaces = Arrays.copyOf(m_namespaces, capacity);
+            }
+            final int node = m_size++;
+            m_kind[node] = kind;
+            m_parent[node] = parent;
+            m_end[node] = node + 1;
+            m_name[node] = name;
+            m_dataStart[node] = m_dataSize;
+            m_dataLength[node] = 0;
+            m_attributes[node] = m_numAttributes;
+            m_namespaces[node] = m_numNamespaces;
+            return node;
+        }
+
+        int startElement(final XMLStreamReader reader, final int parent) {
+            final int node = addNode(ELEMENT, parent,
+                intern(reader.getPrefix(), reader.getLocalName(), reader.getNamespaceURI()));
+            if (parent < 0 && m_root < 0) {
+                m_root = node;
+            }
+            for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                if (m_numNamespaces == m_namespaceName.length) {
+                    m_namespaceName = Arrays.copyOf(m_namespaceName, m_numNamespaces * 2);
+                }
+                m_namespaceName[m_numNamespaces++] =
+                    intern(reader.getNamespacePrefix(i), "", reader.getNamespaceURI(i));
+            }
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                if (m_numAttributes == m_attributeName.length) {
+                    final int capacity = m_numAttributes * 2;
+                    m_attributeName = Arrays.copyOf(m_attributeName, capacity);
+                    m_attributeStart = Arrays.copyOf(m_attributeStart, capacity);
+                    m_attributeLength = Arrays.copyOf(m_attributeLength, capacity);
+                }
+                final String value = reader.getAttributeValue(i);
+                m_attributeName[m_numAttributes] = intern(reader.getAttributePrefix(i),
+                    reader.getAttributeLocalName(i), reader.getAttributeNamespace(i));
+                m_attributeStart[m_numAttributes] = m_dataSize;
+                m_attributeLength[m_numAttributes] = value.length();
+                m_numAttributes++;
+                appendData(value.toCharArray(), 0, value.length());
+            }
+            return node;
+        }
+
+        void characters(final XMLStreamReader reader, final int parent) {
+            final int last = m_size - 1;
+            // the data of the last node is at the end of the buffer, hence adjacent text can be appended
+            final int node = last >= 0 && m_kind[last] == TEXT && m_parent[last] == parent ? last
+                : addNode(TEXT, parent, -1);
+            appendData(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+            m_dataLength[node] = m_dataSize - m_dataStart[node];
+        }
+
+        void appendData(final char[] chars, final int start, final int length) {
+            if (m_dataSize + length > m_data.length) {
+                m_data = Arrays.copyOf(m_data, Math.max(m_data.length * 2, m_dataSize + length));
+            }
+            System.arraycopy(chars, start, m_data, m_dataSize, length);
+            m_dataSize += length;
+            if (m_size > 0 && m_kind[m_size - 1] != ELEMENT) {
+                m_dataLength[m_size - 1] = m_dataSize - m_dataStart[m_size - 1];
+            }
+        }
+
+        int intern(final String prefix, final String localName, final String uri) {
+            final String p = StreamingXPathEvaluator.nullToEmpty(prefix);
+            final String u = uri == null ? XMLConstants.NULL_NS_URI : uri;
+            // prefixes and local names cannot contain colons or spaces
+            final String key = p + ':' + localName + ' ' + u;
+            Integer name = m_names.get(key);
+            if (name == null) {
+                name = m_names.size();
+                if (name == m_namePrefixes.length) {
+                    m_namePrefixes = Arrays.copyOf(m_namePrefixes, name * 2);
+                    m_nameUris = Arrays.copyOf(m_nameUris, name * 2);
+                    m_nameLocalNames = Arrays.copyOf(m_nameLocalNames, name * 2);
+                }
+                m_namePrefixes[name] = p;
+                m_nameUris[name] = u;
+                m_nameLocalNames[name] = localName;
+                m_names.put(key, name);
+            }
+            return name;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * ------------------------------------------------------------------------
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.xpath2.CellFactories;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.xml.node.xpath2.XPathNodeSettings;
+import org.knime.xml.node.xpath2.CellFactories.StreamingXPath.QName;
+import org.knime.xml.node.xpath2.CellFactories.StreamingXPath.Step;
+import org.knime.xml.node.xpath2.CellFactories.StreamingXPath.Target;
+
+/**
+ * Evaluates several {@link StreamingXPath paths} on a {@link CompactDocument} which is parsed once from the serialized
+ * XML of a cell. The results are the same as the ones of the {@link StreamingXPathEvaluator}, in addition steps may
+ * select the descendants of their context.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class CompactDocumentEvaluator implements PathEvaluator {
+
+    private final StreamingXPath[] m_paths;
+
+    private final NamespaceResolver m_resolver;
+
+    /**
+     * @param settings settings for the XPath node, used to resolve namespace prefixes
+     * @param paths the queries to evaluate
+     */
+    CompactDocumentEvaluator(final XPathNodeSettings settings, final StreamingXPath[] paths) {
+        m_paths = paths;
+        m_resolver = new NamespaceResolver(settings);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String>[] evaluate(final Reader xml) throws XMLStreamException, InvalidSettingsException {
+        final CompactDocument doc = CompactDocument.parse(xml);
+        final String rootNSUri = doc.getRoot() < 0 ? null : doc.getNamespaceURI(doc.getRoot());
+        @SuppressWarnings("unchecked")
+        final List<String>[] results = new List[m_paths.length];
+        for (int i = 0; i < m_paths.length; i++) {
+            results[i] = evaluate(doc, m_paths[i], rootNSUri);
+        }
+        return results;
+    }
+
+    private List<String> evaluate(final CompactDocument doc, final StreamingXPath path, final String rootNSUri)
+        throws XMLStreamException, InvalidSettingsException {
+        int[] context = {-1};
+        for (Step step : path.getSteps()) {
+            final String uri = m_resolver.resolve(step.getName(), rootNSUri);
+            final String attributeUri = m_resolver.resolve(step.getAttribute(), rootNSUri);
+            final BitSet selected = new BitSet(doc.size());
+            int covered = -1;
+            for (int node : context) {
+                if (!step.isDescendant()) {
+                    selectChildren(doc, node, step, uri, attributeUri, selected);
+                } else if (node >= covered) {
+                    // the subtrees of nested context nodes have already been visited
+                    selectChildren(doc, node, step, uri, attributeUri, selected);
+                    for (int n = node + 1; n < doc.getEnd(node); n++) {
+                        if (doc.getKind(n) == CompactDocument.ELEMENT) {
+                            selectChildren(doc, n, step, uri, attributeUri, selected);
+                        }
+                    }
+                    covered = doc.getEnd(node);
+                }
+            }
+            context = selected.stream().toArray();
+        }
+
+        final List<String> result = new ArrayList<String>(context.length);
+        final Target target = path.getTarget();
+        final String targetUri = m_resolver.resolve(path.getTargetAttribute(), rootNSUri);
+        for (int node : context) {
+            if (target == Target.ATTRIBUTE) {
+                final String value = getAttributeValue(doc, node, path.getTargetAttribute(), targetUri);
+                if (value != null) {
+                    result.add(value);
+                }
+            } else if (target == Target.TEXT) {
+                for (int n = doc.getFirstChild(node); n >= 0; n = doc.getNextSibling(n)) {
+                    if (doc.getKind(n) == CompactDocument.TEXT) {
+                        result.add(doc.getData(n));
+                    }
+                }
+            } else {
+                result.add(doc.getStringValue(node));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Selects the child elements of the node which pass the name test and the predicate of the step.
+     */
+    private static void selectChildren(final CompactDocument doc, final int node, final Step step, final String uri,
+        final String attributeUri, final BitSet selected) {
+        int position = 0;
+        for (int n = doc.getFirstChild(node); n >= 0; n = doc.getNextSibling(n)) {
+            if (doc.getKind(n) != CompactDocument.ELEMENT
+                || !NamespaceResolver.matches(step.getName(), uri, doc.getNamespaceURI(n), doc.getLocalName(n))) {
+                continue;
+            }
+            position++;
+            if (step.getPosition() > 0) {
+                if (position == step.getPosition()) {
+                    selected.set(n);
+                    return;
+                }
+            } else if (step.getAttribute() != null) {
+                final String value = getAttributeValue(doc, n, step.getAttribute(), attributeUri);
+                if (value != null && (step.getAttributeValue() == null || step.getAttributeValue().equals(value))) {
+                    selected.set(n);
+                }
+            } else {
+                selected.set(n);
+            }
+        }
+    }
+
+    private static String getAttributeValue(final CompactDocument doc, final int node, final QName name,
+        final String uri) {
+        for (int i = doc.getAttributeStart(node); i < doc.getAttributeEnd(node); i++) {
+            if (NamespaceResolver.matches(name, uri, doc.getAttributeNamespaceURI(i), doc.getAttributeLocalName(i))) {
+                return doc.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * ------------------------------------------------------------------------
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.xpath2.CellFactories;
+
+import java.io.Reader;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Reads the serialized XML of a DOM node. The nodes are serialized while the text is read, such that a document can
+ * be parsed by a {@link javax.xml.stream.XMLStreamReader} without being serialized into a string first.
+ * <p>
+ * The nodes are written as they are, namespace declarations are only written where the DOM has them as attributes.
+ * This is the case for every document which is parsed from text. A document built without these attributes may
+ * result in undeclared prefixes, which the parser reports as error. The document type declaration is not written.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class DocumentSerializingReader extends Reader {
+
+    private final Node m_root;
+
+    /** The node which is serialized next, <code>null</code> if all nodes are serialized. */
+    private Node m_current;
+
+    /** <code>true</code> if the current node is started next, <code>false</code> if it is finished next. */
+    private boolean m_start = true;
+
+    /** The serialized text which is not read yet starts at {@link #m_pos}. */
+    private final StringBuilder m_buf = new StringBuilder();
+
+    private int m_pos = 0;
+
+    /**
+     * @param node the node to serialize, usually a document
+     */
+    DocumentSerializingReader(final Node node) {
+        m_root = node;
+        m_current = node;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read(final char[] cbuf, final int off, final int len) {
+        if (len == 0) {
+            return 0;
+        }
+        while (m_pos == m_buf.length()) {
+            if (m_current == null) {
+                return -1;
+            }
+            m_buf.setLength(0);
+            m_pos = 0;
+            serializeNext();
+        }
+        final int n = Math.min(len, m_buf.length() - m_pos);
+        m_buf.getChars(m_pos, m_pos + n, cbuf, off);
+        m_pos += n;
+        return n;
+    }
+
+    /**
+     * Serializes the start of the current node, or its end if its children are serialized, and moves to the next
+     * node in document order.
+     */
+    private void serializeNext() {
+        final Node node = m_current;
+        if (m_start) {
+            switch (node.getNodeType()) {
+                case Node.ELEMENT_NODE:
+                    writeStartTag(node);
+                    break;
+                case Node.TEXT_NODE:
+                    writeEscaped(node.getNodeValue(), false);
+                    break;
+                case Node.CDATA_SECTION_NODE:
+                    m_buf.append("<![CDATA[").append(node.getNodeValue()).append("]]>");
+                    break;
+                case Node.COMMENT_NODE:
+                    m_buf.append("<!--").append(node.getNodeValue()).append("-->");
+                    break;
+                case Node.PROCESSING_INSTRUCTION_NODE:
+                    m_buf.append("<?").append(node.getNodeName());
+                    final String data = node.getNodeValue();
+                    if (data != null && !data.isEmpty()) {
+                        m_buf.append(' ').append(data);
+                    }
+                    m_buf.append("?>");
+                    break;
+                case Node.DOCUMENT_NODE:
+                case Node.DOCUMENT_FRAGMENT_NODE:
+                case Node.ENTITY_REFERENCE_NODE:
+                    // only the children are written
+                    break;
+                default:
+                    // the document type is not written
+                    next(node);
+                    return;
+            }
+            final Node child = node.getFirstChild();
+            if (child != null) {
+                m_current = child;
+                return;
+            }
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                m_buf.append("/>");
+            }
+        } else if (node.getNodeType() == Node.ELEMENT_NODE) {
+            m_buf.append("</").append(node.getNodeName()).append('>');
+        }
+        next(node);
+    }
+
+    /**
+     * Moves to the node following the finished node.
+     */
+    private void next(final Node node) {
+        if (node == m_root) {
+            m_current = null;
+        } else if (node.getNextSibling() != null) {
+            m_current = node.getNextSibling();
+            m_start = true;
+        } else {
+            m_current = node.getParentNode();
+            m_start = false;
+        }
+    }
+
+    private void writeStartTag(final Node element) {
+        m_buf.append('<').append(element.getNodeName());
+        final NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            final Attr attr = (Attr)attributes.item(i);
+            m_buf.append(' ').append(attr.getName()).append("=\"");
+            writeEscaped(attr.getValue(), true);
+            m_buf.append('"');
+        }
+        if (element.getFirstChild() != null) {
+            m_buf.append('>');
+        }
+    }
+
+    private void writeEscaped(final String text, final boolean attribute) {
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    m_buf.append("&amp;");
+                    break;
+                case '<':
+                    m_buf.append("&lt;");
+                    break;
+                case '>':
+                    m_buf.append("&gt;");
+                    break;
+                case '\r':
+                    m_buf.append("&#13;");
+                    break;
+                case '"':
+                    m_buf.append(attribute ? "&quot;" : "\"");
+                    break;
+                case '\n':
+                    m_buf.append(attribute ? "&#10;" : "\n");
+                    break;
+                case '\t':
+                    m_buf.append(attribute ? "&#9;" : "\t");
+                    break;
+                default:
+                    m_buf.append(c);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        m_current = null;
+    }
+}
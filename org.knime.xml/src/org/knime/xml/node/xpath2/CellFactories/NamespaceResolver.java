@@ -0,0 +1,123 @@
+/*
+ * ------------------------------------------------------------------------
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.xpath2.CellFactories;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.xml.node.xpath2.XPathNodeSettings;
+import org.knime.xml.node.xpath2.CellFactories.StreamingXPath.QName;
+
+/**
+ * Resolves the prefixes of the names in a {@link StreamingXPath} to namespace URIs by means of the namespaces of the
+ * node settings and, if enabled, the namespace of the root element.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class NamespaceResolver {
+
+    private final Map<String, String> m_namespaces;
+
+    private final String m_rootsNSPrefix;
+
+    /**
+     * @param settings settings for the XPath node
+     */
+    NamespaceResolver(final XPathNodeSettings settings) {
+        m_namespaces = new HashMap<String, String>();
+        m_namespaces.put(XMLConstants.XML_NS_PREFIX, XMLConstants.XML_NS_URI);
+        final String[] prefixes = settings.getNsPrefixes();
+        final String[] namespaces = settings.getNamespaces();
+        for (int i = 0; i < prefixes.length && i < namespaces.length; i++) {
+            m_namespaces.put(prefixes[i], namespaces[i]);
+        }
+        m_rootsNSPrefix = settings.getUseRootsNS() && !m_namespaces.containsKey(settings.getRootsNSPrefix())
+            ? settings.getRootsNSPrefix() : null;
+    }
+
+    /**
+     * @param name a name of the query, may be <code>null</code>
+     * @param rootNSUri the namespace URI of the root element
+     * @return the namespace URI of the name or <code>null</code> if the name is <code>null</code> or a wildcard
+     * @throws InvalidSettingsException if the name uses the prefix of the roots namespace but the root element does
+     *             not have a namespace
+     */
+    String resolve(final QName name, final String rootNSUri) throws InvalidSettingsException {
+        if (name == null || name.isWildcard()) {
+            return null;
+        }
+        final String prefix = name.getPrefix();
+        if (prefix == null) {
+            return XMLConstants.NULL_NS_URI;
+        }
+        final String uri = m_namespaces.get(prefix);
+        if (uri != null) {
+            return uri;
+        }
+        if (prefix.equals(m_rootsNSPrefix)) {
+            if (rootNSUri == null || rootNSUri.isEmpty()) {
+                throw new InvalidSettingsException("The root node does not have a namesapce URI.");
+            }
+            return rootNSUri;
+        }
+        // cannot happen, queries with unknown prefixes are not streamable
+        throw new InvalidSettingsException("Unknown namespace prefix: " + prefix);
+    }
+
+    /**
+     * @param name the name of the query
+     * @param uri the resolved namespace URI of the name
+     * @param nsUri the namespace URI of the node, may be <code>null</code>
+     * @param localName the local name of the node
+     * @return <code>true</code> if the node has the name
+     */
+    static boolean matches(final QName name, final String uri, final String nsUri, final String localName) {
+        return name.isWildcard() || (name.getLocalName().equals(localName)
+            && uri.equals(nsUri == null ? XMLConstants.NULL_NS_URI : nsUri));
+    }
+}
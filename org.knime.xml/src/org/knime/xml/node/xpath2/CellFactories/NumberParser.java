@@ -0,0 +1,242 @@
+/*
+ * ------------------------------------------------------------------------
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.xpath2.CellFactories;
+
+/**
+ * Parses the text of XPath results into primitive numbers without allocating objects and without using exceptions for
+ * control flow. Only the common plain forms are handled here, the callers fall back to {@link Integer#parseInt(String)}
+ * and {@link Double#parseDouble(String)} for everything else, so that the accepted syntax does not change.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class NumberParser {
+
+    /** Returned by {@link #parseInt(String)} if the text is not a plain integer. */
+    static final long NO_INT = Long.MIN_VALUE;
+
+    /** Maximal number of significant digits for which the fast path is exact. */
+    private static final int MAX_FAST_DIGITS = 15;
+
+    /** Powers of ten which are exactly representable as double. */
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+        1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private NumberParser() {
+        // utility class
+    }
+
+    /**
+     * Parses text of the form <code>[+-]digits</code> where digits are ASCII digits.
+     *
+     * @param s the text
+     * @return the value or {@link #NO_INT} if the text is not a plain integer or out of the range of int
+     */
+    static long parseInt(final String s) {
+        final int n = s.length();
+        int i = 0;
+        boolean negative = false;
+        if (n > 0 && (s.charAt(0) == '-' || s.charAt(0) == '+')) {
+            negative = s.charAt(0) == '-';
+            i++;
+        }
+        if (i == n) {
+            return NO_INT;
+        }
+        long value = 0;
+        for (; i < n; i++) {
+            final char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return NO_INT;
+            }
+            value = value * 10 + (c - '0');
+            if (value > -(long)Integer.MIN_VALUE) {
+                return NO_INT;
+            }
+        }
+        if (negative) {
+            return -value;
+        }
+        return value > Integer.MAX_VALUE ? NO_INT : value;
+    }
+
+    /**
+     * Parses text of the form <code>[+-]digits[.digits][(e|E)[+-]digits]</code> surrounded by optional whitespace.
+     * The digits before or after the decimal point may be omitted, but not both.
+     *
+     * @param s the text
+     * @return the value as {@link Double#parseDouble(String)} would return it or {@link Double#NaN} if the text is
+     *         not a plain decimal number
+     */
+    static double parseDecimal(final String s) {
+        int i = 0;
+        int end = s.length();
+        while (i < end && s.charAt(i) <= ' ') {
+            i++;
+        }
+        while (end > i && s.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        boolean negative = false;
+        if (i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            negative = s.charAt(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        boolean hasDigits = false;
+        boolean fast = true;
+        char c;
+        while (i < end && (c = s.charAt(i)) >= '0' && c <= '9') {
+            hasDigits = true;
+            if (mantissa != 0 || c != '0') {
+                if (significantDigits < MAX_FAST_DIGITS) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    significantDigits++;
+                } else {
+                    fast = false;
+                }
+            }
+            i++;
+        }
+        if (i < end && s.charAt(i) == '.') {
+            i++;
+            while (i < end && (c = s.charAt(i)) >= '0' && c <= '9') {
+                hasDigits = true;
+                if (mantissa != 0 || c != '0') {
+                    if (significantDigits < MAX_FAST_DIGITS) {
+                        mantissa = mantissa * 10 + (c - '0');
+                        significantDigits++;
+                    } else {
+                        fast = false;
+                    }
+                }
+                if (fast) {
+                    exponent--;
+                }
+                i++;
+            }
+        }
+        if (!hasDigits) {
+            return Double.NaN;
+        }
+        if (i < end && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+                negativeExponent = s.charAt(i) == '-';
+                i++;
+            }
+            if (i == end) {
+                return Double.NaN;
+            }
+            int exp = 0;
+            while (i < end && (c = s.charAt(i)) >= '0' && c <= '9') {
+                if (exp < POWERS_OF_TEN.length * 2) {
+                    exp = exp * 10 + (c - '0');
+                } else {
+                    fast = false;
+                }
+                i++;
+            }
+            exponent += negativeExponent ? -exp : exp;
+        }
+        if (i != end) {
+            return Double.NaN;
+        }
+        if (!fast || exponent >= POWERS_OF_TEN.length || -exponent >= POWERS_OF_TEN.length) {
+            // the syntax is valid, the JDK rounds correctly where the fast path cannot
+            return Double.parseDouble(s);
+        }
+        final double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a double like {@link Double#parseDouble(String)}, in addition <code>NaN</code>, <code>inf</code> and
+     * <code>-inf</code> are accepted ignoring case. Plain decimal numbers are parsed without allocations.
+     *
+     * @param s the text
+     * @return the value
+     * @throws NumberFormatException if the text is not a number
+     */
+    static double parseDouble(final String s) {
+        final double value = parseDecimal(s);
+        if (!Double.isNaN(value)) {
+            return value;
+        } else if (s.equalsIgnoreCase("NaN")) {
+            return Double.NaN;
+        } else if (s.equalsIgnoreCase("inf")) {
+            return Double.POSITIVE_INFINITY;
+        } else if (s.equalsIgnoreCase("-inf")) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        // e.g. "Infinity" or hexadecimal numbers, throws if the text is not a number at all
+        return Double.parseDouble(s);
+    }
+
+    /**
+     * @param s the text
+     * @return <code>true</code> if the text is <code>NaN</code>, <code>inf</code> or <code>-inf</code>, which are
+     *         mapped to a default value or a missing cell if an integer is expected
+     */
+    static boolean isIntegerNaNOrInfinity(final String s) {
+        return s.equals("NaN") || s.equalsIgnoreCase("inf") || s.equalsIgnoreCase("-inf");
+    }
+
+    /**
+     * @param s the text
+     * @return <code>true</code> if the text is empty or consists of whitespace only, as defined by
+     *         {@link String#trim()}
+     */
+    static boolean isBlank(final String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,387 @@
+/*
+ * ------------------------------------------------------------------------
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.xpath2.CellFactories;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import javax.xml.XMLConstants;
+
+import org.knime.xml.node.xpath2.XPathNodeSettings;
+import org.knime.xml.node.xpath2.XPathNodeSettings.XPathOutput;
+import org.knime.xml.node.xpath2.XPathSettings;
+
+/**
+ * The streamable subset of XPath 1.0 which can be evaluated on a stream of StAX events without building a DOM.
+ * Supported are absolute location paths consisting of child steps with a name test (<code>name</code>,
+ * <code>prefix:name</code> or <code>*</code>) and at most one simple predicate per step (<code>[n]</code>,
+ * <code>[@attr]</code> or <code>[@attr='value']</code>). The last step may select an attribute
+ * (<code>@attr</code>) or the text nodes (<code>text()</code>) of the selected elements.
+ * <p>
+ * Examples: <code>/root/item/@id</code>, <code>/dns:feed/dns:entry[2]/dns:title</code>,
+ * <code>/root/item[@type='a']/text()</code>
+ * <p>
+ * Evaluated on a {@link CompactDocument}, element steps may also select descendants (<code>//name</code>), e.g.
+ * <code>//item[@type='a']/@id</code>.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class StreamingXPath {
+
+    /** What is selected by the last step of the path. */
+    enum Target {
+        /** The elements selected by the last element step. */
+        ELEMENT,
+        /** An attribute of the elements selected by the last element step. */
+        ATTRIBUTE,
+        /** The text nodes of the elements selected by the last element step. */
+        TEXT
+    }
+
+    /**
+     * A qualified name of an element or attribute as it appears in the query.
+     */
+    static final class QName {
+
+        private final String m_prefix;
+
+        private final String m_localName;
+
+        private QName(final String prefix, final String localName) {
+            m_prefix = prefix;
+            m_localName = localName;
+        }
+
+        /**
+         * @return the prefix or <code>null</code> if the name is not prefixed
+         */
+        String getPrefix() {
+            return m_prefix;
+        }
+
+        /**
+         * @return the local name, <code>*</code> for any name
+         */
+        String getLocalName() {
+            return m_localName;
+        }
+
+        boolean isWildcard() {
+            return "*".equals(m_localName);
+        }
+    }
+
+    /**
+     * An element step of the path.
+     */
+    static final class Step {
+
+        private final QName m_name;
+
+        private final boolean m_descendant;
+
+        private final int m_position;
+
+        private final QName m_attribute;
+
+        private final String m_attributeValue;
+
+        private Step(final QName name, final boolean descendant, final int position, final QName attribute,
+            final String attributeValue) {
+            m_name = name;
+            m_descendant = descendant;
+            m_position = position;
+            m_attribute = attribute;
+            m_attributeValue = attributeValue;
+        }
+
+        /**
+         * @return the name test of this step
+         */
+        QName getName() {
+            return m_name;
+        }
+
+        /**
+         * @return <code>true</code> if the step selects the descendants of the context, <code>false</code> if it
+         *         selects its children
+         */
+        boolean isDescendant() {
+            return m_descendant;
+        }
+
+        /**
+         * @return the position of the positional predicate or <code>0</code> if there is none
+         */
+        int getPosition() {
+            return m_position;
+        }
+
+        /**
+         * @return the attribute of the attribute predicate or <code>null</code> if there is none
+         */
+        QName getAttribute() {
+            return m_attribute;
+        }
+
+        /**
+         * @return the value the attribute must have or <code>null</code> if its existence is sufficient
+         */
+        String getAttributeValue() {
+            return m_attributeValue;
+        }
+    }
+
+    private final Step[] m_steps;
+
+    private final Target m_target;
+
+    private final QName m_targetAttribute;
+
+    private StreamingXPath(final Step[] steps, final Target target, final QName targetAttribute) {
+        m_steps = steps;
+        m_target = target;
+        m_targetAttribute = targetAttribute;
+    }
+
+    /**
+     * @return the element steps of this path
+     */
+    Step[] getSteps() {
+        return m_steps;
+    }
+
+    /**
+     * @return what is selected by the last step
+     */
+    Target getTarget() {
+        return m_target;
+    }
+
+    /**
+     * @return the selected attribute if the target is {@link Target#ATTRIBUTE}, <code>null</code> otherwise
+     */
+    QName getTargetAttribute() {
+        return m_targetAttribute;
+    }
+
+    /**
+     * @param settings settings for the XPath node
+     * @param xpathSettings settings for one xpath query
+     * @return the streamable query or <code>null</code> if neither streaming evaluation nor the compact document are
+     *         enabled or if the query has to be evaluated on the DOM
+     */
+    static StreamingXPath create(final XPathNodeSettings settings, final XPathSettings xpathSettings) {
+        final boolean compact = settings.getCompactDocument();
+        if (!(settings.getStreamingEvaluation() || compact) || xpathSettings.getUseAttributeForColName()) {
+            return null;
+        }
+        // selected nodes are copied from the document of the cell, which is cheaper than parsing their serialization
+        if (xpathSettings.getReturnType() == XPathOutput.Node) {
+            return null;
+        }
+        final List<String> prefixes = new ArrayList<String>(Arrays.asList(settings.getNsPrefixes()));
+        if (settings.getUseRootsNS()) {
+            prefixes.add(settings.getRootsNSPrefix());
+        }
+        return parse(xpathSettings.getXpathQuery(), prefixes, compact);
+    }
+
+    /**
+     * Parses the given query.
+     *
+     * @param query the XPath query
+     * @param prefixes all namespace prefixes that can be resolved
+     * @param descendants whether descendant steps are allowed
+     * @return the parsed path or <code>null</code> if the query is not part of the streamable subset
+     */
+    static StreamingXPath parse(final String query, final Collection<String> prefixes, final boolean descendants) {
+        final String q = query.trim();
+        final int n = q.length();
+        final List<Step> steps = new ArrayList<Step>();
+        Target target = Target.ELEMENT;
+        QName targetAttribute = null;
+        int i = 0;
+        while (i < n) {
+            if (q.charAt(i) != '/' || target != Target.ELEMENT || ++i >= n) {
+                return null;
+            }
+            final boolean descendant = descendants && q.charAt(i) == '/';
+            if (descendant && (++i >= n || q.charAt(i) == '@' || q.startsWith("text()", i))) {
+                return null;
+            }
+            if (q.charAt(i) == '@') {
+                final int end = scanQName(q, i + 1);
+                if (end < 0) {
+                    return null;
+                }
+                targetAttribute = createQName(q.substring(i + 1, end));
+                target = Target.ATTRIBUTE;
+                i = end;
+            } else if (q.startsWith("text()", i)) {
+                target = Target.TEXT;
+                i += "text()".length();
+            } else {
+                final int end = q.charAt(i) == '*' ? i + 1 : scanQName(q, i);
+                if (end < 0) {
+                    return null;
+                }
+                final QName name = createQName(q.substring(i, end));
+                i = end;
+                int position = 0;
+                QName attribute = null;
+                String attributeValue = null;
+                if (i < n && q.charAt(i) == '[') {
+                    final int close = q.indexOf(']', i);
+                    if (close < 0) {
+                        return null;
+                    }
+                    final String predicate = q.substring(i + 1, close);
+                    if (!predicate.isEmpty() && predicate.chars().allMatch(Character::isDigit)) {
+                        try {
+                            position = Integer.parseInt(predicate);
+                        } catch (NumberFormatException e) {
+                            return null;
+                        }
+                        if (position < 1) {
+                            return null;
+                        }
+                    } else if (predicate.startsWith("@")) {
+                        final int nameEnd = scanQName(predicate, 1);
+                        if (nameEnd < 0 || predicate.charAt(1) == '*') {
+                            return null;
+                        }
+                        attribute = createQName(predicate.substring(1, nameEnd));
+                        if (nameEnd < predicate.length()) {
+                            attributeValue = parseLiteral(predicate.substring(nameEnd));
+                            if (attributeValue == null) {
+                                return null;
+                            }
+                        }
+                    } else {
+                        return null;
+                    }
+                    i = close + 1;
+                }
+                steps.add(new Step(name, descendant, position, attribute, attributeValue));
+            }
+        }
+        if (steps.isEmpty() || (targetAttribute != null && targetAttribute.isWildcard())) {
+            return null;
+        }
+        final List<QName> names = new ArrayList<QName>();
+        for (Step step : steps) {
+            names.add(step.getName());
+            names.add(step.getAttribute());
+        }
+        names.add(targetAttribute);
+        for (QName name : names) {
+            if (name != null && name.getPrefix() != null && !prefixes.contains(name.getPrefix())
+                && !XMLConstants.XML_NS_PREFIX.equals(name.getPrefix())) {
+                return null;
+            }
+        }
+        return new StreamingXPath(steps.toArray(new Step[steps.size()]), target, targetAttribute);
+    }
+
+    /**
+     * @param s the string
+     * @param start start index of the name
+     * @return the end index (exclusive) of the qualified name or <code>-1</code> if there is no valid name
+     */
+    private static int scanQName(final String s, final int start) {
+        if (start < s.length() && s.charAt(start) == '*') {
+            return start + 1;
+        }
+        int end = scanNCName(s, start);
+        if (end > start && end < s.length() && s.charAt(end) == ':') {
+            final int localEnd = scanNCName(s, end + 1);
+            if (localEnd > end + 1) {
+                end = localEnd;
+            } else {
+                return -1;
+            }
+        }
+        return end > start ? end : -1;
+    }
+
+    private static int scanNCName(final String s, final int start) {
+        int i = start;
+        if (i < s.length() && (Character.isLetter(s.charAt(i)) || s.charAt(i) == '_')) {
+            i++;
+            while (i < s.length() && (Character.isLetterOrDigit(s.charAt(i)) || s.charAt(i) == '_'
+                || s.charAt(i) == '-' || s.charAt(i) == '.')) {
+                i++;
+            }
+        }
+        return i;
+    }
+
+    private static QName createQName(final String name) {
+        final int colon = name.indexOf(':');
+        if (colon < 0) {
+            return new QName(null, name);
+        }
+        return new QName(name.substring(0, colon), name.substring(colon + 1));
+    }
+
+    /**
+     * @param s a string of the form <code>='value'</code> or <code>="value"</code>
+     * @return the value or <code>null</code> if the string has not the expected form
+     */
+    private static String parseLiteral(final String s) {
+        if (s.length() < 3 || s.charAt(0) != '=') {
+            return null;
+        }
+        final char quote = s.charAt(1);
+        if ((quote != '\'' && quote != '"') || s.charAt(s.length() - 1) != quote) {
+            return null;
+        }
+        final String value = s.substring(2, s.length() - 1);
+        return value.indexOf(quote) < 0 ? value : null;
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * ------------------------------------------------------------------------
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.xpath2.CellFactories;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.xml.node.xpath2.XPathNodeSettings;
+import org.knime.xml.node.xpath2.CellFactories.StreamingXPath.QName;
+import org.knime.xml.node.xpath2.CellFactories.StreamingXPath.Step;
+import org.knime.xml.node.xpath2.CellFactories.StreamingXPath.Target;
+
+/**
+ * Evaluates several {@link StreamingXPath streamable} queries in a single pass over the serialized XML of a cell by
+ * means of a {@link XMLStreamReader}. No DOM is built, the result of a query is the list of the string values of the
+ * selected nodes in document order.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class StreamingXPathEvaluator implements PathEvaluator {
+
+    static final ThreadLocal<XMLInputFactory> INPUT_FACTORY = ThreadLocal.withInitial(() -> {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        return factory;
+    });
+
+    private final StreamingXPath[] m_paths;
+
+    private final NamespaceResolver m_resolver;
+
+    /**
+     * @param settings settings for the XPath node, used to resolve namespace prefixes
+     * @param paths the queries to evaluate
+     */
+    StreamingXPathEvaluator(final XPathNodeSettings settings, final StreamingXPath[] paths) {
+        m_paths = paths;
+        m_resolver = new NamespaceResolver(settings);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String>[] evaluate(final Reader xml) throws XMLStreamException, InvalidSettingsException {
+        @SuppressWarnings("unchecked")
+        final List<String>[] results = new List[m_paths.length];
+        final QueryState[] states = new QueryState[m_paths.length];
+        for (int i = 0; i < m_paths.length; i++) {
+            results[i] = new ArrayList<String>();
+            states[i] = new QueryState(m_paths[i], results[i]);
+        }
+        final XMLStreamReader reader = INPUT_FACTORY.get().createXMLStreamReader(xml);
+        try {
+            int depth = -1;
+            while (reader.hasNext()) {
+                final int event = reader.next();
+                switch (event) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        depth++;
+                        if (depth == 0) {
+                            final String rootNSUri = reader.getNamespaceURI();
+                            for (QueryState state : states) {
+                                state.resolve(rootNSUri);
+                            }
+                        }
+                        for (QueryState state : states) {
+                            state.startElement(reader, depth);
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        for (QueryState state : states) {
+                            state.endElement(depth);
+                        }
+                        depth--;
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        for (QueryState state : states) {
+                            state.characters(reader, depth);
+                        }
+                        break;
+                    default:
+                        for (QueryState state : states) {
+                            state.otherEvent();
+                        }
+                        break;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return results;
+    }
+
+    static String nullToEmpty(final String s) {
+        return s == null ? XMLConstants.DEFAULT_NS_PREFIX : s;
+    }
+
+    /**
+     * Evaluation state of a single query during one pass.
+     */
+    private final class QueryState {
+
+        private final StreamingXPath m_path;
+
+        private final Step[] m_steps;
+
+        private final List<String> m_result;
+
+        private final String[] m_stepUris;
+
+        private final String[] m_attributeUris;
+
+        private String m_targetAttributeUri;
+
+        /** Whether the element at depth i on the current path is selected by step i. */
+        private final boolean[] m_matched;
+
+        /** Number of elements at depth i under the current parent that pass the name test of step i. */
+        private final int[] m_counter;
+
+        private StringBuilder m_text;
+
+        private int m_textDepth = -1;
+
+        QueryState(final StreamingXPath path, final List<String> result) {
+            m_path = path;
+            m_steps = path.getSteps();
+            m_result = result;
+            m_stepUris = new String[m_steps.length];
+            m_attributeUris = new String[m_steps.length];
+            m_matched = new boolean[m_steps.length];
+            m_counter = new int[m_steps.length];
+        }
+
+        void resolve(final String rootNSUri) throws InvalidSettingsException {
+            for (int i = 0; i < m_steps.length; i++) {
+                m_stepUris[i] = m_resolver.resolve(m_steps[i].getName(), rootNSUri);
+                m_attributeUris[i] = m_resolver.resolve(m_steps[i].getAttribute(), rootNSUri);
+            }
+            m_targetAttributeUri = m_resolver.resolve(m_path.getTargetAttribute(), rootNSUri);
+        }
+
+        void startElement(final XMLStreamReader reader, final int depth) {
+            endText();
+            if (depth + 1 < m_counter.length) {
+                m_counter[depth + 1] = 0;
+            }
+            if (depth >= m_steps.length || (depth > 0 && !m_matched[depth - 1])) {
+                return;
+            }
+            final Step step = m_steps[depth];
+            boolean matched = NamespaceResolver.matches(step.getName(), m_stepUris[depth], reader.getNamespaceURI(),
+                reader.getLocalName());
+            if (matched) {
+                m_counter[depth]++;
+                if (step.getPosition() > 0) {
+                    matched = m_counter[depth] == step.getPosition();
+                } else if (step.getAttribute() != null) {
+                    final String value = getAttributeValue(reader, step.getAttribute(), m_attributeUris[depth]);
+                    matched = value != null
+                        && (step.getAttributeValue() == null || step.getAttributeValue().equals(value));
+                }
+            }
+            m_matched[depth] = matched;
+            if (matched && depth == m_steps.length - 1) {
+                if (m_path.getTarget() == Target.ATTRIBUTE) {
+                    final String value =
+                        getAttributeValue(reader, m_path.getTargetAttribute(), m_targetAttributeUri);
+                    if (value != null) {
+                        m_result.add(value);
+                    }
+                } else if (m_path.getTarget() == Target.ELEMENT) {
+                    m_textDepth = depth;
+                    m_text = new StringBuilder();
+                }
+            }
+        }
+
+        void endElement(final int depth) {
+            if (m_path.getTarget() == Target.ELEMENT) {
+                if (m_text != null && depth == m_textDepth) {
+                    m_result.add(m_text.toString());
+                    m_text = null;
+                    m_textDepth = -1;
+                }
+            } else {
+                endText();
+            }
+            if (depth < m_matched.length) {
+                m_matched[depth] = false;
+            }
+        }
+
+        void characters(final XMLStreamReader reader, final int depth) {
+            if (m_path.getTarget() == Target.TEXT) {
+                final int last = m_steps.length - 1;
+                if (depth == last && m_matched[last]) {
+                    if (m_text == null) {
+                        m_text = new StringBuilder();
+                    }
+                    m_text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                }
+            } else if (m_text != null) {
+                m_text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+            }
+        }
+
+        void otherEvent() {
+            endText();
+        }
+
+        /**
+         * Ends the current text node if the text nodes of the selected elements are collected.
+         */
+        private void endText() {
+            if (m_path.getTarget() == Target.TEXT && m_text != null) {
+                m_result.add(m_text.toString());
+                m_text = null;
+            }
+        }
+
+        private String getAttributeValue(final XMLStreamReader reader, final QName name, final String uri) {
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                if (NamespaceResolver.matches(name, uri, reader.getAttributeNamespace(i),
+                    reader.getAttributeLocalName(i))) {
+                    return reader.getAttributeValue(i);
+                }
+            }
+            return null;
+        }
+    }
+}
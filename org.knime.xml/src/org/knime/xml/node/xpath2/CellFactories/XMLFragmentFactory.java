@@ -0,0 +1,138 @@
+/*
+ * ------------------------------------------------------------------------
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.xpath2.CellFactories;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.xml.XMLCellFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Creates XML cells from the nodes selected by XPath queries of return type Node. The document builder is created
+ * once per thread, since looking up the {@link DocumentBuilderFactory} for every node is expensive.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class XMLFragmentFactory {
+
+    private static final ThreadLocal<DocumentBuilder> DOC_BUILDER = new ThreadLocal<DocumentBuilder>();
+
+    private XMLFragmentFactory() {
+        // utility class
+    }
+
+    /**
+     * @return a new empty document
+     * @throws ParserConfigurationException if the document builder cannot be created
+     */
+    static Document newDocument() throws ParserConfigurationException {
+        DocumentBuilder docBuilder = DOC_BUILDER.get();
+        if (docBuilder == null) {
+            DocumentBuilderFactory domFactory = DocumentBuilderFactory.newInstance();
+            domFactory.setNamespaceAware(true);
+            docBuilder = domFactory.newDocumentBuilder();
+            DOC_BUILDER.set(docBuilder);
+        }
+        return docBuilder.newDocument();
+    }
+
+    /**
+     * Creates a XML cell with a copy of the given node. An attribute is added to a new element with the given name.
+     *
+     * @param value the node selected by an XPath query
+     * @param fragmentName the name of the element that holds an attribute
+     * @return the new XML cell
+     * @throws ParserConfigurationException if the document builder cannot be created
+     */
+    static DataCell create(final Node value, final String fragmentName) throws ParserConfigurationException {
+        Document newDoc = newDocument();
+        if (value.getNodeType() == Node.ATTRIBUTE_NODE) {
+            Element elem = newDoc.createElement(fragmentName);
+            elem.setAttribute(value.getNodeName(), value.getNodeValue());
+            newDoc.appendChild(elem);
+        } else {
+            Node node = newDoc.importNode(value, true);
+            addMissingNamespaces(node, value);
+            newDoc.appendChild(node);
+        }
+        return XMLCellFactory.create(newDoc);
+    }
+
+    /**
+     * This methods assume that <i>newNode</i> is a copy of <i>originalNode</i> whereas the <i>originalNode</i> has been
+     * extracted via XPath. In such cases the new node may contain elements or attributes with namespace prefixes that
+     * are not declared in the new root element. Serializing such a node will result in invalid XML. This methods
+     * adds missing namespace declarations that are present in the original document but not yet in the new node.
+     *
+     * @param newNode the new node to be inserted into a new document; doesn't have a parent
+     * @param originalNode the node from original document
+     */
+    static void addMissingNamespaces(final Node newNode, final Node originalNode) {
+        if (!(newNode instanceof Element)) {
+            return;
+        }
+
+        Element e = (Element)newNode;
+        Node p = originalNode;
+        while (p != null) {
+            NamedNodeMap atts = p.getAttributes();
+            for (int i = 0; (atts != null) && i < atts.getLength(); i++) {
+                Node attributeNode = atts.item(i);
+                if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attributeNode.getNamespaceURI())) {
+                    e.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, attributeNode.getNodeName(),
+                        attributeNode.getNodeValue());
+                }
+            }
+            p = p.getParentNode();
+        }
+    }
+}
@@ -49,60 +49,48 @@
 package org.knime.xml.node.xpath2.CellFactories;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
 import org.knime.core.data.DataCell;
 import org.knime.core.data.DataColumnSpec;
 import org.knime.core.data.DataColumnSpecCreator;
-import org.knime.core.data.DataRow;
 import org.knime.core.data.DataTableSpec;
 import org.knime.core.data.DataType;
 import org.knime.core.data.collection.CollectionCellFactory;
 import org.knime.core.data.collection.ListCell;
-import org.knime.core.data.container.AbstractCellFactory;
 import org.knime.core.data.def.BooleanCell;
 import org.knime.core.data.def.DoubleCell;
 import org.knime.core.data.def.IntCell;
 import org.knime.core.data.def.StringCell;
-import org.knime.core.data.util.LockedSupplier;
-import org.knime.core.data.xml.XMLCellFactory;
-import org.knime.core.data.xml.XMLValue;
 import org.knime.core.node.InvalidSettingsException;
 import org.knime.core.node.NodeLogger;
 import org.knime.xml.node.xpath2.XPathNodeSettings;
 import org.knime.xml.node.xpath2.XPathNodeSettings.XPathOutput;
 import org.knime.xml.node.xpath2.XPathSettings;
-import org.knime.xml.node.xpath2.ui.XPathNamespaceContext;
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 /**
  *
  * @author Tim-Oliver Buchholz, KNIME AG, Zurich, Switzerland
  */
-public final class XPathCollectionCellFactory extends AbstractCellFactory {
+public final class XPathCollectionCellFactory extends AbstractXPathCellFactory
+    implements CollectionElementsCellFactory, StreamableCellFactory {
 
     private static NodeLogger logger = NodeLogger.getLogger(XPathCollectionCellFactory.class);
 
-    private XPathNodeSettings m_settings;
-
     private XPathSettings m_xpathSettings;
 
-    private int m_xmlIndex;
+    private XPathExpressionProvider m_xpathExpr;
+
+    private XPathExpressionProvider m_colNameXPathExpr;
 
-    private XPathExpression m_xpathExpr;
+    private StreamingXPath m_streamingXPath;
 
     /**
      * @param spec the DataTabelSpec of the input
@@ -113,11 +101,23 @@ public final class XPathCollectionCellFactory extends AbstractCellFactory {
      */
     public static XPathCollectionCellFactory create(final DataTableSpec spec, final XPathNodeSettings settings,
         final XPathSettings xpathSettings) throws InvalidSettingsException {
+        return create(spec, settings, xpathSettings, xpathSettings.getNewColumn());
+    }
+
+    /**
+     * @param spec the DataTabelSpec of the input
+     * @param settings settings for the XPath node
+     * @param xpathSettings settings for one xpath query
+     * @param newName the name of the new column, which may differ from the configured one if it has to be unique
+     * @return the new cell factory instance.
+     * @throws InvalidSettingsException when settings are inconsistent with the spec
+     */
+    public static XPathCollectionCellFactory create(final DataTableSpec spec, final XPathNodeSettings settings,
+        final XPathSettings xpathSettings, final String newName) throws InvalidSettingsException {
 
         String xmlColumn = settings.getInputColumn();
         int xmlIndex = spec.findColumnIndex(xmlColumn);
 
-        String newName = xpathSettings.getNewColumn();
         if ((spec.containsName(newName) && !newName.equals(xmlColumn))
             || (spec.containsName(newName) && newName.equals(xmlColumn) && !settings.getRemoveInputColumn())) {
             throw new InvalidSettingsException("Cannot create column " + newName + " since it is already in the input.");
@@ -131,48 +131,110 @@ public static XPathCollectionCellFactory create(final DataTableSpec spec, final
 
     private XPathCollectionCellFactory(final XPathNodeSettings settings, final XPathSettings xpathSettings,
         final int xmlIndex, final DataColumnSpec[] colsSpecs) throws InvalidSettingsException {
-        super(true, colsSpecs);
-        m_settings = settings;
-        m_xmlIndex = xmlIndex;
+        super(settings, xpathSettings, xmlIndex, colsSpecs);
         m_xpathSettings = xpathSettings;
         String xpathQuery = m_xpathSettings.getXpathQuery();
-        m_xpathExpr = m_settings.initXPathExpression(xpathQuery);
+        m_xpathExpr = new XPathExpressionProvider(settings, xpathQuery);
+        if (m_xpathSettings.getUseAttributeForColName()) {
+            xpathQuery = xpathSettings.buildXPathForColNames(xpathQuery);
+            m_colNameXPathExpr = new XPathExpressionProvider(settings, xpathQuery);
+        }
+        m_streamingXPath = StreamingXPath.create(settings, xpathSettings);
+    }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    DataCell[] getCells(final Document doc) {
+        return new DataCell[]{asListCell(getElements(doc))};
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<DataCell> getElements(final Document doc) {
+        addColumnName(getColumnName(doc));
+        return evaluateElements(doc);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public DataCell[] getCells(final DataRow row) {
-        DataCell xmlCell = row.getCell(m_xmlIndex);
-        if (xmlCell.isMissing()) {
-            return new DataCell[]{DataType.getMissingCell()};
+    void collectColumnNames(final Document doc) {
+        if (m_xpathSettings.getUseAttributeForColName()) {
+            addColumnName(getColumnName(doc));
         }
+    }
 
+    /**
+     * @param doc the document of the XML cell
+     * @return the value of the column name attribute or the configured column name
+     */
+    private String getColumnName(final Document doc) {
         String name = m_xpathSettings.getNewColumn();
         if (m_xpathSettings.getUseAttributeForColName()) {
-            @SuppressWarnings("unchecked")
-            XMLValue<Document> xmlValue = (XMLValue<Document>)xmlCell;
-
-            XPathExpression xpathExpr;
-            XPathFactory factory = XPathFactory.newInstance();
-            XPath xpath = factory.newXPath();
-            xpath
-                .setNamespaceContext(new XPathNamespaceContext(m_settings.getNsPrefixes(), m_settings.getNamespaces()));
-
-            String colNameQuery = "";
-            try (LockedSupplier<Document> supplier = xmlValue.getDocumentSupplier()) {
-                colNameQuery = m_xpathSettings.buildXPathForColNames(m_xpathSettings.getXpathQuery());
-                xpathExpr = xpath.compile(colNameQuery);
-                Object result = xpathExpr.evaluate(supplier.get(), XPathConstants.STRING);
+            String colNameQuery = m_colNameXPathExpr.getQuery();
+            try {
+                XPathExpression xpathExpr = m_colNameXPathExpr.get(doc);
+                Object result = xpathExpr.evaluate(doc, XPathConstants.STRING);
                 name = (String)result;
-            } catch (XPathExpressionException e) {
+            } catch (XPathExpressionException | InvalidSettingsException e) {
                 logger.warn("Could not compile XPath query '" + colNameQuery + "' for column name: " + e.getMessage(),
                     e);
             }
 
         }
+        return name;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public StreamingXPath getStreamingXPath() {
+        return m_streamingXPath;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DataCell[] getCells(final List<String> values) {
+        return new DataCell[]{asListCell(getElements(values))};
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<DataCell> getElements(final List<String> values) {
+        addColumnName(m_xpathSettings.getNewColumn());
+        List<DataCell> newCell = null;
+        final XPathOutput returnType = m_xpathSettings.getReturnType();
+        if (returnType.equals(XPathOutput.Boolean)) {
+            newCell = asBooleanSet(values);
+        } else if (returnType.equals(XPathOutput.Double)) {
+            newCell = asDoubleSet(values);
+        } else if (returnType.equals(XPathOutput.Integer)) {
+            newCell = asIntegerSet(values);
+        } else if (returnType.equals(XPathOutput.String)) {
+            newCell = asStringSet(values);
+        }
+        return newCell;
+    }
+
+    /**
+     * @param cells the elements of the collection, <code>null</code> for a missing cell
+     * @return the list cell
+     */
+    private static DataCell asListCell(final List<DataCell> cells) {
+        return cells == null ? DataType.getMissingCell() : CollectionCellFactory.createListCell(cells);
+    }
+
+    private void addColumnName(final String name) {
         // if more than one column name was found throw exception
         if (!m_xpathSettings.addSingleColname(name)) {
             logger.warn("CollectionCell column " + m_xpathSettings.getCurrentColumnIndex()
@@ -180,29 +242,36 @@ public DataCell[] getCells(final DataRow row) {
             throw new IllegalStateException("CollectionCell column " + m_xpathSettings.getCurrentColumnIndex()
                 + " found more than one column name.");
         }
-        return new DataCell[]{getCell(row)};
     }
 
-    private DataCell getCell(final DataRow row) {
-        @SuppressWarnings("unchecked")
-        XMLValue<Document> xmlValue = (XMLValue<Document>)row.getCell(m_xmlIndex);
-        DataCell newCell = null;
+    /**
+     * @param nodes the result of an XPath expression
+     * @return the text contents of the nodes
+     */
+    private static List<String> getTextContents(final NodeList nodes) {
+        List<String> values = new ArrayList<String>(nodes.getLength());
+        for (int i = 0; i < nodes.getLength(); i++) {
+            values.add(nodes.item(i).getTextContent());
+        }
+        return values;
+    }
+
+    private List<DataCell> evaluateElements(final Document doc) {
+        List<DataCell> newCell = null;
         try {
             final XPathOutput returnType = m_xpathSettings.getReturnType();
-            XPathExpression xpathExpr =
-                m_xpathExpr == null ? m_settings.createXPathExpr(xmlValue, m_xpathSettings.getXpathQuery())
-                    : m_xpathExpr;
+            XPathExpression xpathExpr = m_xpathExpr.get(doc);
 
             if (returnType.equals(XPathOutput.Boolean)) {
-                newCell = evaluateBooleanSet(xpathExpr, xmlValue);
+                newCell = evaluateBooleanSet(xpathExpr, doc);
             } else if (returnType.equals(XPathOutput.Double)) {
-                newCell = evaluateDoubleSet(xpathExpr, xmlValue);
+                newCell = evaluateDoubleSet(xpathExpr, doc);
             } else if (returnType.equals(XPathOutput.Integer)) {
-                newCell = evaluateIntegerSet(xpathExpr, xmlValue);
+                newCell = evaluateIntegerSet(xpathExpr, doc);
             } else if (returnType.equals(XPathOutput.String)) {
-                newCell = evaluateStringSet(xpathExpr, xmlValue);
+                newCell = evaluateStringSet(xpathExpr, doc);
             } else if (returnType.equals(XPathOutput.Node)) {
-                newCell = evaluateNodeSet(xpathExpr, xmlValue);
+                newCell = evaluateNodeSet(xpathExpr, doc);
             }
 
         } catch (final Exception e) {
@@ -215,32 +284,32 @@ private DataCell getCell(final DataRow row) {
      * Evaluate XPath expression expecting a BooleanSet as result.
      *
      * @param xpathExpr the XPath expression
-     * @param xmlValue the XML where the XPath expression is applied on
-     * @return the result of the XPath expression
+     * @param doc the XML where the XPath expression is applied on
+     * @return the elements of the result, <code>null</code> for a missing cell
      * @throws XPathExpressionException If the expression cannot be evaluated.
      * @throws ParserConfigurationException
      */
-    private DataCell evaluateBooleanSet(final XPathExpression xpathExpr, final XMLValue<Document> xmlValue)
+    private List<DataCell> evaluateBooleanSet(final XPathExpression xpathExpr, final Document doc)
         throws XPathExpressionException, ParserConfigurationException {
-        DataCell newCell;
-        Object result;
-
-        try (LockedSupplier<Document> supplier = xmlValue.getDocumentSupplier()) {
-            result = xpathExpr.evaluate(supplier.get(), XPathConstants.NODESET);
-        }
+        return asBooleanSet(getTextContents((NodeList)xpathExpr.evaluate(doc, XPathConstants.NODESET)));
+    }
 
-        NodeList nodes = (NodeList)result;
-        if (nodes.getLength() == 0) {
-            newCell = DataType.getMissingCell();
+    /**
+     * @param strs the text contents of the nodes
+     * @return the values parsed as {@link BooleanCell}s, <code>null</code> for a missing cell
+     */
+    private static List<DataCell> asBooleanSet(final List<String> strs) {
+        List<DataCell> newCell;
+        if (strs.isEmpty()) {
+            newCell = null;
         } else {
-            List<BooleanCell> cells = new ArrayList<BooleanCell>();
-            for (int i = 0; i < nodes.getLength(); i++) {
-                String str = nodes.item(i).getTextContent();
+            List<DataCell> cells = new ArrayList<DataCell>(strs.size());
+            for (String str : strs) {
                 boolean value;
                 if (str.isEmpty()) {
                     continue;
                 } else {
-                    value = Boolean.parseBoolean(nodes.item(i).getTextContent());
+                    value = Boolean.parseBoolean(str);
                 }
                 if (value) {
                     cells.add(BooleanCell.TRUE);
@@ -249,11 +318,7 @@ private DataCell evaluateBooleanSet(final XPathExpression xpathExpr, final XMLVa
                 }
 
             }
-            if (cells.isEmpty()) {
-                return DataType.getMissingCell();
-            } else {
-                newCell = CollectionCellFactory.createListCell(cells);
-            }
+            newCell = cells.isEmpty() ? null : cells;
         }
         return newCell;
     }
@@ -262,52 +327,39 @@ private DataCell evaluateBooleanSet(final XPathExpression xpathExpr, final XMLVa
      * Evaluate XPath expression expecting a DoubleSet as result.
      *
      * @param xpathExpr the XPath expression
-     * @param xmlValue the XML where the XPath expression is applied on
-     * @return the result of the XPath expression
+     * @param doc the XML where the XPath expression is applied on
+     * @return the elements of the result, <code>null</code> for a missing cell
      * @throws XPathExpressionException If the expression cannot be evaluated.
      * @throws ParserConfigurationException
      */
-    private DataCell evaluateDoubleSet(final XPathExpression xpathExpr, final XMLValue<Document> xmlValue)
+    private List<DataCell> evaluateDoubleSet(final XPathExpression xpathExpr, final Document doc)
         throws XPathExpressionException, ParserConfigurationException {
-        DataCell newCell;
-        Object result;
-
-        try (LockedSupplier<Document> supplier = xmlValue.getDocumentSupplier()) {
-            result = xpathExpr.evaluate(supplier.get(), XPathConstants.NODESET);
-        }
+        return asDoubleSet(getTextContents((NodeList)xpathExpr.evaluate(doc, XPathConstants.NODESET)));
+    }
 
-        NodeList nodes = (NodeList)result;
-        if (nodes.getLength() == 0) {
-            newCell = DataType.getMissingCell();
+    /**
+     * @param strs the text contents of the nodes
+     * @return the values parsed as {@link DoubleCell}s, <code>null</code> for a missing cell
+     */
+    private List<DataCell> asDoubleSet(final List<String> strs) {
+        List<DataCell> newCell;
+        if (strs.isEmpty()) {
+            newCell = null;
         } else {
-            List<DoubleCell> cells = new ArrayList<DoubleCell>();
-            for (int i = 0; i < nodes.getLength(); i++) {
-                String str = nodes.item(i).getTextContent();
-                double value = 0;
+            List<DataCell> cells = new ArrayList<DataCell>(strs.size());
+            for (String str : strs) {
+                if (NumberParser.isBlank(str)) {
+                    continue;
+                }
                 try {
-                    value = Double.parseDouble(str);
+                    cells.add(new DoubleCell(NumberParser.parseDouble(str)));
                 } catch (NumberFormatException e) {
-                    if ((str).equalsIgnoreCase("NaN")) {
-                        value = Double.NaN;
-                    } else if ((str).equalsIgnoreCase("inf")) {
-                        value = Double.POSITIVE_INFINITY;
-                    } else if ((str).equalsIgnoreCase("-inf")) {
-                        value = Double.NEGATIVE_INFINITY;
-                    } else if (!str.trim().isEmpty()) {
-                        logger.error(m_xpathSettings.getXpathQuery() + " returned: \"" + result + "\". " + result
-                            + " is not of type double.");
-                        throw e;
-                    }
-                }
-                if (!str.trim().isEmpty()) {
-                    cells.add(new DoubleCell(value));
+                    logger.error(m_xpathSettings.getXpathQuery() + " returned: \"" + str + "\". " + str
+                        + " is not of type double.");
+                    throw e;
                 }
             }
-            if (cells.isEmpty()) {
-                newCell = DataType.getMissingCell();
-            } else {
-                newCell = CollectionCellFactory.createListCell(cells);
-            }
+            newCell = cells.isEmpty() ? null : cells;
         }
         return newCell;
     }
@@ -316,48 +368,46 @@ private DataCell evaluateDoubleSet(final XPathExpression xpathExpr, final XMLVal
      * Evaluate XPath expression expecting a IntegerSet as result.
      *
      * @param xpathExpr the XPath expression
-     * @param xmlValue the XML where the XPath expression is applied on
-     * @return the result of the XPath expression
+     * @param doc the XML where the XPath expression is applied on
+     * @return the elements of the result, <code>null</code> for a missing cell
      * @throws XPathExpressionException If the expression cannot be evaluated.
      * @throws ParserConfigurationException
      */
-    private DataCell evaluateIntegerSet(final XPathExpression xpathExpr, final XMLValue<Document> xmlValue)
+    private List<DataCell> evaluateIntegerSet(final XPathExpression xpathExpr, final Document doc)
         throws XPathExpressionException, ParserConfigurationException {
-        DataCell newCell = null;
-        Object result;
-
-        try (LockedSupplier<Document> supplier = xmlValue.getDocumentSupplier()) {
-            result = xpathExpr.evaluate(supplier.get(), XPathConstants.NODESET);
-        }
+        return asIntegerSet(getTextContents((NodeList)xpathExpr.evaluate(doc, XPathConstants.NODESET)));
+    }
 
-        NodeList nodes = (NodeList)result;
-        if (nodes.getLength() == 0) {
-            newCell = DataType.getMissingCell();
+    /**
+     * @param strs the text contents of the nodes
+     * @return the values parsed as {@link IntCell}s, <code>null</code> for a missing cell
+     */
+    private List<DataCell> asIntegerSet(final List<String> strs) {
+        List<DataCell> newCell = null;
+        if (strs.isEmpty()) {
+            newCell = null;
         } else {
-            List<IntCell> cells = new ArrayList<IntCell>();
-            for (int i = 0; i < nodes.getLength(); i++) {
-                int value;
-                String str = nodes.item(i).getTextContent();
-                try {
-                    value = Integer.parseInt(str);
-                    cells.add(new IntCell(value));
-                } catch (NumberFormatException e) {
-                    if (str.equals("NaN") || str.equalsIgnoreCase("inf") || str.equalsIgnoreCase("-inf")) {
-                        if (!m_xpathSettings.getMissingCellOnInfinityOrNaN()) {
-                            cells.add(new IntCell(m_xpathSettings.getDefaultNumber()));
-                        }
-                    } else if (!str.trim().isEmpty()) {
-                        logger.error(m_xpathSettings.getXpathQuery() + " returned: \"" + result + "\". " + result
-                            + " is not of type double.");
+            List<DataCell> cells = new ArrayList<DataCell>(strs.size());
+            for (String str : strs) {
+                final long value = NumberParser.parseInt(str);
+                if (value != NumberParser.NO_INT) {
+                    cells.add(new IntCell((int)value));
+                } else if (NumberParser.isIntegerNaNOrInfinity(str)) {
+                    if (!m_xpathSettings.getMissingCellOnInfinityOrNaN()) {
+                        cells.add(new IntCell(m_xpathSettings.getDefaultNumber()));
+                    }
+                } else if (!NumberParser.isBlank(str)) {
+                    try {
+                        // e.g. non-ASCII digits, throws if the text is not an integer at all
+                        cells.add(new IntCell(Integer.parseInt(str)));
+                    } catch (NumberFormatException e) {
+                        logger.error(m_xpathSettings.getXpathQuery() + " returned: \"" + str + "\". " + str
+                            + " is not of type integer.");
                         throw e;
                     }
                 }
             }
-            if (cells.isEmpty()) {
-                newCell = DataType.getMissingCell();
-            } else {
-                newCell = CollectionCellFactory.createListCell(cells);
-            }
+            newCell = cells.isEmpty() ? null : cells;
         }
         return newCell;
     }
@@ -366,47 +416,33 @@ private DataCell evaluateIntegerSet(final XPathExpression xpathExpr, final XMLVa
      * Evaluate XPath expression expecting a StringSet as result.
      *
      * @param xpathExpr the XPath expression
-     * @param xmlValue the XML where the XPath expression is applied on
-     * @return the result of the XPath expression
+     * @param doc the XML where the XPath expression is applied on
+     * @return the elements of the result, <code>null</code> for a missing cell
      * @throws XPathExpressionException If the expression cannot be evaluated.
      * @throws ParserConfigurationException
      */
-    private DataCell evaluateStringSet(final XPathExpression xpathExpr, final XMLValue<Document> xmlValue)
+    private List<DataCell> evaluateStringSet(final XPathExpression xpathExpr, final Document doc)
         throws XPathExpressionException, ParserConfigurationException {
-        DataCell newCell;
-        Object valResult;
-
-        try (LockedSupplier<Document> supplier = xmlValue.getDocumentSupplier()) {
-            valResult = xpathExpr.evaluate(supplier.get(), XPathConstants.NODESET);
-        }
-
-        NodeList valNodes = (NodeList)valResult;
-
-        NodeListReader<DataCell> nlr = new NodeListReader<DataCell>(valNodes) {
-
-            @Override
-            public DataCell parse(final String str) {
-                if (m_xpathSettings.getMissingCellOnEmptyString()) {
-                    if (!str.isEmpty()) {
-                        return new StringCell(str);
-                    } else {
+        return asStringSet(getTextContents((NodeList)xpathExpr.evaluate(doc, XPathConstants.NODESET)));
+    }
 
-                        return null;
-                    }
-                } else {
-                    return new StringCell(str);
-                }
+    /**
+     * @param strs the text contents of the nodes
+     * @return the values as {@link StringCell}s, <code>null</code> for a missing cell
+     */
+    private List<DataCell> asStringSet(final List<String> strs) {
+        List<DataCell> newCell;
+        List<DataCell> values = new ArrayList<DataCell>(strs.size());
+        for (String str : strs) {
+            if (!str.isEmpty() || !m_xpathSettings.getMissingCellOnEmptyString()) {
+                values.add(new StringCell(str));
             }
-        };
-
-        List<DataCell> values = nlr.getValues();
-
-        values.removeAll(Collections.singleton(null));
+        }
 
         if (m_xpathSettings.getMissingCellOnEmptyString() && values.isEmpty()) {
-            newCell = DataType.getMissingCell();
+            newCell = null;
         } else {
-            newCell = CollectionCellFactory.createListCell(values);
+            newCell = values;
         }
 
         return newCell;
@@ -416,43 +452,24 @@ public DataCell parse(final String str) {
      * Evaluate XPath expression expecting a NodeSet as result.
      *
      * @param xpathExpr the XPath expression
-     * @param xmlValue the XML where the XPath expression is applied on
-     * @return the result of the XPath expression
+     * @param doc the XML where the XPath expression is applied on
+     * @return the elements of the result, <code>null</code> for a missing cell
      * @throws XPathExpressionException If the expression cannot be evaluated.
      * @throws ParserConfigurationException
      */
-    private DataCell evaluateNodeSet(final XPathExpression xpathExpr, final XMLValue<Document> xmlValue)
+    private List<DataCell> evaluateNodeSet(final XPathExpression xpathExpr, final Document doc)
         throws XPathExpressionException, ParserConfigurationException {
-        DataCell newCell;
-        Object result;
-
-        try (LockedSupplier<Document> supplier = xmlValue.getDocumentSupplier()) {
-            result = xpathExpr.evaluate(supplier.get(), XPathConstants.NODESET);
-        }
+        List<DataCell> newCell;
+        Object result = xpathExpr.evaluate(doc, XPathConstants.NODESET);
 
         NodeList nodes = (NodeList)result;
         if (nodes.getLength() == 0) {
-            newCell = DataType.getMissingCell();
+            newCell = null;
         } else {
-            List<DataCell> cells = new ArrayList<DataCell>();
-            DocumentBuilderFactory domFactory = DocumentBuilderFactory.newInstance();
-            domFactory.setNamespaceAware(true);
-            DocumentBuilder docBuilder = domFactory.newDocumentBuilder();
+            newCell = new ArrayList<DataCell>(nodes.getLength());
             for (int i = 0; i < nodes.getLength(); i++) {
-                Node value = nodes.item(i);
-                Document doc = docBuilder.newDocument();
-                if (value.getNodeType() == Node.ATTRIBUTE_NODE) {
-                    Element elem = doc.createElement(m_xpathSettings.getXmlFragmentName());
-                    elem.setAttribute(value.getNodeName(), value.getNodeValue());
-                    doc.appendChild(elem);
-                } else {
-                    Node node = doc.importNode(value, true);
-                    XPathSingleCellFactory.addMissingNamespaces(node, value);
-                    doc.appendChild(node);
-                }
-                cells.add(XMLCellFactory.create(doc));
+                newCell.add(XMLFragmentFactory.create(nodes.item(i), m_xpathSettings.getXmlFragmentName()));
             }
-            newCell = CollectionCellFactory.createListCell(cells);
         }
         return newCell;
     }
@@ -0,0 +1,136 @@
+/*
+ * ------------------------------------------------------------------------
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.xpath2.CellFactories;
+
+import java.util.Objects;
+
+import javax.xml.xpath.XPathExpression;
+
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.xml.node.xpath2.XPathExpressionCache;
+import org.knime.xml.node.xpath2.XPathNodeSettings;
+import org.w3c.dom.Document;
+
+/**
+ * Provides the compiled {@link XPathExpression} of a single query to the cell factories. An {@link XPathExpression}
+ * is not thread-safe, but the cell factories are processed concurrently. Therefore every thread resolves the query
+ * once from the per-thread {@link XPathExpressionCache} and keeps the expression for all the rows it processes.
+ * <p>
+ * Queries using the prefix of the root's namespace have to be compiled for the namespace of each document. A thread
+ * keeps the expression together with the root namespace URI it was compiled for and only looks up the cache again if
+ * the URI of a document differs. As the root namespace usually is the same for all documents of a column, this
+ * happens once per thread as well.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class XPathExpressionProvider {
+
+    private final XPathNodeSettings m_settings;
+
+    private final String m_query;
+
+    /**
+     * <code>true</code> if the query can only be compiled with the namespace of the root element of each document.
+     */
+    private final boolean m_needsRootNamespace;
+
+    /**
+     * The expression last resolved by each thread.
+     */
+    private final ThreadLocal<ResolvedExpression> m_resolved = new ThreadLocal<>();
+
+    /**
+     * @param settings settings for the XPath node
+     * @param query the XPath query
+     * @throws InvalidSettingsException if the query cannot be compiled
+     */
+    XPathExpressionProvider(final XPathNodeSettings settings, final String query) throws InvalidSettingsException {
+        m_settings = settings;
+        m_query = query;
+        m_needsRootNamespace = m_settings.initXPathExpression(query) == null;
+    }
+
+    /**
+     * @return the XPath query
+     */
+    String getQuery() {
+        return m_query;
+    }
+
+    /**
+     * Returns the compiled expression owned by the calling thread.
+     *
+     * @param doc the document the expression is applied on, used to determine the root's namespace
+     * @return the compiled expression, never <code>null</code>
+     * @throws InvalidSettingsException if the query cannot be compiled for the given value
+     */
+    XPathExpression get(final Document doc) throws InvalidSettingsException {
+        final String rootNSUri = m_needsRootNamespace ? XPathNodeSettings.getRootNSUri(doc) : null;
+        ResolvedExpression resolved = m_resolved.get();
+        if (resolved == null || !Objects.equals(resolved.m_rootNSUri, rootNSUri)) {
+            final XPathExpression xpathExpr = m_needsRootNamespace
+                ? m_settings.createXPathExprWithRootNS(rootNSUri, m_query) : m_settings.initXPathExpression(m_query);
+            resolved = new ResolvedExpression(rootNSUri, xpathExpr);
+            m_resolved.set(resolved);
+        }
+        return resolved.m_xpathExpr;
+    }
+
+    /**
+     * A compiled expression and the root namespace URI it is compiled for, <code>null</code> if the query does not
+     * use the root's namespace.
+     */
+    private static final class ResolvedExpression {
+
+        private final String m_rootNSUri;
+
+        private final XPathExpression m_xpathExpr;
+
+        ResolvedExpression(final String rootNSUri, final XPathExpression xpathExpr) {
+            m_rootNSUri = rootNSUri;
+            m_xpathExpr = xpathExpr;
+        }
+    }
+}
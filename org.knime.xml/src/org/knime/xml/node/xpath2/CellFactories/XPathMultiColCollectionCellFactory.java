@@ -49,10 +49,11 @@
 package org.knime.xml.node.xpath2.CellFactories;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
@@ -61,46 +62,36 @@
 import org.knime.core.data.DataCell;
 import org.knime.core.data.DataColumnSpec;
 import org.knime.core.data.DataColumnSpecCreator;
-import org.knime.core.data.DataRow;
 import org.knime.core.data.DataTableSpec;
 import org.knime.core.data.DataType;
 import org.knime.core.data.collection.CollectionCellFactory;
 import org.knime.core.data.collection.ListCell;
-import org.knime.core.data.container.AbstractCellFactory;
 import org.knime.core.data.def.BooleanCell;
 import org.knime.core.data.def.DoubleCell;
 import org.knime.core.data.def.IntCell;
 import org.knime.core.data.def.StringCell;
-import org.knime.core.data.util.LockedSupplier;
-import org.knime.core.data.xml.XMLCellFactory;
-import org.knime.core.data.xml.XMLValue;
 import org.knime.core.node.InvalidSettingsException;
 import org.knime.core.node.NodeLogger;
 import org.knime.xml.node.xpath2.XPathNodeSettings;
 import org.knime.xml.node.xpath2.XPathNodeSettings.XPathOutput;
 import org.knime.xml.node.xpath2.XPathSettings;
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 /**
  *
  * @author Tim-Oliver Buchholz, KNIME AG, Zurich, Switzerland
  */
-public final class XPathMultiColCollectionCellFactory extends AbstractCellFactory {
+public final class XPathMultiColCollectionCellFactory extends AbstractXPathCellFactory
+    implements MultiColumnCellFactory {
 
     private static NodeLogger logger = NodeLogger.getLogger(XPathSingleCellFactory.class);
 
-    private XPathNodeSettings m_settings;
-
     private XPathSettings m_xpathSettings;
 
-    private int m_xmlIndex;
-
-    private XPathExpression m_xpathExpr;
+    private XPathExpressionProvider m_xpathExpr;
 
-    private XPathExpression m_colNameXPathExpr;
+    private XPathExpressionProvider m_colNameXPathExpr;
 
     /**
      * @param spec the DataTabelSpec of the input
@@ -111,6 +102,19 @@ public final class XPathMultiColCollectionCellFactory extends AbstractCellFactor
      */
     public static XPathMultiColCollectionCellFactory create(final DataTableSpec spec, final XPathNodeSettings settings,
         final XPathSettings xpathSettings) throws InvalidSettingsException {
+        return create(spec, settings, xpathSettings, xpathSettings.getNewColumn());
+    }
+
+    /**
+     * @param spec the DataTabelSpec of the input
+     * @param settings settings for the XPath node
+     * @param xpathSettings settings for one xpath query
+     * @param newName the name of the new column, which may differ from the configured one if it has to be unique
+     * @return the new cell factory instance.
+     * @throws InvalidSettingsException when settings are inconsistent with the spec
+     */
+    public static XPathMultiColCollectionCellFactory create(final DataTableSpec spec, final XPathNodeSettings settings,
+        final XPathSettings xpathSettings, final String newName) throws InvalidSettingsException {
 
         // check user settings against input spec here
         String xmlColumn = settings.getInputColumn();
@@ -118,7 +122,6 @@ public static XPathMultiColCollectionCellFactory create(final DataTableSpec spec
         if (xmlIndex < 0) {
             throw new InvalidSettingsException("No such column in input table: " + xmlColumn);
         }
-        String newName = xpathSettings.getNewColumn();
         if ((spec.containsName(newName) && !newName.equals(xmlColumn))
             || (spec.containsName(newName) && newName.equals(xmlColumn) && !settings.getRemoveInputColumn())) {
             throw new InvalidSettingsException("Cannot create column " + newName + " since it is already in the input.");
@@ -138,15 +141,13 @@ public static XPathMultiColCollectionCellFactory create(final DataTableSpec spec
 
     private XPathMultiColCollectionCellFactory(final XPathNodeSettings settings, final XPathSettings xpathSettings,
         final int xmlIndex, final DataColumnSpec[] colsSpecs) throws InvalidSettingsException {
-        super(true, colsSpecs);
-        m_settings = settings;
-        m_xmlIndex = xmlIndex;
+        super(settings, xpathSettings, xmlIndex, colsSpecs);
         m_xpathSettings = xpathSettings;
         String xpathQuery = m_xpathSettings.getXpathQuery();
-        m_xpathExpr = m_settings.initXPathExpression(xpathQuery);
+        m_xpathExpr = new XPathExpressionProvider(settings, xpathQuery);
         if (xpathSettings.getUseAttributeForColName()) {
             xpathQuery = xpathSettings.buildXPathForColNames(xpathQuery);
-            m_colNameXPathExpr = m_settings.initXPathExpression(xpathQuery);
+            m_colNameXPathExpr = new XPathExpressionProvider(settings, xpathQuery);
         }
     }
 
@@ -154,34 +155,48 @@ private XPathMultiColCollectionCellFactory(final XPathNodeSettings settings, fin
      * {@inheritDoc}
      */
     @Override
-    public DataCell[] getCells(final DataRow row) {
-        return getCell(row);
+    DataCell[] getCells(final Document doc) {
+        final NamedValues result = evaluate(doc);
+        return new DataCell[]{CollectionCellFactory.createListCell(result.m_values),
+            CollectionCellFactory.createListCell(result.m_names)};
     }
 
-    private DataCell[] getCell(final DataRow row) {
-        DataCell xmlCell = row.getCell(m_xmlIndex);
-        if (xmlCell.isMissing()) {
-            return new DataCell[]{DataType.getMissingCell(), DataType.getMissingCell()};
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setCells(final Document doc, final DataCell[] cells, final Map<String, Integer> columns) {
+        for (Integer index : columns.values()) {
+            cells[index] = DataType.getMissingCell();
+        }
+        final NamedValues result = evaluate(doc);
+        for (int i = 0; i < result.m_values.size(); i++) {
+            final String name = result.m_names.get(i).getStringValue();
+            final Integer index = columns.get(name);
+            if (index == null) {
+                throw new IllegalStateException("Column name \"" + name + "\" of multiple column query "
+                    + m_xpathSettings.getXpathQuery() + " was not found while determining the output columns.");
+            }
+            cells[index] = result.m_values.get(i);
         }
-        @SuppressWarnings("unchecked")
-        XMLValue<Document> xmlValue = (XMLValue<Document>)xmlCell;
-        DataCell[] newCell = null;
+    }
+
+    private NamedValues evaluate(final Document doc) {
+        NamedValues newCell = null;
         try {
             final XPathOutput returnType = m_xpathSettings.getReturnType();
-            XPathExpression xpathExpr =
-                m_xpathExpr == null ? m_settings.createXPathExpr(xmlValue, m_xpathSettings.getXpathQuery())
-                    : m_xpathExpr;
+            XPathExpression xpathExpr = m_xpathExpr.get(doc);
 
             if (returnType.equals(XPathOutput.Boolean)) {
-                newCell = evaluateBooleanSet(xpathExpr, xmlValue);
+                newCell = evaluateBooleanSet(xpathExpr, doc);
             } else if (returnType.equals(XPathOutput.Double)) {
-                newCell = evaluateDoubleSet(xpathExpr, xmlValue);
+                newCell = evaluateDoubleSet(xpathExpr, doc);
             } else if (returnType.equals(XPathOutput.Integer)) {
-                newCell = evaluateIntegerSet(xpathExpr, xmlValue);
+                newCell = evaluateIntegerSet(xpathExpr, doc);
             } else if (returnType.equals(XPathOutput.String)) {
-                newCell = evaluateStringSet(xpathExpr, xmlValue);
+                newCell = evaluateStringSet(xpathExpr, doc);
             } else if (returnType.equals(XPathOutput.Node)) {
-                newCell = evaluateNodeSet(xpathExpr, xmlValue);
+                newCell = evaluateNodeSet(xpathExpr, doc);
             }
 
         } catch (final Exception e) {
@@ -190,14 +205,31 @@ private DataCell[] getCell(final DataRow row) {
         return newCell;
     }
 
-    private List<StringCell> getColumnNameCollection(final XMLValue<Document> xmlValue, final List<DataCell> values)
-        throws XPathExpressionException {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void collectColumnNames(final Document doc) {
+        if (m_xpathSettings.getUseAttributeForColName()
+            && !m_xpathSettings.getReturnType().equals(XPathOutput.Boolean)) {
+            // the names are taken as they are, only empty boolean values drop their name
+            try {
+                m_xpathSettings.addMultiColName(getColumnNameCollection(doc, null));
+            } catch (XPathExpressionException | InvalidSettingsException e) {
+                throw new IllegalStateException(e);
+            }
+        } else {
+            // the names depend on the values
+            evaluate(doc);
+        }
+    }
+
+    private List<StringCell> getColumnNameCollection(final Document doc, final List<DataCell> values)
+        throws XPathExpressionException, InvalidSettingsException {
         List<StringCell> colNames = null;
         if (m_xpathSettings.getUseAttributeForColName()) {
-            Object nameResult;
-            try (LockedSupplier<Document> supplier = xmlValue.getDocumentSupplier()) {
-                nameResult = m_colNameXPathExpr.evaluate(supplier.get(), XPathConstants.NODESET);
-            }
+            XPathExpression colNameXPathExpr = m_colNameXPathExpr.get(doc);
+            Object nameResult = colNameXPathExpr.evaluate(doc, XPathConstants.NODESET);
             NodeList nameNodes = (NodeList)nameResult;
             NodeListReader<StringCell> nlrNames = new NodeListReader<StringCell>(nameNodes) {
 
@@ -208,17 +240,19 @@ public StringCell parse(final String value) {
             };
             colNames = nlrNames.getValues();
         } else {
-            colNames = new ArrayList<StringCell>();
+            colNames = new ArrayList<StringCell>(values.size());
+            Set<String> usedNames = new HashSet<String>();
             String base = m_xpathSettings.getNewColumn();
             String name = base;
             int j = 0;
             for (int i = 0; i < values.size(); i++) {
                 name = name.trim();
-                while (colNames.contains(new StringCell(name))) {
+                while (usedNames.contains(name)) {
                     name = base + "(#" + j + ")";
                     j++;
                     name = name.trim();
                 }
+                usedNames.add(name);
                 colNames.add(new StringCell(name));
             }
         }
@@ -229,18 +263,14 @@ public StringCell parse(final String value) {
      * Evaluate XPath expression expecting a IntegerSet as result.
      *
      * @param xpathExpr the XPath expression
-     * @param xmlValue the XML where the XPath expression is applied on
+     * @param doc the XML where the XPath expression is applied on
      * @return the result of the XPath expression
      * @throws XPathExpressionException If the expression cannot be evaluated.
      * @throws ParserConfigurationException
      */
-    private DataCell[] evaluateBooleanSet(final XPathExpression xpathExpr, final XMLValue<Document> xmlValue)
-        throws XPathExpressionException, ParserConfigurationException {
-        Object valResult;
-
-        try (LockedSupplier<Document> supplier = xmlValue.getDocumentSupplier()) {
-            valResult = xpathExpr.evaluate(supplier.get(), XPathConstants.NODESET);
-        }
+    private NamedValues evaluateBooleanSet(final XPathExpression xpathExpr, final Document doc)
+        throws XPathExpressionException, ParserConfigurationException, InvalidSettingsException {
+        Object valResult = xpathExpr.evaluate(doc, XPathConstants.NODESET);
 
         NodeList valNodes = (NodeList)valResult;
 
@@ -264,7 +294,7 @@ public DataCell parse(final String str) {
         };
         List<DataCell> values = nlr.getValues();
 
-        List<StringCell> colNames = getColumnNameCollection(xmlValue, values);
+        List<StringCell> colNames = getColumnNameCollection(doc, values);
 
         if (values.size() != colNames.size()) {
             logger.warn("Number of values differs from number of column names.");
@@ -279,26 +309,21 @@ public DataCell parse(final String str) {
 
         m_xpathSettings.addMultiColName(colNames);
 
-        return new DataCell[]{CollectionCellFactory.createListCell(values),
-            CollectionCellFactory.createListCell(colNames)};
+        return new NamedValues(values, colNames);
     }
 
     /**
      * Evaluate XPath expression expecting a IntegerSet as result.
      *
      * @param xpathExpr the XPath expression
-     * @param xmlValue the XML where the XPath expression is applied on
+     * @param doc the XML where the XPath expression is applied on
      * @return the result of the XPath expression
      * @throws XPathExpressionException If the expression cannot be evaluated.
      * @throws ParserConfigurationException
      */
-    private DataCell[] evaluateDoubleSet(final XPathExpression xpathExpr, final XMLValue<Document> xmlValue)
-        throws XPathExpressionException, ParserConfigurationException {
-        Object valResult;
-
-        try (LockedSupplier<Document> supplier = xmlValue.getDocumentSupplier()) {
-            valResult = xpathExpr.evaluate(supplier.get(), XPathConstants.NODESET);
-        }
+    private NamedValues evaluateDoubleSet(final XPathExpression xpathExpr, final Document doc)
+        throws XPathExpressionException, ParserConfigurationException, InvalidSettingsException {
+        Object valResult = xpathExpr.evaluate(doc, XPathConstants.NODESET);
 
         NodeList valNodes = (NodeList)valResult;
 
@@ -306,30 +331,21 @@ private DataCell[] evaluateDoubleSet(final XPathExpression xpathExpr, final XMLV
 
             @Override
             public DataCell parse(final String str) {
-                double value = 0;
+                if (NumberParser.isBlank(str)) {
+                    return DataType.getMissingCell();
+                }
                 try {
-                    value = Double.parseDouble(str);
+                    return new DoubleCell(NumberParser.parseDouble(str));
                 } catch (NumberFormatException e) {
-                    if ((str).equalsIgnoreCase("NaN")) {
-                        value = Double.NaN;
-                    } else if ((str).equalsIgnoreCase("inf")) {
-                        value = Double.POSITIVE_INFINITY;
-                    } else if ((str).equalsIgnoreCase("-inf")) {
-                        value = Double.NEGATIVE_INFINITY;
-                    } else if (str.trim().isEmpty()) {
-                        return DataType.getMissingCell();
-                    } else {
-                        logger.error(m_xpathSettings.getXpathQuery() + " returned: \"" + str + "\". " + str
-                            + " is not of type double.");
-                        throw e;
-                    }
+                    logger.error(m_xpathSettings.getXpathQuery() + " returned: \"" + str + "\". " + str
+                        + " is not of type double.");
+                    throw e;
                 }
-                return new DoubleCell(value);
             }
         };
 
         List<DataCell> values = nlr.getValues();
-        List<StringCell> colNames = getColumnNameCollection(xmlValue, values);
+        List<StringCell> colNames = getColumnNameCollection(doc, values);
 
         if (values.size() != colNames.size()) {
             logger.warn("Number of values differs from number of column names.");
@@ -338,26 +354,21 @@ public DataCell parse(final String str) {
 
         m_xpathSettings.addMultiColName(colNames);
 
-        return new DataCell[]{CollectionCellFactory.createListCell(values),
-            CollectionCellFactory.createListCell(colNames)};
+        return new NamedValues(values, colNames);
     }
 
     /**
      * Evaluate XPath expression expecting a IntegerSet as result.
      *
      * @param xpathExpr the XPath expression
-     * @param xmlValue the XML where the XPath expression is applied on
+     * @param doc the XML where the XPath expression is applied on
      * @return the result of the XPath expression
      * @throws XPathExpressionException If the expression cannot be evaluated.
      * @throws ParserConfigurationException
      */
-    private DataCell[] evaluateIntegerSet(final XPathExpression xpathExpr, final XMLValue<Document> xmlValue)
-        throws XPathExpressionException, ParserConfigurationException {
-        Object valResult;
-
-        try (LockedSupplier<Document> supplier = xmlValue.getDocumentSupplier()) {
-            valResult = xpathExpr.evaluate(supplier.get(), XPathConstants.NODESET);
-        }
+    private NamedValues evaluateIntegerSet(final XPathExpression xpathExpr, final Document doc)
+        throws XPathExpressionException, ParserConfigurationException, InvalidSettingsException {
+        Object valResult = xpathExpr.evaluate(doc, XPathConstants.NODESET);
 
         NodeList valNodes = (NodeList)valResult;
 
@@ -365,30 +376,31 @@ private DataCell[] evaluateIntegerSet(final XPathExpression xpathExpr, final XML
 
             @Override
             public DataCell parse(final String str) {
-                int value;
-                try {
-                    value = Integer.parseInt(str);
-                    return new IntCell(value);
-                } catch (NumberFormatException e) {
-                    if (str.equals("NaN") || str.equalsIgnoreCase("inf") || str.equalsIgnoreCase("-inf")) {
-                        if (!m_xpathSettings.getMissingCellOnInfinityOrNaN()) {
-                            return new IntCell(m_xpathSettings.getDefaultNumber());
-                        } else {
-                            return DataType.getMissingCell();
-                        }
-                    } else if (str.trim().isEmpty()) {
-                        return DataType.getMissingCell();
+                final long value = NumberParser.parseInt(str);
+                if (value != NumberParser.NO_INT) {
+                    return new IntCell((int)value);
+                } else if (NumberParser.isIntegerNaNOrInfinity(str)) {
+                    if (!m_xpathSettings.getMissingCellOnInfinityOrNaN()) {
+                        return new IntCell(m_xpathSettings.getDefaultNumber());
                     } else {
-                        logger.error(m_xpathSettings.getXpathQuery() + " returned: \"" + str + "\". " + str
-                            + " is not of type integer.");
-                        throw e;
+                        return DataType.getMissingCell();
                     }
+                } else if (NumberParser.isBlank(str)) {
+                    return DataType.getMissingCell();
+                }
+                try {
+                    // e.g. non-ASCII digits, throws if the text is not an integer at all
+                    return new IntCell(Integer.parseInt(str));
+                } catch (NumberFormatException e) {
+                    logger.error(m_xpathSettings.getXpathQuery() + " returned: \"" + str + "\". " + str
+                        + " is not of type integer.");
+                    throw e;
                 }
             }
         };
 
         List<DataCell> values = nlr.getValues();
-        List<StringCell> colNames = getColumnNameCollection(xmlValue, values);
+        List<StringCell> colNames = getColumnNameCollection(doc, values);
 
         if (values.size() != colNames.size()) {
             logger.warn("Number of values differs from number of column names.");
@@ -397,26 +409,21 @@ public DataCell parse(final String str) {
 
         m_xpathSettings.addMultiColName(colNames);
 
-        return new DataCell[]{CollectionCellFactory.createListCell(values),
-            CollectionCellFactory.createListCell(colNames)};
+        return new NamedValues(values, colNames);
     }
 
     /**
      * Evaluate XPath expression expecting a StringSet as result.
      *
      * @param xpathExpr the XPath expression
-     * @param xmlValue the XML where the XPath expression is applied on
+     * @param doc the XML where the XPath expression is applied on
      * @return the result of the XPath expression
      * @throws XPathExpressionException If the expression cannot be evaluated.
      * @throws ParserConfigurationException
      */
-    private DataCell[] evaluateStringSet(final XPathExpression xpathExpr, final XMLValue<Document> xmlValue)
-        throws XPathExpressionException, ParserConfigurationException {
-        Object valResult;
-
-        try (LockedSupplier<Document> supplier = xmlValue.getDocumentSupplier()) {
-            valResult = xpathExpr.evaluate(supplier.get(), XPathConstants.NODESET);
-        }
+    private NamedValues evaluateStringSet(final XPathExpression xpathExpr, final Document doc)
+        throws XPathExpressionException, ParserConfigurationException, InvalidSettingsException {
+        Object valResult = xpathExpr.evaluate(doc, XPathConstants.NODESET);
 
         NodeList valNodes = (NodeList)valResult;
 
@@ -437,7 +444,7 @@ public DataCell parse(final String value) {
         };
 
         List<DataCell> values = nlr.getValues();
-        List<StringCell> colNames = getColumnNameCollection(xmlValue, values);
+        List<StringCell> colNames = getColumnNameCollection(doc, values);
 
         if (values.size() != colNames.size()) {
             logger.warn("Number of values differs from number of column names.");
@@ -446,50 +453,31 @@ public DataCell parse(final String value) {
 
         m_xpathSettings.addMultiColName(colNames);
 
-        return new DataCell[]{CollectionCellFactory.createListCell(values),
-            CollectionCellFactory.createListCell(colNames)};
+        return new NamedValues(values, colNames);
     }
 
     /**
      * Evaluate XPath expression expecting a NodeSet as result.
      *
      * @param xpathExpr the XPath expression
-     * @param xmlValue the XML where the XPath expression is applied on
+     * @param doc the XML where the XPath expression is applied on
      * @return the result of the XPath expression
      * @throws XPathExpressionException If the expression cannot be evaluated.
      * @throws ParserConfigurationException
      */
-    private DataCell[] evaluateNodeSet(final XPathExpression xpathExpr, final XMLValue<Document> xmlValue)
-        throws XPathExpressionException, ParserConfigurationException {
+    private NamedValues evaluateNodeSet(final XPathExpression xpathExpr, final Document doc)
+        throws XPathExpressionException, ParserConfigurationException, InvalidSettingsException {
 
-        Object valResult;
-
-        try (LockedSupplier<Document> supplier = xmlValue.getDocumentSupplier()) {
-            valResult = xpathExpr.evaluate(supplier.get(), XPathConstants.NODESET);
-        }
+        Object valResult = xpathExpr.evaluate(doc, XPathConstants.NODESET);
 
         NodeList valNodes = (NodeList)valResult;
 
         ArrayList<DataCell> values = new ArrayList<DataCell>();
-        DocumentBuilderFactory domFactory = DocumentBuilderFactory.newInstance();
-        domFactory.setNamespaceAware(true);
-        DocumentBuilder docBuilder = domFactory.newDocumentBuilder();
         for (int i = 0; i < valNodes.getLength(); i++) {
-            Node value = valNodes.item(i);
-            Document doc = docBuilder.newDocument();
-            if (value.getNodeType() == Node.ATTRIBUTE_NODE) {
-                Element elem = doc.createElement(m_xpathSettings.getXmlFragmentName());
-                elem.setAttribute(value.getNodeName(), value.getNodeValue());
-                doc.appendChild(elem);
-            } else {
-                Node node = doc.importNode(value, true);
-                XPathSingleCellFactory.addMissingNamespaces(node, value);
-                doc.appendChild(node);
-            }
-            values.add(XMLCellFactory.create(doc));
+            values.add(XMLFragmentFactory.create(valNodes.item(i), m_xpathSettings.getXmlFragmentName()));
         }
 
-        List<StringCell> colNames = getColumnNameCollection(xmlValue, values);
+        List<StringCell> colNames = getColumnNameCollection(doc, values);
 
         if (values.size() != colNames.size()) {
             logger.warn("Number of values differs from number of column names.");
@@ -498,7 +486,21 @@ private DataCell[] evaluateNodeSet(final XPathExpression xpathExpr, final XMLVal
 
         m_xpathSettings.addMultiColName(colNames);
 
-        return new DataCell[]{CollectionCellFactory.createListCell(values),
-            CollectionCellFactory.createListCell(colNames)};
+        return new NamedValues(values, colNames);
+    }
+
+    /**
+     * The values of a query and the names of their columns, in the same order.
+     */
+    private static final class NamedValues {
+
+        private final List<DataCell> m_values;
+
+        private final List<StringCell> m_names;
+
+        NamedValues(final List<DataCell> values, final List<StringCell> names) {
+            m_values = values;
+            m_names = names;
+        }
     }
 }
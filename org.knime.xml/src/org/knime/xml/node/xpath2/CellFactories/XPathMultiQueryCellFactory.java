@@ -0,0 +1,393 @@
+/*
+ * ------------------------------------------------------------------------
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.xpath2.CellFactories;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataColumnSpec;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataType;
+import org.knime.core.data.collection.CollectionDataValue;
+import org.knime.core.data.container.AbstractCellFactory;
+import org.knime.core.data.util.LockedSupplier;
+import org.knime.core.data.xml.XMLValue;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeLogger;
+import org.knime.xml.node.xpath2.XPathNodeSettings;
+import org.knime.xml.node.xpath2.XPathNodeSettings.XPathMultiColOption;
+import org.w3c.dom.Document;
+
+/**
+ * Cell factory which evaluates all XPath queries of the XPath node in a single pass per row. The document of a row is
+ * locked once and all queries are evaluated on it, the cells of all queries are emitted in the order of the given
+ * factories.
+ * <p>
+ * If streaming evaluation is enabled, all queries which are part of the {@link StreamingXPath streamable subset} are
+ * evaluated in a single StAX pass over the serialized XML. If the compact document is enabled instead, these queries
+ * and the ones selecting descendants are evaluated on a {@link CompactDocument} parsed from the serialized XML. The
+ * XML is serialized from the document of the cell while it is read, see {@link DocumentSerializingReader}. The
+ * document is evaluated again only if there are queries which are not supported, or if the XML cannot be read as a
+ * stream.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+public final class XPathMultiQueryCellFactory extends AbstractCellFactory {
+
+    private static NodeLogger logger = NodeLogger.getLogger(XPathMultiQueryCellFactory.class);
+
+    private final AbstractXPathCellFactory[] m_factories;
+
+    /** Evaluates the streamable queries, <code>null</code> if there are none. */
+    private final PathEvaluator m_streamingEvaluator;
+
+    /** Whether there are queries which have to be evaluated on the document. */
+    private final boolean m_needsDocument;
+
+    private final int m_xmlIndex;
+
+    private final int m_numCells;
+
+    /** Index of the first cell of every factory in the cells of this factory. */
+    private final int[] m_positions;
+
+    /** Index of every factory among the queries which are ungrouped to rows, -1 if it is not ungrouped. */
+    private final int[] m_elementIndex;
+
+    /** Index of every factory among the queries which are expanded to multiple columns, -1 if it is not expanded. */
+    private final int[] m_columnsIndex;
+
+    /** Every factory which is evaluated in the streaming pass, <code>null</code> for the others. */
+    private final StreamableCellFactory[] m_streamable;
+
+    /** Every factory which is ungrouped to rows, <code>null</code> for the others. */
+    private final CollectionElementsCellFactory[] m_collections;
+
+    /** Every factory which is expanded to multiple columns, <code>null</code> for the others. */
+    private final MultiColumnCellFactory[] m_multiColumns;
+
+    /** Receives the timings and result counts of the queries, <code>null</code> if they are not collected. */
+    private final XPathQueryStatistics m_statistics;
+
+    private XPathMultiQueryCellFactory(final AbstractXPathCellFactory[] factories, final int xmlIndex,
+        final DataColumnSpec[] colSpecs, final XPathQueryStatistics statistics) {
+        super(true, colSpecs);
+        m_factories = factories;
+        m_statistics = statistics;
+        m_xmlIndex = xmlIndex;
+        m_numCells = colSpecs.length;
+        m_streamable = new StreamableCellFactory[factories.length];
+        final List<StreamingXPath> paths = new ArrayList<StreamingXPath>();
+        for (int i = 0; i < factories.length; i++) {
+            if (factories[i] instanceof StreamableCellFactory) {
+                final StreamingXPath path = ((StreamableCellFactory)factories[i]).getStreamingXPath();
+                if (path != null) {
+                    m_streamable[i] = (StreamableCellFactory)factories[i];
+                    paths.add(path);
+                }
+            }
+        }
+        final XPathNodeSettings settings = factories[0].getSettings();
+        final StreamingXPath[] pathArray = paths.toArray(new StreamingXPath[paths.size()]);
+        if (paths.isEmpty()) {
+            m_streamingEvaluator = null;
+        } else if (settings.getCompactDocument()) {
+            m_streamingEvaluator = new CompactDocumentEvaluator(settings, pathArray);
+        } else {
+            m_streamingEvaluator = new StreamingXPathEvaluator(settings, pathArray);
+        }
+        m_needsDocument = paths.size() < factories.length;
+        m_positions = new int[factories.length];
+        m_elementIndex = new int[factories.length];
+        m_columnsIndex = new int[factories.length];
+        m_collections = new CollectionElementsCellFactory[factories.length];
+        m_multiColumns = new MultiColumnCellFactory[factories.length];
+        int position = 0;
+        int ungrouped = 0;
+        int expanded = 0;
+        for (int i = 0; i < factories.length; i++) {
+            m_positions[i] = position;
+            position += factories[i].getColumnSpecs().length;
+            final XPathMultiColOption option = factories[i].getXPathSettings().getMultipleTagOption();
+            m_elementIndex[i] = -1;
+            m_columnsIndex[i] = -1;
+            if (option == XPathMultiColOption.UngroupToRows) {
+                m_collections[i] = cast(factories[i], CollectionElementsCellFactory.class);
+                m_elementIndex[i] = ungrouped++;
+            } else if (option == XPathMultiColOption.MultipleColumns) {
+                m_multiColumns[i] = cast(factories[i], MultiColumnCellFactory.class);
+                m_columnsIndex[i] = expanded++;
+            }
+        }
+    }
+
+    private static <T> T cast(final AbstractXPathCellFactory factory, final Class<T> type) {
+        if (!type.isInstance(factory)) {
+            throw new IllegalArgumentException("The factory of query '" + factory.getXPathSettings().getXpathQuery()
+                + "' is no " + type.getSimpleName() + ".");
+        }
+        return type.cast(factory);
+    }
+
+    /**
+     * @param factories the cell factories of all queries, all of them have to read the same XML column
+     * @return the new cell factory instance
+     */
+    public static XPathMultiQueryCellFactory create(final List<AbstractXPathCellFactory> factories) {
+        return create(factories, null);
+    }
+
+    /**
+     * @param factories the cell factories of all queries, all of them have to read the same XML column
+     * @param statistics receives the timings and result counts of the queries, in the order of the factories, may be
+     *            <code>null</code>
+     * @return the new cell factory instance
+     */
+    public static XPathMultiQueryCellFactory create(final List<AbstractXPathCellFactory> factories,
+        final XPathQueryStatistics statistics) {
+        if (factories.isEmpty()) {
+            throw new IllegalArgumentException("At least one XPath query is required.");
+        }
+        final int xmlIndex = factories.get(0).getXMLIndex();
+        final List<DataColumnSpec> colSpecs = new ArrayList<DataColumnSpec>();
+        for (AbstractXPathCellFactory f : factories) {
+            if (f.getXMLIndex() != xmlIndex) {
+                throw new IllegalArgumentException("All XPath queries have to be applied on the same XML column.");
+            }
+            for (DataColumnSpec colSpec : f.getColumnSpecs()) {
+                colSpecs.add(colSpec);
+            }
+        }
+        return new XPathMultiQueryCellFactory(factories.toArray(new AbstractXPathCellFactory[factories.size()]),
+            xmlIndex, colSpecs.toArray(new DataColumnSpec[colSpecs.size()]), statistics);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DataCell[] getCells(final DataRow row) {
+        DataCell[] cells = new DataCell[m_numCells];
+        evaluate(row, cells, m_positions, null, null);
+        return cells;
+    }
+
+    /**
+     * Evaluates all queries of the row like {@link #getCells(DataRow)}, but writes the cells directly into the cells
+     * of the output row. The results of the queries which are ungrouped to rows are returned as the elements of their
+     * collections instead of collection cells, their cells are not set. The values of the queries which are expanded to
+     * multiple columns are written into the columns of their names instead of value and name collections.
+     *
+     * @param row the input row
+     * @param cells the cells of the output row
+     * @param positions index in the output row of the first cell of every query
+     * @param columns for every query which is expanded to multiple columns, in the order of the queries, the index in
+     *            the output row of every column name
+     * @param elements receives the elements of the queries which are ungrouped to rows, in the order of the queries,
+     *            <code>null</code> for a missing cell
+     */
+    public void getCells(final DataRow row, final DataCell[] cells, final int[] positions,
+        final Map<String, Integer>[] columns, final List<DataCell>[] elements) {
+        evaluate(row, cells, positions, columns, elements);
+    }
+
+    private void evaluate(final DataRow row, final DataCell[] cells, final int[] positions,
+        final Map<String, Integer>[] columns, final List<DataCell>[] elements) {
+        if (m_statistics != null) {
+            m_statistics.addRow();
+        }
+        DataCell xmlCell = row.getCell(m_xmlIndex);
+        if (xmlCell.isMissing()) {
+            for (int i = 0; i < m_factories.length; i++) {
+                if (elements != null && m_elementIndex[i] >= 0) {
+                    elements[m_elementIndex[i]] = null;
+                } else if (columns != null && m_columnsIndex[i] >= 0) {
+                    for (Integer index : columns[m_columnsIndex[i]].values()) {
+                        cells[index] = DataType.getMissingCell();
+                    }
+                } else {
+                    copy(m_factories[i].createMissingCells(), cells, positions[i]);
+                }
+            }
+            return;
+        }
+        final boolean[] done = new boolean[m_factories.length];
+        long start = time();
+        final List<String>[] values = evaluateStreamable(xmlCell);
+        if (m_statistics != null && values != null) {
+            m_statistics.addStreamingPass(time() - start);
+        }
+        if (values != null) {
+            int v = 0;
+            for (int i = 0; i < m_factories.length; i++) {
+                if (m_streamable[i] != null) {
+                    start = time();
+                    final int results;
+                    if (elements != null && m_elementIndex[i] >= 0) {
+                        elements[m_elementIndex[i]] = m_collections[i].getElements(values[v++]);
+                        results = countResults(elements[m_elementIndex[i]]);
+                    } else {
+                        final DataCell[] result = m_streamable[i].getCells(values[v++]);
+                        copy(result, cells, positions[i]);
+                        results = countResults(result[0]);
+                    }
+                    if (m_statistics != null) {
+                        m_statistics.addMaterialization(i, time() - start, results);
+                    }
+                    done[i] = true;
+                }
+            }
+        }
+        if (values == null || m_needsDocument) {
+            @SuppressWarnings("unchecked")
+            XMLValue<Document> xmlValue = (XMLValue<Document>)xmlCell;
+            start = time();
+            try (LockedSupplier<Document> supplier = xmlValue.getDocumentSupplier()) {
+                final Document doc = supplier.get();
+                if (m_statistics != null) {
+                    m_statistics.addDocumentWait(time() - start);
+                }
+                for (int i = 0; i < m_factories.length; i++) {
+                    if (done[i]) {
+                        continue;
+                    }
+                    start = time();
+                    final int results;
+                    if (elements != null && m_elementIndex[i] >= 0) {
+                        elements[m_elementIndex[i]] = m_collections[i].getElements(doc);
+                        results = countResults(elements[m_elementIndex[i]]);
+                    } else if (columns != null && m_columnsIndex[i] >= 0) {
+                        m_multiColumns[i].setCells(doc, cells, columns[m_columnsIndex[i]]);
+                        int count = 0;
+                        for (Integer index : columns[m_columnsIndex[i]].values()) {
+                            count += cells[index].isMissing() ? 0 : 1;
+                        }
+                        results = count;
+                    } else {
+                        final DataCell[] result = m_factories[i].getCells(doc);
+                        copy(result, cells, positions[i]);
+                        results = countResults(result[0]);
+                    }
+                    if (m_statistics != null) {
+                        m_statistics.addEvaluation(i, time() - start, results);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the current time in nanoseconds if statistics are collected, otherwise 0
+     */
+    private long time() {
+        return m_statistics == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * @param cell the first result cell of a query, i.e. the values of a query expanded to multiple columns
+     * @return the number of values of the cell
+     */
+    private static int countResults(final DataCell cell) {
+        if (cell.isMissing()) {
+            return 0;
+        }
+        return cell instanceof CollectionDataValue ? ((CollectionDataValue)cell).size() : 1;
+    }
+
+    private static int countResults(final List<DataCell> elements) {
+        return elements == null ? 0 : elements.size();
+    }
+
+    /**
+     * Registers the column names which are taken from the document of the row, without evaluating the queries whose
+     * result columns do not depend on the input. The document is locked once for all queries.
+     *
+     * @param row the input row
+     */
+    public void collectColumnNames(final DataRow row) {
+        DataCell xmlCell = row.getCell(m_xmlIndex);
+        if (xmlCell.isMissing()) {
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        XMLValue<Document> xmlValue = (XMLValue<Document>)xmlCell;
+        try (LockedSupplier<Document> supplier = xmlValue.getDocumentSupplier()) {
+            final Document doc = supplier.get();
+            for (AbstractXPathCellFactory f : m_factories) {
+                f.collectColumnNames(doc);
+            }
+        }
+    }
+
+    /**
+     * @param xmlCell the XML cell of the row
+     * @return the results of the streamable queries or <code>null</code> if there are none or if they have to be
+     *         evaluated on the document
+     */
+    private List<String>[] evaluateStreamable(final DataCell xmlCell) {
+        if (m_streamingEvaluator == null) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        XMLValue<Document> xmlValue = (XMLValue<Document>)xmlCell;
+        // the document is serialized while it is read, not into a string which would be parsed again
+        try (LockedSupplier<Document> supplier = xmlValue.getDocumentSupplier()) {
+            return m_streamingEvaluator.evaluate(new DocumentSerializingReader(supplier.get()));
+        } catch (XMLStreamException e) {
+            logger.debug("Streaming evaluation failed, falling back to the document: " + e.getMessage(), e);
+            return null;
+        } catch (InvalidSettingsException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void copy(final DataCell[] src, final DataCell[] dest, final int offset) {
+        System.arraycopy(src, 0, dest, offset, src.length);
+    }
+}
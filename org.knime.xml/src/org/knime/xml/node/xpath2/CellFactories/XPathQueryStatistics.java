@@ -0,0 +1,228 @@
+/*
+ * ------------------------------------------------------------------------
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.xpath2.CellFactories;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.knime.xml.node.xpath2.XPathExpressionCache;
+import org.knime.xml.node.xpath2.XPathSettings;
+
+/**
+ * Statistics of the XPath queries of one execution of the XPath node, i.e. the time spent per query, the number of
+ * result values, the time spent waiting for the documents and in the streaming pass. The statistics are collected by
+ * {@link XPathMultiQueryCellFactory} and may be updated concurrently.
+ * <p>
+ * Queries evaluated on the document are timed including the creation of their cells. For queries evaluated in the
+ * streaming pass, the pass itself is timed once for all of them and the time per query is the time to create the
+ * cells from the streamed values.
+ * <p>
+ * The hit and miss counts of the {@link XPathExpressionCache} are reported as well; they are process-wide.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+public final class XPathQueryStatistics {
+
+    private final String[] m_queries;
+
+    private final LongAdder[] m_evaluationNanos;
+
+    private final LongAdder[] m_materializationNanos;
+
+    private final LongAdder[] m_results;
+
+    private final LongAdder m_rows = new LongAdder();
+
+    private final LongAdder m_documentNanos = new LongAdder();
+
+    private final LongAdder m_streamingNanos = new LongAdder();
+
+    /**
+     * @param queries the queries of the node, in the order of their cell factories
+     */
+    public XPathQueryStatistics(final List<XPathSettings> queries) {
+        final int n = queries.size();
+        m_queries = new String[n];
+        m_evaluationNanos = new LongAdder[n];
+        m_materializationNanos = new LongAdder[n];
+        m_results = new LongAdder[n];
+        for (int i = 0; i < n; i++) {
+            m_queries[i] = queries.get(i).getXpathQuery();
+            m_evaluationNanos[i] = new LongAdder();
+            m_materializationNanos[i] = new LongAdder();
+            m_results[i] = new LongAdder();
+        }
+    }
+
+    /** Counts a processed row. */
+    void addRow() {
+        m_rows.increment();
+    }
+
+    /**
+     * @param nanos time spent to lock, and if necessary parse, the document of a row
+     */
+    void addDocumentWait(final long nanos) {
+        m_documentNanos.add(nanos);
+    }
+
+    /**
+     * @param nanos time spent in the streaming pass over the XML of a row
+     */
+    void addStreamingPass(final long nanos) {
+        m_streamingNanos.add(nanos);
+    }
+
+    /**
+     * @param query index of the query
+     * @param nanos time spent to evaluate the query on the document and to create its cells
+     * @param results number of result values
+     */
+    void addEvaluation(final int query, final long nanos, final int results) {
+        m_evaluationNanos[query].add(nanos);
+        m_results[query].add(results);
+    }
+
+    /**
+     * @param query index of the query
+     * @param nanos time spent to create the cells from the streamed values
+     * @param results number of result values
+     */
+    void addMaterialization(final int query, final long nanos, final int results) {
+        m_materializationNanos[query].add(nanos);
+        m_results[query].add(results);
+    }
+
+    /**
+     * @return number of processed rows
+     */
+    public long getRows() {
+        return m_rows.sum();
+    }
+
+    /**
+     * @return the number of queries
+     */
+    public int getNumQueries() {
+        return m_queries.length;
+    }
+
+    /**
+     * @param query index of the query
+     * @return the total time in milliseconds spent on the query
+     */
+    public double getTimeMillis(final int query) {
+        return toMillis(m_evaluationNanos[query].sum() + m_materializationNanos[query].sum());
+    }
+
+    /**
+     * @param query index of the query
+     * @return the total number of result values of the query
+     */
+    public long getResults(final int query) {
+        return m_results[query].sum();
+    }
+
+    /**
+     * @return the statistics as JSON object
+     */
+    public String toJSON() {
+        final StringBuilder b = new StringBuilder();
+        b.append("{\"rows\":").append(getRows());
+        b.append(",\"documentWaitMillis\":").append(toMillis(m_documentNanos.sum()));
+        b.append(",\"streamingPassMillis\":").append(toMillis(m_streamingNanos.sum()));
+        b.append(",\"expressionCacheHits\":").append(XPathExpressionCache.getHits());
+        b.append(",\"expressionCacheMisses\":").append(XPathExpressionCache.getMisses());
+        b.append(",\"queries\":[");
+        for (int i = 0; i < m_queries.length; i++) {
+            if (i > 0) {
+                b.append(',');
+            }
+            b.append("{\"query\":");
+            appendString(b, m_queries[i]);
+            b.append(",\"evaluationMillis\":").append(toMillis(m_evaluationNanos[i].sum()));
+            b.append(",\"materializationMillis\":").append(toMillis(m_materializationNanos[i].sum()));
+            b.append(",\"results\":").append(getResults(i));
+            b.append('}');
+        }
+        return b.append("]}").toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        final StringBuilder b = new StringBuilder();
+        b.append(String.format("%d rows, %.1f ms waiting for documents, %.1f ms in the streaming pass", getRows(),
+            toMillis(m_documentNanos.sum()), toMillis(m_streamingNanos.sum())));
+        b.append(String.format("%n  compiled expression cache: %d hits, %d misses", XPathExpressionCache.getHits(),
+            XPathExpressionCache.getMisses()));
+        for (int i = 0; i < m_queries.length; i++) {
+            b.append(String.format("%n  %s: %.1f ms, %d results", m_queries[i], getTimeMillis(i), getResults(i)));
+        }
+        return b.toString();
+    }
+
+    private static double toMillis(final long nanos) {
+        return nanos / (double)TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static void appendString(final StringBuilder b, final String s) {
+        b.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                b.append('\\').append(c);
+            } else if (c < ' ') {
+                b.append(String.format("\\u%04x", (int)c));
+            } else {
+                b.append(c);
+            }
+        }
+        b.append('"');
+    }
+}
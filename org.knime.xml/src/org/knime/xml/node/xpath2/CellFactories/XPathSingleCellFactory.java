@@ -47,39 +47,33 @@
  */
 package org.knime.xml.node.xpath2.CellFactories;
 
-import javax.xml.XMLConstants;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import java.math.BigDecimal;
+import java.util.Iterator;
+import java.util.List;
+
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathEvaluationResult;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
+import javax.xml.xpath.XPathNodes;
 
 import org.knime.core.data.DataCell;
 import org.knime.core.data.DataColumnSpec;
 import org.knime.core.data.DataColumnSpecCreator;
-import org.knime.core.data.DataRow;
 import org.knime.core.data.DataTableSpec;
 import org.knime.core.data.DataType;
-import org.knime.core.data.container.AbstractCellFactory;
 import org.knime.core.data.def.BooleanCell;
 import org.knime.core.data.def.DoubleCell;
 import org.knime.core.data.def.IntCell;
 import org.knime.core.data.def.StringCell;
-import org.knime.core.data.util.LockedSupplier;
-import org.knime.core.data.xml.XMLCellFactory;
-import org.knime.core.data.xml.XMLValue;
 import org.knime.core.node.InvalidSettingsException;
 import org.knime.core.node.NodeLogger;
 import org.knime.xml.node.xpath2.XPathNodeSettings;
 import org.knime.xml.node.xpath2.XPathNodeSettings.XPathOutput;
 import org.knime.xml.node.xpath2.XPathSettings;
-import org.knime.xml.node.xpath2.ui.XPathNamespaceContext;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
@@ -88,17 +82,17 @@
  *
  * @author Tim-Oliver Buchholz, KNIME AG, Zurich, Switzerland
  */
-public final class XPathSingleCellFactory extends AbstractCellFactory {
+public final class XPathSingleCellFactory extends AbstractXPathCellFactory implements StreamableCellFactory {
 
     private static NodeLogger logger = NodeLogger.getLogger(XPathSingleCellFactory.class);
 
-    private XPathNodeSettings m_settings;
-
     private XPathSettings m_xpathSettings;
 
-    private int m_xmlIndex;
+    private XPathExpressionProvider m_xpathExpr;
 
-    private XPathExpression m_xpathExpr;
+    private XPathExpressionProvider m_colNameXPathExpr;
+
+    private StreamingXPath m_streamingXPath;
 
     /**
      * @param spec the DataTabelSpec of the input
@@ -109,13 +103,25 @@ public final class XPathSingleCellFactory extends AbstractCellFactory {
      */
     public static XPathSingleCellFactory create(final DataTableSpec spec, final XPathNodeSettings settings,
         final XPathSettings xpathSettings) throws InvalidSettingsException {
+        return create(spec, settings, xpathSettings, xpathSettings.getNewColumn());
+    }
+
+    /**
+     * @param spec the DataTabelSpec of the input
+     * @param settings settings for the XPath node
+     * @param xpathSettings settings for one xpath query
+     * @param newName the name of the new column, which may differ from the configured one if it has to be unique
+     * @return the new cell factory instance.
+     * @throws InvalidSettingsException when settings are inconsistent with the spec
+     */
+    public static XPathSingleCellFactory create(final DataTableSpec spec, final XPathNodeSettings settings,
+        final XPathSettings xpathSettings, final String newName) throws InvalidSettingsException {
         // check user settings against input spec here
         String xmlColumn = settings.getInputColumn();
         int xmlIndex = spec.findColumnIndex(xmlColumn);
         if (xmlIndex < 0) {
             throw new InvalidSettingsException("No such column in input table: " + xmlColumn);
         }
-        String newName = xpathSettings.getNewColumn();
 
         if ((spec.containsName(newName) && !newName.equals(xmlColumn))
             || (spec.containsName(newName) && newName.equals(xmlColumn) && !settings.getRemoveInputColumn())) {
@@ -129,51 +135,86 @@ public static XPathSingleCellFactory create(final DataTableSpec spec, final XPat
 
     private XPathSingleCellFactory(final XPathNodeSettings settings, final XPathSettings xpathSettings,
         final int xmlIndex, final DataColumnSpec[] colsSpecs) throws InvalidSettingsException {
-        super(true, colsSpecs);
-        m_settings = settings;
-        m_xmlIndex = xmlIndex;
+        super(settings, xpathSettings, xmlIndex, colsSpecs);
         m_xpathSettings = xpathSettings;
         String xpathQuery = m_xpathSettings.getXpathQuery();
-        m_xpathExpr = m_settings.initXPathExpression(xpathQuery);
+        m_xpathExpr = new XPathExpressionProvider(settings, xpathQuery);
         if (m_xpathSettings.getUseAttributeForColName()) {
             xpathQuery = xpathSettings.buildXPathForColNames(xpathQuery);
-            m_settings.initXPathExpression(xpathQuery);
+            m_colNameXPathExpr = new XPathExpressionProvider(settings, xpathQuery);
         }
+        m_streamingXPath = StreamingXPath.create(settings, xpathSettings);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public DataCell[] getCells(final DataRow row) {
+    DataCell[] getCells(final Document doc) {
+        addColumnName(getColumnName(doc));
+        return new DataCell[]{getCell(doc)};
+    }
 
-        DataCell xmlCell = row.getCell(m_xmlIndex);
-        if (xmlCell.isMissing()) {
-            return new DataCell[]{DataType.getMissingCell()};
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void collectColumnNames(final Document doc) {
+        if (m_xpathSettings.getUseAttributeForColName()) {
+            addColumnName(getColumnName(doc));
         }
+    }
 
+    /**
+     * @param doc the document of the XML cell
+     * @return the value of the column name attribute or the configured column name
+     */
+    private String getColumnName(final Document doc) {
         String name = m_xpathSettings.getNewColumn();
         if (m_xpathSettings.getUseAttributeForColName()) {
-            @SuppressWarnings("unchecked")
-            XMLValue<Document> xmlValue = (XMLValue<Document>)xmlCell;
-
-            XPathExpression xpathExpr;
-            XPathFactory factory = XPathFactory.newInstance();
-            XPath xpath = factory.newXPath();
-            xpath
-                .setNamespaceContext(new XPathNamespaceContext(m_settings.getNsPrefixes(), m_settings.getNamespaces()));
-
-            String colNameQuery = "";
-            try (LockedSupplier<Document> supplier = xmlValue.getDocumentSupplier()) {
-                colNameQuery = m_xpathSettings.buildXPathForColNames(m_xpathSettings.getXpathQuery());
-                xpathExpr = xpath.compile(colNameQuery);
-                Object result = xpathExpr.evaluate(supplier.get(), XPathConstants.STRING);
+            String colNameQuery = m_colNameXPathExpr.getQuery();
+            try {
+                XPathExpression xpathExpr = m_colNameXPathExpr.get(doc);
+                Object result = xpathExpr.evaluate(doc, XPathConstants.STRING);
                 name = (String)result;
-
-            } catch (XPathExpressionException e) {
+            } catch (XPathExpressionException | InvalidSettingsException e) {
                 logger.warn("Could not compile XPath query '" + colNameQuery + "' for column name: " + colNameQuery, e);
             }
         }
+        return name;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public StreamingXPath getStreamingXPath() {
+        return m_streamingXPath;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DataCell[] getCells(final List<String> values) {
+        addColumnName(m_xpathSettings.getNewColumn());
+        // the string value of a node set is the string value of its first node
+        final String value = values.isEmpty() ? "" : values.get(0);
+        DataCell newCell = null;
+        final XPathOutput returnType = m_xpathSettings.getReturnType();
+        if (returnType.equals(XPathOutput.Boolean)) {
+            newCell = asBooleanCell(value);
+        } else if (returnType.equals(XPathOutput.Double)) {
+            newCell = asDoubleCell(value);
+        } else if (returnType.equals(XPathOutput.Integer)) {
+            newCell = asIntegerCell(value);
+        } else if (returnType.equals(XPathOutput.String)) {
+            newCell = values.isEmpty() ? DataType.getMissingCell() : asStringCell(value);
+        }
+        return new DataCell[]{newCell};
+    }
+
+    private void addColumnName(final String name) {
         // if more than one column name was found throw exception
         if (!m_xpathSettings.addSingleColname(name)) {
             logger.warn("SingleCell column " + m_xpathSettings.getCurrentColumnIndex()
@@ -181,28 +222,23 @@ public DataCell[] getCells(final DataRow row) {
             throw new IllegalStateException("SingleCell column " + m_xpathSettings.getCurrentColumnIndex()
                 + " found more than one column name.");
         }
-        return new DataCell[]{getCell(row)};
     }
 
-    private DataCell getCell(final DataRow row) {
-        @SuppressWarnings("unchecked")
-        XMLValue<Document> xmlValue = (XMLValue<Document>)row.getCell(m_xmlIndex);
+    private DataCell getCell(final Document doc) {
         DataCell newCell = null;
         try {
             final XPathOutput returnType = m_xpathSettings.getReturnType();
-            XPathExpression xpathExpr =
-                m_xpathExpr == null ? m_settings.createXPathExpr(xmlValue, m_xpathSettings.getXpathQuery())
-                    : m_xpathExpr;
+            XPathExpression xpathExpr = m_xpathExpr.get(doc);
             if (returnType.equals(XPathOutput.Boolean)) {
-                newCell = evaluateBoolean(xpathExpr, xmlValue);
+                newCell = evaluateBoolean(xpathExpr, doc);
             } else if (returnType.equals(XPathOutput.Double)) {
-                newCell = evaluateDouble(xpathExpr, xmlValue);
+                newCell = evaluateDouble(xpathExpr, doc);
             } else if (returnType.equals(XPathOutput.Integer)) {
-                newCell = evaluateInteger(xpathExpr, xmlValue);
+                newCell = evaluateInteger(xpathExpr, doc);
             } else if (returnType.equals(XPathOutput.String)) {
-                newCell = evaluateString(xpathExpr, xmlValue);
+                newCell = evaluateString(xpathExpr, doc);
             } else if (returnType.equals(XPathOutput.Node)) {
-                newCell = evaluateNode(xpathExpr, xmlValue);
+                newCell = evaluateNode(xpathExpr, doc);
             }
 
         } catch (final Exception e) {
@@ -215,18 +251,16 @@ private DataCell getCell(final DataRow row) {
      * Evaluate XPath expression expecting a boolean as result.
      *
      * @param xpathExpr the XPath expression
-     * @param xmlValue the XML where the XPath expression is applied on
+     * @param doc the XML where the XPath expression is applied on
      * @return the result of the XPath expression
      * @throws XPathExpressionException If the expression cannot be evaluated.
      */
-    private DataCell evaluateBoolean(final XPathExpression xpathExpr, final XMLValue<Document> xmlValue)
+    private DataCell evaluateBoolean(final XPathExpression xpathExpr, final Document doc)
         throws XPathExpressionException {
-        try (LockedSupplier<Document> supplier = xmlValue.getDocumentSupplier()) {
-            final Object res = xpathExpr.evaluate(supplier.get(), XPathConstants.STRING);
-            if (res instanceof String) {
-                final String value = (String)res;
-                return asBooleanCell(value);
-            }
+        final Object res = xpathExpr.evaluate(doc, XPathConstants.STRING);
+        if (res instanceof String) {
+            final String value = (String)res;
+            return asBooleanCell(value);
         }
         return DataType.getMissingCell();
     }
@@ -247,105 +281,130 @@ private DataCell asBooleanCell(final String result) {
      * Evaluate XPath expression expecting a boolean as result.
      *
      * @param xpathExpr the XPath expression
-     * @param xmlValue the XML where the XPath expression is applied on
+     * @param doc the XML where the XPath expression is applied on
      * @return the result of the XPath expression
      * @throws XPathExpressionException If the expression cannot be evaluated.
      */
-    private DataCell evaluateInteger(final XPathExpression xpathExpr, final XMLValue<Document> xmlValue)
+    private DataCell evaluateInteger(final XPathExpression xpathExpr, final Document doc)
         throws XPathExpressionException {
-        DataCell newCell = null;
-        String result;
+        return asIntegerCell((String)xpathExpr.evaluate(doc, XPathConstants.STRING));
+    }
 
-        try (LockedSupplier<Document> supplier = xmlValue.getDocumentSupplier()) {
-            result = (String)xpathExpr.evaluate(supplier.get(), XPathConstants.STRING);
+    /**
+     * @param result A {@link String}.
+     * @return The result parsed as {@link IntCell}.
+     */
+    private DataCell asIntegerCell(final String result) {
+        final long value = NumberParser.parseInt(result);
+        if (value != NumberParser.NO_INT) {
+            return new IntCell((int)value);
+        } else if (NumberParser.isIntegerNaNOrInfinity(result)) {
+            if (m_xpathSettings.getMissingCellOnInfinityOrNaN()) {
+                return DataType.getMissingCell();
+            } else {
+                return new IntCell(m_xpathSettings.getDefaultNumber());
+            }
+        } else if (NumberParser.isBlank(result)) {
+            return DataType.getMissingCell();
         }
-
         try {
+            // e.g. non-ASCII digits, throws if the result is not an integer at all
             return new IntCell(Integer.parseInt(result));
         } catch (NumberFormatException e) {
-            if (m_xpathSettings.getMissingCellOnInfinityOrNaN()) {
-                if (result.equals("NaN") || result.equalsIgnoreCase("inf") || result.equalsIgnoreCase("-inf")) {
-                    newCell = DataType.getMissingCell();
-                } else if (result.trim().isEmpty()) {
-                    return DataType.getMissingCell();
-                }
-            } else {
-                if (result.equals("NaN") || result.equalsIgnoreCase("inf") || result.equalsIgnoreCase("-inf")) {
-                    newCell = new IntCell(m_xpathSettings.getDefaultNumber());
-                } else if (result.trim().isEmpty()) {
-                    return DataType.getMissingCell();
-                }
-            }
-            if (newCell == null) {
-                logger.error(m_xpathSettings.getXpathQuery() + " returned: \"" + result + "\". " + result
-                    + " is not of type integer.");
-                throw e;
-            }
+            logger.error(m_xpathSettings.getXpathQuery() + " returned: \"" + result + "\". " + result
+                + " is not of type integer.");
+            throw e;
         }
-
-        return newCell;
     }
 
     /**
      * Evaluate XPath expression expecting a boolean as result.
      *
      * @param xpathExpr the XPath expression
-     * @param xmlValue the XML where the XPath expression is applied on
+     * @param doc the XML where the XPath expression is applied on
      * @return the result of the XPath expression
      * @throws XPathExpressionException If the expression cannot be evaluated.
      */
-    private DataCell evaluateDouble(final XPathExpression xpathExpr, final XMLValue<Document> xmlValue)
+    private DataCell evaluateDouble(final XPathExpression xpathExpr, final Document doc)
         throws XPathExpressionException {
-        Object result;
+        return asDoubleCell((String)xpathExpr.evaluate(doc, XPathConstants.STRING));
+    }
 
-        try (LockedSupplier<Document> supplier = xmlValue.getDocumentSupplier()) {
-            result = xpathExpr.evaluate(supplier.get(), XPathConstants.STRING);
+    /**
+     * @param result A {@link String}.
+     * @return The result parsed as {@link DoubleCell}.
+     */
+    private DataCell asDoubleCell(final String result) {
+        if (NumberParser.isBlank(result)) {
+            return DataType.getMissingCell();
         }
-
         try {
-            return new DoubleCell(Double.parseDouble((String)result));
+            return new DoubleCell(NumberParser.parseDouble(result));
         } catch (NumberFormatException e) {
-            if (((String)result).equalsIgnoreCase("NaN")) {
-                return new DoubleCell(Double.NaN);
-            } else if (((String)result).equalsIgnoreCase("inf")) {
-                return new DoubleCell(Double.POSITIVE_INFINITY);
-            } else if (((String)result).equalsIgnoreCase("-inf")) {
-                return new DoubleCell(Double.NEGATIVE_INFINITY);
-            } else if (((String)result).trim().isEmpty()) {
-                return DataType.getMissingCell();
-            } else {
-                logger.error(m_xpathSettings.getXpathQuery() + " returned: \"" + result + "\". " + result
-                    + " is not of type double.");
-                throw e;
-            }
+            logger.error(m_xpathSettings.getXpathQuery() + " returned: \"" + result + "\". " + result
+                + " is not of type double.");
+            throw e;
         }
     }
 
     /**
-     * Evaluate XPath expression expecting a String as result.
+     * Evaluate XPath expression expecting a String as result. The expression is evaluated only once, if it selects
+     * nodes the string value of the first node is returned and a missing cell if no node is selected.
      *
      * @param xpathExpr the XPath expression
-     * @param xmlValue the XML where the XPath expression is applied on
+     * @param doc the XML where the XPath expression is applied on
      * @return the result of the XPath expression
      * @throws XPathExpressionException If the expression cannot be evaluated.
-     * @throws InvalidSettingsException
      */
-    private DataCell evaluateString(final XPathExpression xpathExpr, final XMLValue<Document> xmlValue)
-        throws XPathExpressionException, InvalidSettingsException {
+    private DataCell evaluateString(final XPathExpression xpathExpr, final Document doc)
+        throws XPathExpressionException {
+        final XPathEvaluationResult<?> res;
+        try {
+            res = xpathExpr.evaluateExpression(doc, XPathEvaluationResult.class);
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            // the XPath implementation cannot evaluate to an arbitrary type
+            return evaluateStringTwice(xpathExpr, doc);
+        }
+        switch (res.type()) {
+            case NODESET:
+                final Iterator<Node> nodes = ((XPathNodes)res.value()).iterator();
+                // the path doesn't even exist => return missing cell
+                return nodes.hasNext() ? asStringCell(getStringValue(nodes.next())) : DataType.getMissingCell();
+            case NODE:
+                final Node node = (Node)res.value();
+                return node == null ? DataType.getMissingCell() : asStringCell(getStringValue(node));
+            case STRING:
+                return asStringCell((String)res.value());
+            case BOOLEAN:
+                return asStringCell(res.value().toString());
+            case NUMBER:
+                return asStringCell(numberToString(((Number)res.value()).doubleValue()));
+            default:
+                return DataType.getMissingCell();
+        }
+    }
 
-        final Object res;
+    /**
+     * Evaluate XPath expression expecting a String as result. An empty result is evaluated a second time as node set
+     * to check if the path exists. Only used if the XPath implementation cannot evaluate to an arbitrary type.
+     *
+     * @param xpathExpr the XPath expression
+     * @param doc the XML where the XPath expression is applied on
+     * @return the result of the XPath expression
+     * @throws XPathExpressionException If the expression cannot be evaluated.
+     */
+    private DataCell evaluateStringTwice(final XPathExpression xpathExpr, final Document doc)
+        throws XPathExpressionException {
 
-        try (LockedSupplier<Document> supplier = xmlValue.getDocumentSupplier()) {
-            res = xpathExpr.evaluate(supplier.get(), XPathConstants.STRING);
-        }
+        final Object res = xpathExpr.evaluate(doc, XPathConstants.STRING);
 
         if (res instanceof String) {
             final String value = (String)res;
 
             if (value.isEmpty()) {
                 // Check if the XPath even exists, because non-existing paths also return an empty string.
-                try (LockedSupplier<Document> supplier = xmlValue.getDocumentSupplier()){
-                    NodeList nl = (NodeList)xpathExpr.evaluate(supplier.get(), XPathConstants.NODESET);
+                try {
+                    NodeList nl = (NodeList)xpathExpr.evaluate(doc, XPathConstants.NODESET);
                     if (nl.getLength() == 0) {
                         // the path doesn't even exist => return missing cell
                         return DataType.getMissingCell();
@@ -361,6 +420,44 @@ private DataCell evaluateString(final XPathExpression xpathExpr, final XMLValue<
         }
     }
 
+    /**
+     * @param node a node selected by an XPath expression
+     * @return the XPath string value of the node
+     */
+    private static String getStringValue(final Node node) {
+        if (node.getNodeType() == Node.DOCUMENT_NODE) {
+            final Element root = ((Document)node).getDocumentElement();
+            return root == null ? "" : root.getTextContent();
+        }
+        if (node.getNodeType() == Node.TEXT_NODE || node.getNodeType() == Node.CDATA_SECTION_NODE) {
+            // XPath treats adjacent text nodes as a single text node
+            final StringBuilder text = new StringBuilder(node.getNodeValue());
+            Node next = node.getNextSibling();
+            while (next != null
+                && (next.getNodeType() == Node.TEXT_NODE || next.getNodeType() == Node.CDATA_SECTION_NODE)) {
+                text.append(next.getNodeValue());
+                next = next.getNextSibling();
+            }
+            return text.toString();
+        }
+        return node.getTextContent();
+    }
+
+    /**
+     * @param d a number
+     * @return the number converted to a string as defined by the XPath string() function
+     */
+    private static String numberToString(final double d) {
+        if (Double.isNaN(d)) {
+            return "NaN";
+        } else if (Double.isInfinite(d)) {
+            return d > 0 ? "Infinity" : "-Infinity";
+        } else if (d == 0) {
+            return "0";
+        }
+        return new BigDecimal(Double.toString(d)).stripTrailingZeros().toPlainString();
+    }
+
     /**
      * @param value A {@link String} result.
      * @return The {@code value} as {@link StringCell}.
@@ -379,67 +476,22 @@ private DataCell asStringCell(final String value) {
      * Evaluate XPath expression expecting a Node as result.
      *
      * @param xpathExpr the XPath expression
-     * @param xmlValue the XML where the XPath expression is applied on
+     * @param doc the XML where the XPath expression is applied on
      * @return the result of the XPath expression
      * @throws XPathExpressionException If the expression cannot be evaluated.
      * @throws ParserConfigurationException
      */
-    private DataCell evaluateNode(final XPathExpression xpathExpr, final XMLValue<Document> xmlValue)
+    private DataCell evaluateNode(final XPathExpression xpathExpr, final Document doc)
         throws XPathExpressionException, ParserConfigurationException {
         DataCell newCell;
-        Object result;
-
-        try (LockedSupplier<Document> supplier = xmlValue.getDocumentSupplier()) {
-            result = xpathExpr.evaluate(supplier.get(), XPathConstants.NODE);}
+        Object result = xpathExpr.evaluate(doc, XPathConstants.NODE);
 
         Node value = (Node)result;
         if (null == value) {
             newCell = DataType.getMissingCell();
         } else {
-            DocumentBuilderFactory domFactory = DocumentBuilderFactory.newInstance();
-            domFactory.setNamespaceAware(true);
-            DocumentBuilder docBuilder = domFactory.newDocumentBuilder();
-            Document doc = docBuilder.newDocument();
-            if (value.getNodeType() == Node.ATTRIBUTE_NODE) {
-                Element elem = doc.createElement(m_xpathSettings.getXmlFragmentName());
-                elem.setAttribute(value.getNodeName(), value.getNodeValue());
-                doc.appendChild(elem);
-            } else {
-                Node node = doc.importNode(value, true);
-                addMissingNamespaces(node, value);
-                doc.appendChild(node);
-            }
-            newCell = XMLCellFactory.create(doc);
+            newCell = XMLFragmentFactory.create(value, m_xpathSettings.getXmlFragmentName());
         }
         return newCell;
     }
-
-    /**
-     * This methods assume that <i>newNode</i> is a copy of <i>originalNode</i> whereas the <i>originalNode</i> has been
-     * extracted via XPath. In such cases the new node may contain elements or attributes with namespace prefixes that
-     * are not declared in the new root element. Serializing such a node will result in invalid XML. This methods
-     * adds missing namespace declarations that are present in the original document but not yet in the new node.
-     *
-     * @param newNode the new node to be inserted into a new document; doesn't have a parent
-     * @param originalNode the node from original document
-     */
-    static void addMissingNamespaces(final Node newNode, final Node originalNode) {
-        if (!(newNode instanceof Element)) {
-            return;
-        }
-
-        Element e = (Element)newNode;
-        Node p = originalNode;
-        while (p != null) {
-            NamedNodeMap atts = p.getAttributes();
-            for (int i = 0; (atts != null) && i < atts.getLength(); i++) {
-                Node attributeNode = atts.item(i);
-                if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attributeNode.getNamespaceURI())) {
-                    e.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, attributeNode.getNodeName(),
-                        attributeNode.getNodeValue());
-                }
-            }
-            p = p.getParentNode();
-        }
-    }
 }
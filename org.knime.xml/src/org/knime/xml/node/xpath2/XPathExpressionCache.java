@@ -0,0 +1,174 @@
+/*
+ * ------------------------------------------------------------------------
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.xpath2;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+import org.knime.xml.node.xpath2.ui.XPathNamespaceContext;
+
+/**
+ * Cache of compiled XPath expressions shared by all XPath nodes, such that nodes which are configured and executed
+ * many times, e.g. in loops, compile their queries only once. Expressions are keyed by the query and the namespace
+ * context they are compiled with.
+ * <p>
+ * A compiled {@link XPathExpression} and the {@link XPathFactory} creating it are not thread-safe. Therefore the cache
+ * is partitioned by thread: every thread has its own LRU cache of at most {@link #MAX_SIZE} expressions and its own
+ * factory. The hit and miss counts are process-wide.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+public final class XPathExpressionCache {
+
+    /**
+     * Maximum number of compiled expressions cached per thread.
+     */
+    public static final int MAX_SIZE = 256;
+
+    private static final LongAdder HITS = new LongAdder();
+
+    private static final LongAdder MISSES = new LongAdder();
+
+    private static final ThreadLocal<XPathFactory> FACTORY = ThreadLocal.withInitial(XPathFactory::newInstance);
+
+    private static final ThreadLocal<Map<Key, XPathExpression>> CACHE =
+        ThreadLocal.withInitial(() -> new LinkedHashMap<Key, XPathExpression>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, XPathExpression> eldest) {
+                return size() > MAX_SIZE;
+            }
+        });
+
+    private XPathExpressionCache() {
+        // utility class
+    }
+
+    /**
+     * Returns the compiled expression of the query. The expression must only be used by the calling thread.
+     *
+     * @param query the XPath query
+     * @param prefixes the namespace prefixes
+     * @param namespaces the namespace URIs of the prefixes
+     * @return the compiled expression
+     * @throws XPathExpressionException if the query cannot be compiled
+     */
+    public static XPathExpression compile(final String query, final String[] prefixes, final String[] namespaces)
+        throws XPathExpressionException {
+        final Key key = new Key(query, prefixes, namespaces);
+        final Map<Key, XPathExpression> cache = CACHE.get();
+        XPathExpression xpathExpr = cache.get(key);
+        if (xpathExpr != null) {
+            HITS.increment();
+            return xpathExpr;
+        }
+        MISSES.increment();
+        XPath xpath = FACTORY.get().newXPath();
+        xpath.setNamespaceContext(new XPathNamespaceContext(prefixes, namespaces));
+        xpathExpr = xpath.compile(query);
+        cache.put(key, xpathExpr);
+        return xpathExpr;
+    }
+
+    /**
+     * @return the number of queries which were found in the cache since the start of the process
+     */
+    public static long getHits() {
+        return HITS.sum();
+    }
+
+    /**
+     * @return the number of queries which had to be compiled since the start of the process
+     */
+    public static long getMisses() {
+        return MISSES.sum();
+    }
+
+    private static final class Key {
+
+        private final String m_query;
+
+        private final String[] m_prefixes;
+
+        private final String[] m_namespaces;
+
+        private final int m_hashCode;
+
+        Key(final String query, final String[] prefixes, final String[] namespaces) {
+            m_query = query;
+            // the arrays are owned by the callers
+            m_prefixes = prefixes.clone();
+            m_namespaces = namespaces.clone();
+            m_hashCode = Objects.hash(query, Arrays.hashCode(m_prefixes), Arrays.hashCode(m_namespaces));
+        }
+
+        @Override
+        public int hashCode() {
+            return m_hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key)obj;
+            return m_hashCode == other.m_hashCode && m_query.equals(other.m_query)
+                && Arrays.equals(m_prefixes, other.m_prefixes) && Arrays.equals(m_namespaces, other.m_namespaces);
+        }
+    }
+}
@@ -62,7 +62,6 @@
 import java.awt.event.ItemListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -70,6 +69,7 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.regex.Pattern;
 
 import javax.swing.BorderFactory;
@@ -81,10 +81,12 @@
 import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
 import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
 import javax.swing.JSplitPane;
 import javax.swing.JTable;
 import javax.swing.JTextField;
 import javax.swing.ScrollPaneConstants;
+import javax.swing.SpinnerNumberModel;
 import javax.swing.event.CaretEvent;
 import javax.swing.event.CaretListener;
 import javax.swing.event.ListSelectionEvent;
@@ -93,8 +95,6 @@
 import javax.swing.table.DefaultTableModel;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.TextAction;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
 
 import org.fife.ui.rsyntaxtextarea.RSyntaxDocument;
 import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
@@ -102,9 +102,9 @@
 import org.fife.ui.rsyntaxtextarea.SyntaxConstants;
 import org.fife.ui.rtextarea.RTextScrollPane;
 import org.fife.ui.rtextarea.RUndoManager;
-import org.knime.core.data.DataRow;
+import org.knime.core.data.DataCell;
 import org.knime.core.data.DataTableSpec;
-import org.knime.core.data.RowIterator;
+import org.knime.core.data.container.CloseableRowIterator;
 import org.knime.core.data.xml.XMLValue;
 import org.knime.core.node.BufferedDataTable;
 import org.knime.core.node.DataAwareNodeDialogPane;
@@ -117,15 +117,13 @@
 import org.knime.core.node.port.PortObjectSpec;
 import org.knime.core.node.util.ColumnSelectionComboxBox;
 import org.knime.core.node.util.KeyValuePanel;
-import org.knime.core.util.xml.NoExternalEntityResolver;
+import org.knime.core.util.SwingWorkerWithContext;
 import org.knime.xml.node.xpath2.XPathNodeSettings.XPathOutput;
 import org.knime.xml.node.xpath2.ui.NewQueryDialog;
-import org.knime.xml.node.xpath2.ui.SaxHandler;
-import org.knime.xml.node.xpath2.ui.StopParsingException;
+import org.knime.xml.node.xpath2.ui.XMLPreview;
+import org.knime.xml.node.xpath2.ui.XMLSample;
 import org.knime.xml.node.xpath2.ui.XMLTreeNode;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXParseException;
-import org.xml.sax.XMLReader;
+import org.w3c.dom.Document;
 
 
 /**
@@ -155,6 +153,21 @@ final class XPathNodeDialog extends DataAwareNodeDialogPane {
      */
     private JCheckBox m_removeInputColumn = null;
 
+    /**
+     * Streaming evaluation option.
+     */
+    private JCheckBox m_streamingEvaluation = null;
+
+    /**
+     * Compact document option.
+     */
+    private JCheckBox m_compactDocument = null;
+
+    /**
+     * Query statistics option.
+     */
+    private JCheckBox m_queryStatistics = null;
+
     /**
      * Add button for new XPath query.
      */
@@ -209,10 +222,16 @@ final class XPathNodeDialog extends DataAwareNodeDialogPane {
     private XMLTreeNode m_root = null;
 
     /**
-     * Map which maps {@link XPathNodeDialog#m_textfield.getCaretLineNumber()} to an XML element.
+     * Map which maps {@link XPathNodeDialog#m_textfield.getCaretLineNumber()} to an XML element. Created on first
+     * access, see {@link #getAllTags()}.
      */
     private Map<Integer, XMLTreeNode> m_allTags = null;
 
+    /**
+     * Creates the preview of the selected XML column in the background, <code>null</code> if none was started.
+     */
+    private SwingWorkerWithContext<XMLSample, XMLPreview> m_previewWorker = null;
+
     /**
      * Set of all entered column names.
      */
@@ -261,6 +280,16 @@ final class XPathNodeDialog extends DataAwareNodeDialogPane {
      */
     private JTextField m_rootNSPrefix = null;
 
+    /**
+     * Number of rows scanned for namespaces.
+     */
+    private JSpinner m_namespaceSampleSize = null;
+
+    /**
+     * Namespaces and structure of the scanned rows, <code>null</code> if not available.
+     */
+    private XMLSample m_sample = null;
+
     private JLabel m_currentXPath;
 
     /**
@@ -336,11 +365,7 @@ private JPanel createSettingsPanel() {
             public void itemStateChanged(final ItemEvent e) {
                 updateEnables();
                 if (m_inputColumn.getSelectedColumn() != null && m_hasInputData) {
-                    try {
-                        updateText(m_inputColumn.getSelectedColumn());
-                    } catch (NotConfigurableException e1) {
-                        JOptionPane.showMessageDialog(getPanel(), e1.getMessage());
-                    }
+                    updateText(m_inputColumn.getSelectedColumn());
                 }
             }
         });
@@ -366,6 +391,15 @@ public void itemStateChanged(final ItemEvent e) {
             }
         });
 
+        // streaming evaluation
+        m_streamingEvaluation = new JCheckBox("Evaluate simple queries without building the document (streaming).");
+
+        // compact document
+        m_compactDocument = new JCheckBox("Evaluate path queries on a compact read-only document.");
+
+        // query statistics
+        m_queryStatistics = new JCheckBox("Report query statistics as flow variable.");
+
         // splitpane for summary and xml preview
         JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT);
         splitPane.setTopComponent(createXPathQueryTable());
@@ -403,6 +437,18 @@ public void itemStateChanged(final ItemEvent e) {
 
         p.add(m_removeInputColumn, c);
 
+        c.gridy++;
+
+        p.add(m_streamingEvaluation, c);
+
+        c.gridy++;
+
+        p.add(m_compactDocument, c);
+
+        c.gridy++;
+
+        p.add(m_queryStatistics, c);
+
         c.fill = GridBagConstraints.BOTH;
         c.gridx = 0;
         c.gridy++;
@@ -509,7 +555,7 @@ public void actionPerformed(final ActionEvent e) {
 
                 String xmlTag = m_textfield.getSelectedText();
 
-                XMLTreeNode node = m_allTags.get(linenumber);
+                XMLTreeNode node = getAllTags().get(linenumber);
                 if (node == null) {
                     JOptionPane.showMessageDialog(getPanel(), "Could not identify selected tag. Please select only one"
                         + "tag at once.");
@@ -611,7 +657,7 @@ public void caretUpdate(final CaretEvent e) {
 
                     String xmlTag = m_textfield.getSelectedText();
 
-                    XMLTreeNode node = m_allTags.get(linenumber);
+                    XMLTreeNode node = getAllTags().get(linenumber);
                     String xmlPath = "Selected XML element is not a tag nor an attribute.";
                     if (node != null) {
 
@@ -639,6 +685,7 @@ public void caretUpdate(final CaretEvent e) {
                             m_currentXPath.setForeground(new Color(0, 153, 0));
                         }
                         m_currentXPath.setText(xmlPath);
+                        m_currentXPath.setToolTipText(getOccurrencesText(xmlPath));
                     }
                     menuItem.setEnabled(true);
                 } else {
@@ -736,6 +783,16 @@ public void actionPerformed(final ActionEvent e) {
         c.weightx = 1;
         m_rootNSPrefix = new JTextField();
         p.add(m_rootNSPrefix, c);
+
+        c.gridx = 0;
+        c.gridy++;
+        c.weightx = 0;
+        p.add(new JLabel("Rows scanned for namespaces:"), c);
+        c.gridx++;
+        c.weightx = 1;
+        m_namespaceSampleSize = new JSpinner(new SpinnerNumberModel(
+            XPathNodeSettings.DEFAULT_NAMESPACE_SAMPLE_SIZE, 1, Integer.MAX_VALUE, 10));
+        p.add(m_namespaceSampleSize, c);
         return p;
     }
 
@@ -809,61 +866,89 @@ private void onRemove(final int index) {
     }
 
     /**
-     * Creates a XML hierarchy tree. This method uses the SAXParser.
+     * Shows the preview and takes over its XML hierarchy tree.
      *
-     * @param xml String of a XML cell
-     * @throws NotConfigurableException
+     * @param preview the preview
      */
-    private void createHierarchyTree(final String xml) throws NotConfigurableException {
-        if (m_loadSettings) {
-            return;
-        }
-        SAXParserFactory factory = SAXParserFactory.newInstance();
-        try {
-            factory.setNamespaceAware(true);
-            factory.setValidating(true);
-            SAXParser saxParser = factory.newSAXParser();
-            m_root = new XMLTreeNode("", "root");
-
-            boolean noNSSet = m_nsPanel.getKeys().length == 0;
-            SaxHandler handler = new SaxHandler(m_root, noNSSet);
-            XMLReader reader = saxParser.getXMLReader();
-            reader.setContentHandler(handler);
-            reader.setErrorHandler(handler);
-            // set no-op entity resolver to ignore any 'DOCTYPE' declarations in the xml string
-            reader.setEntityResolver(NoExternalEntityResolver.getInstance());
-            try {
-                reader.parse(new InputSource(new StringReader(xml)));
-            } catch (SAXParseException | StopParsingException e) {
-                LOGGER.debug("A SAXException occured while parsing the preview.", e);
-            }
-            m_allTags = new HashMap<Integer, XMLTreeNode>();
+    private void showPreview(final XMLPreview preview) {
+        setPreviewText(preview.getText());
+        m_root = preview.getRoot();
+        m_allTags = null;
+    }
 
-            String[] k = handler.getKeys();
-            String[] v = handler.getValues();
-            List<String> keys = Arrays.asList(m_nsPanel.getKeys());
-            List<String> vals = Arrays.asList(m_nsPanel.getValues());
-            if (k.length != keys.size()) {
+    /**
+     * Takes over the namespaces found in the scanned rows. If no namespaces are set yet, they are set, otherwise the
+     * user is notified if they differ.
+     *
+     * @param k the prefixes of the namespaces
+     * @param v the namespace URIs
+     */
+    private void updateNamespaces(final String[] k, final String[] v) {
+        boolean noNSSet = m_nsPanel.getKeys().length == 0;
+        List<String> keys = Arrays.asList(m_nsPanel.getKeys());
+        List<String> vals = Arrays.asList(m_nsPanel.getValues());
+        if (k.length != keys.size()) {
+            m_namesspaceHasChanged = true;
+        }
+        for (int i = 0; i < k.length; i++) {
+            if (!(keys.contains(k[i])
+                    && (vals.get(keys.indexOf(k[i])).equals(v[i])))) {
                 m_namesspaceHasChanged = true;
-            }
-            for (int i = 0; i < k.length; i++) {
-                if (!(keys.contains(k[i])
-                        && (vals.get(keys.indexOf(k[i])).equals(v[i])))) {
-                    m_namesspaceHasChanged = true;
 
-                }
-            }
-            if (noNSSet) {
-                m_namesspaceHasChanged = false;
-                m_nsPanel.setTableData(handler.getKeys(), handler.getValues());
-                m_useRootsNS.setSelected(false);
-                m_rootNSPrefix.setEnabled(false);
             }
+        }
+        if (noNSSet) {
+            m_namesspaceHasChanged = false;
+            m_nsPanel.setTableData(k, v);
+            m_useRootsNS.setSelected(false);
+            m_rootNSPrefix.setEnabled(false);
+        }
+        m_nsChangedPanel.setVisible(m_namesspaceHasChanged);
+    }
+
+    /**
+     * @param xmlPath a path of the preview
+     * @return the number of scanned rows containing the path, <code>null</code> if not known
+     */
+    private String getOccurrencesText(final String xmlPath) {
+        if (m_sample == null) {
+            return null;
+        }
+        int occurrences = m_sample.getOccurrences(xmlPath);
+        if (occurrences < 0) {
+            return null;
+        }
+        return "Found in " + occurrences + " of " + m_sample.getNumDocuments() + " scanned XML cells.";
+    }
 
-            createAllTagsLookUp(m_root, xml.split("\n"), 0);
-        } catch (Exception ex) {
-            throw new NotConfigurableException("Could not create XML hierarchy tree: " + ex.getMessage(), ex);
+    /**
+     * Replaces the text of the XML preview.
+     *
+     * @param text the new text
+     */
+    private void setPreviewText(final String text) {
+        try {
+            m_text.remove(0, m_text.getLength());
+            m_text.insertString(0, text, null);
+            m_textfield.revalidate();
+        } catch (BadLocationException e) {
+            // nothing to do
+        }
+    }
+
+    /**
+     * The line lookup is only needed once the user selects something in the preview, hence it is created lazily.
+     *
+     * @return the map of line numbers to XML elements of the preview
+     */
+    private Map<Integer, XMLTreeNode> getAllTags() {
+        if (m_allTags == null) {
+            m_allTags = new HashMap<Integer, XMLTreeNode>();
+            if (m_root != null) {
+                createAllTagsLookUp(m_root, m_textfield.getText().split("\n"), 0);
+            }
         }
+        return m_allTags;
     }
 
     private static final Pattern COMMENT_START_PATTERN = Pattern.compile("\\s*<!--.*");
@@ -979,6 +1064,10 @@ protected void saveSettingsTo(final NodeSettingsWO settings) throws InvalidSetti
 
         s.setInputColumn(m_inputColumn.getSelectedColumn());
         s.setRemoveInputColumn(m_removeInputColumn.isSelected());
+        s.setStreamingEvaluation(m_streamingEvaluation.isSelected());
+        s.setCompactDocument(m_compactDocument.isSelected());
+        s.setQueryStatistics(m_queryStatistics.isSelected());
+        s.setNamespaceSampleSize(((Number)m_namespaceSampleSize.getValue()).intValue());
 
         s.setNsPrefixes(m_nsPanel.getKeys());
         s.setNamespaces(m_nsPanel.getValues());
@@ -1001,23 +1090,25 @@ protected void loadSettingsFrom(final NodeSettingsRO settings, final PortObjectS
         m_allColNames.addAll(Arrays.asList(m_inSpec.getColumnNames()));
         s.loadSettingsDialog(settings, m_inSpec);
 
-        try {
-            m_text.remove(0, m_text.getLength());
-            m_text.insertString(0, "No input data available. \nExecute upstream nodes.", null);
-            m_textfield.revalidate();
-            m_hasInputData = false;
-        } catch (BadLocationException e) {
-            // nothing to do
-        }
+        cancelPreview();
+        m_root = null;
+        m_allTags = null;
+        m_sample = null;
+        setPreviewText("No input data available. \nExecute upstream nodes.");
+        m_hasInputData = false;
 
         m_inputColumn.update(m_inSpec, s.getInputColumn());
 
         m_removeInputColumn.setSelected(s.getRemoveInputColumn());
+        m_streamingEvaluation.setSelected(s.getStreamingEvaluation());
+        m_compactDocument.setSelected(s.getCompactDocument());
+        m_queryStatistics.setSelected(s.getQueryStatistics());
 
         m_nsPanel.setTableData(s.getNsPrefixes(), s.getNamespaces());
         m_useRootsNS.setSelected(s.getUseRootsNS());
         m_rootNSPrefix.setText(s.getRootsNSPrefix());
         m_rootNSPrefix.setEnabled(m_useRootsNS.isSelected());
+        m_namespaceSampleSize.setValue(s.getNamespaceSampleSize());
 
         m_xpathSettingsList = s.getXPathQueryList();
         m_tableModel = createTableModel();
@@ -1058,11 +1149,15 @@ protected void loadSettingsFrom(final NodeSettingsRO settings, final PortObject[
         m_hasInputData = true;
 
         m_removeInputColumn.setSelected(s.getRemoveInputColumn());
+        m_streamingEvaluation.setSelected(s.getStreamingEvaluation());
+        m_compactDocument.setSelected(s.getCompactDocument());
+        m_queryStatistics.setSelected(s.getQueryStatistics());
 
         m_nsPanel.setTableData(s.getNsPrefixes(), s.getNamespaces());
         m_useRootsNS.setSelected(s.getUseRootsNS());
         m_rootNSPrefix.setText(s.getRootsNSPrefix());
         m_rootNSPrefix.setEnabled(m_useRootsNS.isSelected());
+        m_namespaceSampleSize.setValue(s.getNamespaceSampleSize());
 
         m_xpathSettingsList = s.getXPathQueryList();
 
@@ -1081,52 +1176,103 @@ protected void loadSettingsFrom(final NodeSettingsRO settings, final PortObject[
     }
 
     /**
-     * Updates RSyntaxTextArea with XML value of the input column.
+     * Updates RSyntaxTextArea with XML value of the input column. The preview is created in the background, a preview
+     * which is still being created is cancelled.
      * @param inputColumn selected input column
-     * @throws NotConfigurableException thrown if XML could not be parsed.
      */
-    private void updateText(final String inputColumn) throws NotConfigurableException {
-        RowIterator it = m_inputDataTable.iterator();
-        DataTableSpec inSpec = m_inputDataTable.getDataTableSpec();
-        int i = inSpec.findColumnIndex(inputColumn);
-        while (it.hasNext()) {
-            DataRow row = it.next();
-            if (!row.getCell(i).isMissing()) {
-                try {
-                    m_text.remove(0, m_text.getLength());
-                    String xmlString = row.getCell(i).toString();
-                    String newlineChar = "\n";
-                    if (xmlString.contains("\r")) {
-                        newlineChar = "\r";
-                    }
-                    String[] strings = xmlString.split(newlineChar, 2000);
+    private void updateText(final String inputColumn) {
+        if (m_loadSettings) {
+            return;
+        }
+        cancelPreview();
+        m_root = null;
+        m_allTags = null;
+        m_sample = null;
+        setPreviewText("Loading preview...");
+        final BufferedDataTable table = m_inputDataTable;
+        final int i = table.getDataTableSpec().findColumnIndex(inputColumn);
+        final int sampleSize = ((Number)m_namespaceSampleSize.getValue()).intValue();
+        m_previewWorker = new SwingWorkerWithContext<XMLSample, XMLPreview>() {
+
+            /** The preview, set once it is created. */
+            private volatile XMLPreview m_preview = null;
 
-                    int stop = strings.length;
-                    if (strings.length >= 2000) {
-                        strings[strings.length - 1] = "Only the first 2000 lines of the \n"
-                            + "input xml are set as preview.";
-                    }
-                    StringBuilder buf = new StringBuilder();
-                    for (int j = 0; j < stop; j++) {
-                        if (!strings[j].isEmpty()) {
-                            buf.append(strings[j]).append('\n');
+            @Override
+            protected XMLSample doInBackgroundWithContext() throws Exception {
+                XMLPreview preview = null;
+                try (CloseableRowIterator it = table.iterator()) {
+                    while (it.hasNext() && !isCancelled()) {
+                        DataCell cell = it.next().getCell(i);
+                        if (!cell.isMissing()) {
+                            @SuppressWarnings("unchecked")
+                            final XMLValue<Document> xmlValue = (XMLValue<Document>)cell;
+                            preview = XMLPreview.create(xmlValue);
+                            break;
                         }
                     }
-                    m_text.insertString(0, buf.toString(), null);
-                    m_textfield.revalidate();
-                    xmlString = m_textfield.getText();
-                    createHierarchyTree(xmlString);
+                }
+                if (preview == null || isCancelled()) {
+                    return null;
+                }
+                m_preview = preview;
+                publish(preview);
+                // the prefixes of the preview are kept, they are used by the paths of its hierarchy tree
+                return XMLSample.create(table, i, sampleSize, preview.getKeys(), preview.getValues());
+            }
 
-                } catch (BadLocationException e) {
-                    // nothing to do
+            @Override
+            protected void processWithContext(final List<XMLPreview> chunks) {
+                if (!isCancelled()) {
+                    showPreview(chunks.get(chunks.size() - 1));
                 }
-                break;
             }
+
+            @Override
+            protected void doneWithContext() {
+                if (isCancelled()) {
+                    return;
+                }
+                try {
+                    XMLSample sample = get();
+                    if (sample == null) {
+                        setPreviewText("");
+                        return;
+                    }
+                    m_sample = sample;
+                    updateNamespaces(sample.getKeys(), sample.getValues());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    if (m_preview != null) {
+                        // scanning the rows failed, the namespaces of the preview are still known
+                        LOGGER.debug("Could not scan the rows for namespaces: " + cause.getMessage(), cause);
+                        updateNamespaces(m_preview.getKeys(), m_preview.getValues());
+                    } else {
+                        LOGGER.debug("Could not create XML hierarchy tree: " + cause.getMessage(), cause);
+                        setPreviewText("Could not create XML hierarchy tree: " + cause.getMessage());
+                    }
+                }
+            }
+        };
+        m_previewWorker.execute();
+    }
+
+    /**
+     * Cancels the creation of the preview if it is still running.
+     */
+    private void cancelPreview() {
+        if (m_previewWorker != null) {
+            m_previewWorker.cancel(true);
+            m_previewWorker = null;
         }
-        if (m_namesspaceHasChanged) {
-            m_nsChangedPanel.setVisible(true);
-        } else {
-            m_nsChangedPanel.setVisible(false);
-        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onClose() {
+        cancelPreview();
     }
 }
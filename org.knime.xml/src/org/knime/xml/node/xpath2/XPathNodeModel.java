@@ -59,12 +59,16 @@
 import java.util.Set;
 
 import org.knime.base.node.preproc.ungroup.UngroupOperation2;
+import org.knime.core.data.DataCell;
 import org.knime.core.data.DataColumnSpec;
 import org.knime.core.data.DataColumnSpecCreator;
 import org.knime.core.data.DataRow;
 import org.knime.core.data.DataTableSpec;
 import org.knime.core.data.DataType;
+import org.knime.core.data.RowKey;
+import org.knime.core.data.container.CloseableRowIterator;
 import org.knime.core.data.container.ColumnRearranger;
+import org.knime.core.data.def.DefaultRow;
 import org.knime.core.data.xml.PMMLCell;
 import org.knime.core.data.xml.XMLCell;
 import org.knime.core.data.xml.XMLValue;
@@ -73,7 +77,6 @@
 import org.knime.core.node.ExecutionContext;
 import org.knime.core.node.ExecutionMonitor;
 import org.knime.core.node.InvalidSettingsException;
-import org.knime.core.node.KNIMEConstants;
 import org.knime.core.node.NodeLogger;
 import org.knime.core.node.NodeModel;
 import org.knime.core.node.NodeSettingsRO;
@@ -90,14 +93,14 @@
 import org.knime.core.node.streamable.PortOutput;
 import org.knime.core.node.streamable.RowInput;
 import org.knime.core.node.streamable.RowOutput;
-import org.knime.core.node.streamable.StreamableFunction;
 import org.knime.core.node.streamable.StreamableOperator;
 import org.knime.core.node.streamable.StreamableOperatorInternals;
-import org.knime.core.util.ThreadPool;
 import org.knime.xml.node.xpath2.XPathNodeSettings.XPathMultiColOption;
-import org.knime.xml.node.xpath2.CellFactories.XMLSplitCollectionCellFactory;
+import org.knime.xml.node.xpath2.CellFactories.AbstractXPathCellFactory;
 import org.knime.xml.node.xpath2.CellFactories.XPathCollectionCellFactory;
 import org.knime.xml.node.xpath2.CellFactories.XPathMultiColCollectionCellFactory;
+import org.knime.xml.node.xpath2.CellFactories.XPathMultiQueryCellFactory;
+import org.knime.xml.node.xpath2.CellFactories.XPathQueryStatistics;
 import org.knime.xml.node.xpath2.CellFactories.XPathSingleCellFactory;
 
 /**
@@ -108,17 +111,25 @@
  */
 final class XPathNodeModel extends NodeModel {
 
+    private static final NodeLogger LOGGER = NodeLogger.getLogger(XPathNodeModel.class);
+
+    /**
+     * Name of the flow variable holding the query statistics.
+     */
+    static final String STATISTICS_VARIABLE = "xpath_statistics";
+
     /**
      * Settings object with all settings.
      */
     private final XPathNodeSettings m_settings;
 
     /**
-     * Intermediate table created when the node is run in streamed fashion but is not streamable. Table needs to be kept
-     * in order to transfer it between the {@link StreamableOperator#runIntermediate(PortInput[], ExecutionContext)} and
+     * Output spec determined by the schema pass if the column names are taken from the input data. The spec needs to be
+     * kept in order to transfer it between the
+     * {@link StreamableOperator#runIntermediate(PortInput[], ExecutionContext)} and
      * {@link StreamableOperator#runFinal(PortInput[], PortOutput[], ExecutionContext)}-method calls.
      */
-    private BufferedDataTable m_table;
+    private DataTableSpec m_outSpec;
 
     /**
      * Indices of {@link XPathSettings}, which will be expanded to multiple columns, in
@@ -136,6 +147,12 @@ final class XPathNodeModel extends NodeModel {
      */
     private List<Integer> m_ungroupIndices = new ArrayList<Integer>();
 
+    /**
+     * Statistics of the queries of the current execution, shared by all partitions if the input is distributed.
+     * <code>null</code> if the option is not enabled or the node is not executing.
+     */
+    private XPathQueryStatistics m_statistics;
+
     /**
      * Creates a new model with no input port and one output port.
      */
@@ -199,26 +216,81 @@ protected BufferedDataTable[] execute(final BufferedDataTable[] inData, final Ex
      */
     private BufferedDataTable executeInternal(final BufferedDataTable inData, final ExecutionContext exec)
         throws Exception {
-        BufferedDataTable intermediate = null;
+        initStatistics();
+        DataTableSpec outSpec;
+        ExecutionContext queryExec;
         if (isOutSpecKnown()) {
-            //if the outspec is known, the query execution and the (optional) ungroup to rows (if desired) can be done on the fly
-            RowInput in = new DataTableRowInput(inData);
-            BufferedDataTableRowOutput out =
-                new BufferedDataTableRowOutput(exec.createDataContainer(createKnownOutSpec(in.getDataTableSpec())));
-            executeQueriesAndUngroupToRowsOnTheFly(in, out, exec.createSubExecutionContext(.95), inData.size());
-            intermediate = out.getDataTable();
+            outSpec = createOutSpec(inData.getDataTableSpec());
+            queryExec = exec;
         } else {
-            //otherwise the xml-queries have to be executed first before (optional) the ungroup to rows can be done
-            intermediate = executeQueriesAndUngroupToRows(inData, exec.createSubExecutionContext(.95));
+            //otherwise the column names have to be collected first, only the column name queries are evaluated
+            outSpec = collectOutSpec(inData, exec.createSubExecutionContext(.3));
+            queryExec = exec.createSubExecutionContext(.7);
         }
-        //return the table and (optionally) ungroup the result to columns
-        return executeUngroupToColumns(intermediate, exec.createSubExecutionContext(0.05));
+        //the query execution and the (optional) ungroup to rows and columns can be done on the fly
+        RowInput in = new DataTableRowInput(inData);
+        BufferedDataTableRowOutput out = new BufferedDataTableRowOutput(exec.createDataContainer(outSpec));
+        executeQueriesAndUngroupToRowsOnTheFly(in, out, queryExec, inData.size());
+        publishStatistics();
+        return out.getDataTable();
     }
 
     /**
-     * Performs the actual execution, i.e. executing the queries and (optionally) ungrouping them to rows.
-     * It does it on the fly, i.e. directly ungrouping collections-cells after their creation. This is only
-     * possible, if column names are not determined by xml attributes (i.e. not depending on the input data).
+     * Creates the statistics of the current execution if the option is enabled. Does nothing if they have already
+     * been created by another partition.
+     */
+    private synchronized void initStatistics() {
+        if (m_settings.getQueryStatistics() && m_statistics == null) {
+            m_statistics = new XPathQueryStatistics(m_settings.getXPathQueryList());
+        }
+    }
+
+    /**
+     * Pushes the statistics of the current execution as flow variable and logs them.
+     */
+    private synchronized void publishStatistics() {
+        if (m_statistics != null) {
+            LOGGER.info("XPath query statistics: " + m_statistics);
+            pushFlowVariableString(STATISTICS_VARIABLE, m_statistics.toJSON());
+            m_statistics = null;
+        }
+    }
+
+    /**
+     * Schema pass used if the column names are taken from the input data. The documents are read once and only the
+     * queries which determine column names are evaluated, such that the output spec is known before the actual
+     * execution.
+     *
+     * @param inData input table
+     * @param exec to log the progress
+     * @return the output spec
+     * @throws Exception
+     */
+    private DataTableSpec collectOutSpec(final BufferedDataTable inData, final ExecutionContext exec)
+        throws Exception {
+        DataTableSpec inSpec = inData.getDataTableSpec();
+        XPathMultiQueryCellFactory factory = createCellFactory(inSpec);
+        if (factory != null) {
+            final long rowCount = inData.size();
+            long index = 0;
+            try (CloseableRowIterator it = inData.iterator()) {
+                while (it.hasNext()) {
+                    exec.checkCanceled();
+                    factory.collectColumnNames(it.next());
+                    final long i = ++index;
+                    exec.setProgress(i / (double)rowCount, () -> String.format("Collecting column names, row %d", i));
+                }
+            }
+        }
+        return createOutSpec(inSpec);
+    }
+
+    /**
+     * Performs the actual execution, i.e. executing the queries and (optionally) ungrouping them to rows and columns.
+     * It does it on the fly, i.e. the results of queries which are ungrouped to rows are directly expanded into rows
+     * and the values of queries which are expanded to multiple columns are directly written into their columns, without
+     * creating collection cells. If column names are determined by xml attributes or the values (i.e. depending on the
+     * input data), they have to be collected by {@link #collectOutSpec(BufferedDataTable, ExecutionContext)} before.
      *
      * @param in in data
      * @param out out data
@@ -226,41 +298,89 @@ private BufferedDataTable executeInternal(final BufferedDataTable inData, final
      * @param rowCount number of rows in table to log the progress, if <code>-1</code> no progress will be logged
      * @throws Exception
      */
-    private void executeQueriesAndUngroupToRowsOnTheFly(final RowInput in, final RowOutput out, final ExecutionContext exec,
-        final long rowCount) throws Exception {
+    private void executeQueriesAndUngroupToRowsOnTheFly(final RowInput in, final RowOutput out,
+        final ExecutionContext exec, final long rowCount) throws Exception {
 
         // TableSpec
-        // SingleCol | (1) MultiColValues | (1) MultiColNames | CollectionCol | (2) MultiColValues | (2) MultiColNames
-        // SingleCell| CollectionCell     | CollectionCell    | CollectionCell| CollectionCell     | CollectionCell
+        // SingleCol | (1) MC_col1 | (1) MC_col2 | CollectionCol | (2) MC_col1 | (2) MC_col2 | (2) MC_col3
+        // SingleCell| SingleCell  | SingleCell  | CollectionCell| SingleCell  | SingleCell  | SingleCell
 
         DataTableSpec inSpec = in.getDataTableSpec();
-        UngroupOperation2 ungroup = null;
-        if (!m_ungroupIndices.isEmpty()) {
-            int[] indices = new int[m_ungroupIndices.size()];
-            for (int i = 0; i < m_ungroupIndices.size(); i++) {
-                indices[i] = m_ungroupIndices.get(i);
+        final XPathMultiQueryCellFactory factory;
+        final List<XPathSettings> queries = m_settings.getXPathQueryList();
+        final int[] positions = new int[queries.size()];
+        final List<Map<String, Integer>> columnList = new ArrayList<Map<String, Integer>>();
+        final List<Integer> ungroupList = new ArrayList<Integer>();
+        int numCells;
+        // the column positions are kept in fields, which are also written by the other partitions if the input is
+        // distributed
+        synchronized (this) {
+            factory = createCellFactory(inSpec);
+            numCells = m_offset;
+        }
+        // the values of queries which are expanded to multiple columns are written directly into the column of their
+        // name, which have to be known at this point
+        for (int i = 0; i < positions.length; i++) {
+            final XPathSettings xps = queries.get(i);
+            positions[i] = numCells;
+            if (xps.getMultipleTagOption().equals(XPathMultiColOption.MultipleColumns)) {
+                final List<String> columnNames = xps.getColumnNames();
+                final Map<String, Integer> columns = new HashMap<String, Integer>();
+                for (int j = 0; j < columnNames.size(); j++) {
+                    columns.put(columnNames.get(j), numCells + j);
+                }
+                columnList.add(columns);
+                numCells += columnNames.size();
+            } else {
+                if (xps.getMultipleTagOption().equals(XPathMultiColOption.UngroupToRows)) {
+                    ungroupList.add(numCells);
+                }
+                numCells++;
             }
-            ungroup = new UngroupOperation2(false, false, true, indices);
         }
+        final int numInCells = inSpec.getNumColumns();
+        final int xmlIndex =
+            m_settings.getRemoveInputColumn() ? inSpec.findColumnIndex(m_settings.getInputColumn()) : -1;
+
+        @SuppressWarnings("unchecked")
+        final Map<String, Integer>[] columns = columnList.toArray(new Map[columnList.size()]);
+        final int[] ungroupIndices = new int[ungroupList.size()];
+        for (int i = 0; i < ungroupIndices.length; i++) {
+            ungroupIndices[i] = ungroupList.get(i);
+        }
+        // the collections of queries which are ungrouped to rows are not created, their elements are ungrouped directly
+        @SuppressWarnings("unchecked")
+        final List<DataCell>[] elements = new List[ungroupIndices.length];
 
-        StreamableFunction fct = createColumnRearranger(inSpec).createStreamableFunction();
-        fct.init(exec);
         try {
             DataRow inputRow;
             long index = 0;
             while ((inputRow = in.poll()) != null) {
-                DataRow newRow = fct.compute(inputRow);
-                if (ungroup != null) {
-                    ungroup.compute(new SingleRowInput(newRow), out, exec, rowCount, null);
+                exec.checkCanceled();
+                final DataCell[] cells = new DataCell[numCells];
+                int c = 0;
+                for (int i = 0; i < numInCells; i++) {
+                    if (i != xmlIndex) {
+                        cells[c++] = inputRow.getCell(i);
+                    }
+                }
+                if (factory != null) {
+                    factory.getCells(inputRow, cells, positions, columns, elements);
+                }
+                if (ungroupIndices.length == 0) {
+                    out.push(new DefaultRow(inputRow.getKey(), cells));
                 } else {
-                    out.push(newRow);
+                    ungroup(inputRow.getKey(), cells, ungroupIndices, elements, out);
                 }
                 final long i = ++index;
                 final DataRow r = inputRow;
-                exec.setMessage(() -> String.format("Row %d (\"%s\"))", i, r.getKey()));
+                if (rowCount > 0) {
+                    exec.setProgress(i / (double)rowCount, () -> String.format("Row %d (\"%s\"))", i, r.getKey()));
+                } else {
+                    exec.setMessage(() -> String.format("Row %d (\"%s\"))", i, r.getKey()));
+                }
             }
         } finally {
-            fct.finish();
             in.close();
             out.close();
         }
@@ -268,71 +388,45 @@ private void executeQueriesAndUngroupToRowsOnTheFly(final RowInput in, final Row
     }
 
     /**
-     * This method is used when the on the fly execution (queries execution and ungrouping to rows) is not possible
-     * (i.e. {@link #executeQueriesAndUngroupToRowsOnTheFly(RowInput, RowOutput, ExecutionContext, long, boolean)}. The
-     * entire xml-query table is created first. In a second run the table is ungrouped into rows (if necessary and
-     * configured so).
+     * Ungroups the elements of the queries into rows the same way as the ungroup node does with collection columns.
+     * Every element gets its own row, shorter collections are filled with missing cells. If all collections are missing
+     * the row is kept with missing cells, if all of them are empty a single row with missing cells is created.
      *
-     * @param inData
-     * @return the result table
-     * @throws Exception
-     */
-    private BufferedDataTable executeQueriesAndUngroupToRows(final BufferedDataTable in, final ExecutionContext exec)
-        throws Exception {
-        ColumnRearranger r = createColumnRearranger(in.getDataTableSpec());
-        BufferedDataTable collectedXMLData = exec.createColumnRearrangeTable(in, r, exec);
-
-        // TableSpec
-        // SingleCol | (1) MultiColValues | (1) MultiColNames | CollectionCol | (2) MultiColValues | (2) MultiColNames
-        // SingleCell| CollectionCell     | CollectionCell    | CollectionCell| CollectionCell     | CollectionCell
-
-        DataTableSpec replacedNames = renameSingleNameCells(collectedXMLData.getDataTableSpec());
-        BufferedDataTable dataTableWithSingleCellColNames =
-            exec.createSpecReplacerTable(collectedXMLData, replacedNames);
-
-        BufferedDataTable ungrouped = dataTableWithSingleCellColNames;
-        if (!m_ungroupIndices.isEmpty()) {
-            int[] indices = new int[m_ungroupIndices.size()];
-            String[] colNames = new String[m_ungroupIndices.size()];
-            for (int i = 0; i < m_ungroupIndices.size(); i++) {
-                indices[i] = m_ungroupIndices.get(i);
-                colNames[i] =
-                    dataTableWithSingleCellColNames.getDataTableSpec().getColumnSpec(m_ungroupIndices.get(i)).getName();
+     * @param key key of the input row
+     * @param cells cells of the output row, the cells of the ungrouped queries are set
+     * @param indices indices of the ungrouped queries in the output row
+     * @param elements the elements of the ungrouped queries, <code>null</code> for a missing cell
+     * @param out to push the rows to
+     * @throws InterruptedException
+     */
+    private static void ungroup(final RowKey key, final DataCell[] cells, final int[] indices,
+        final List<DataCell>[] elements, final RowOutput out) throws InterruptedException {
+        int maxSize = -1;
+        for (List<DataCell> e : elements) {
+            if (e != null) {
+                maxSize = Math.max(maxSize, e.size());
             }
-            UngroupOperation2 ugO =
-                new UngroupOperation2(false, false, true, indices);
-            ungrouped = ugO.compute(exec.createSubExecutionContext(0.05), dataTableWithSingleCellColNames, null);
         }
-        return ungrouped;
-    }
-
-    /**
-     * Performs the ungroup to column operation, if configured so.
-     *
-     * @param intermediate the result table of the intermediate execution, i.e. TODO
-     * @param exec to log the progress
-     * @return the result table
-     * @throws CanceledExecutionException
-     */
-    private BufferedDataTable executeUngroupToColumns(final BufferedDataTable intermediate,
-        final ExecutionContext exec) throws CanceledExecutionException {
-        if (m_multiColPos.isEmpty()) {
-            // no multiple column options ---> return
-            return intermediate;
-        } else {
-            // expand all multiple column collections
-            ColumnRearranger expandColRearranger = insertMultiColumns(intermediate);
-
-            // TableSpec
-            // SingleCol | (1) MC_col1 | (1) MC_col2 | CollectionCol | (2) MC_col1 | (2) MC_col2 | (2) MC_col3
-            // SingleCell| SingleCell  | SingleCell  | CollectionCell| SingleCell  | SingleCell  | SingleCell
-
-            return exec.createColumnRearrangeTable(intermediate, expandColRearranger, exec);
+        if (maxSize < 0) {
+            // all collections are missing, keep the row
+            for (int index : indices) {
+                cells[index] = DataType.getMissingCell();
+            }
+            out.push(new DefaultRow(key, cells));
+            return;
+        }
+        final int numRows = Math.max(maxSize, 1);
+        final String keyPrefix = key.getString() + "_";
+        for (int r = 0; r < numRows; r++) {
+            final DataCell[] newCells = r == numRows - 1 ? cells : cells.clone();
+            for (int k = 0; k < indices.length; k++) {
+                final List<DataCell> e = elements[k];
+                newCells[indices[k]] = e != null && r < e.size() ? e.get(r) : DataType.getMissingCell();
+            }
+            out.push(new DefaultRow(new RowKey(keyPrefix + r), newCells));
         }
     }
 
-
-
     /*---------------------------- Streaming API methods --------------------------------- */
 
     /**
@@ -340,8 +434,9 @@ private BufferedDataTable executeUngroupToColumns(final BufferedDataTable interm
      */
     @Override
     public InputPortRole[] getInputPortRoles() {
+        // rows are processed independently of each other, the output row keys are derived from the input row keys
         return new InputPortRole[]{
-            isOutSpecKnown() ? InputPortRole.NONDISTRIBUTED_STREAMABLE : InputPortRole.NONDISTRIBUTED_NONSTREAMABLE};
+            isOutSpecKnown() ? InputPortRole.DISTRIBUTED_STREAMABLE : InputPortRole.NONDISTRIBUTED_NONSTREAMABLE};
     }
 
     /**
@@ -349,7 +444,7 @@ public InputPortRole[] getInputPortRoles() {
      */
     @Override
     public OutputPortRole[] getOutputPortRoles() {
-        return new OutputPortRole[]{isOutSpecKnown() ? OutputPortRole.DISTRIBUTED : OutputPortRole.NONDISTRIBUTED};
+        return new OutputPortRole[]{OutputPortRole.DISTRIBUTED};
     }
 
     /**
@@ -357,7 +452,7 @@ public OutputPortRole[] getOutputPortRoles() {
      */
     @Override
     public boolean iterate(final StreamableOperatorInternals internals) {
-        return !isOutSpecKnown() && m_table == null;
+        return !isOutSpecKnown() && m_outSpec == null;
     }
 
     /**
@@ -369,7 +464,7 @@ public PortObjectSpec[] computeFinalOutputSpecs(final StreamableOperatorInternal
         if (isOutSpecKnown()) {
             return configure(inSpecs);
         } else {
-            return new PortObjectSpec[]{m_table.getDataTableSpec()};
+            return new PortObjectSpec[]{m_outSpec};
         }
     }
 
@@ -379,38 +474,33 @@ public PortObjectSpec[] computeFinalOutputSpecs(final StreamableOperatorInternal
     @Override
     public StreamableOperator createStreamableOperator(final PartitionInfo partitionInfo,
         final PortObjectSpec[] inSpecs) throws InvalidSettingsException {
+        initStatistics();
         if (isOutSpecKnown()) {
             return new StreamableOperator() {
 
                 @Override
-                public void runFinal(final PortInput[] inputs, final PortOutput[] outputs, final ExecutionContext exec) throws Exception {
+                public void runFinal(final PortInput[] inputs, final PortOutput[] outputs, final ExecutionContext exec)
+                    throws Exception {
                     RowInput in = (RowInput) inputs[0];
                     RowOutput out = (RowOutput) outputs[0];
                     executeQueriesAndUngroupToRowsOnTheFly(in, out, exec, -1);
                 }
             };
         } else {
-            NodeLogger.getLogger(this.getClass())
-                .warn("Is NOT executed in streamed fashion. Please check the node's configuration.");
+            // the input has to be read twice: first to collect the column names, then to execute the queries
             return new StreamableOperator() {
 
                 @Override
                 public void runIntermediate(final PortInput[] inputs, final ExecutionContext exec) throws Exception {
-                    //workaround, otherwise it will result in an IllegalThreadStateException
-                    ThreadPool tp = ThreadPool.currentPool();
-                    if (tp == null) {
-                        tp = KNIMEConstants.GLOBAL_THREAD_POOL;
-                    }
-                    tp.enqueue(() -> m_table = executeInternal(
-                        (BufferedDataTable)((PortObjectInput)inputs[0]).getPortObject(), exec)).get();
+                    m_outSpec = collectOutSpec((BufferedDataTable)((PortObjectInput)inputs[0]).getPortObject(), exec);
                 }
 
                 @Override
                 public void runFinal(final PortInput[] inputs, final PortOutput[] outputs, final ExecutionContext exec)
                     throws Exception {
-                    //transfer the already created result table
-                    ((RowOutput)outputs[0]).setFully(m_table);
-                    m_table = null;
+                    BufferedDataTable table = (BufferedDataTable)((PortObjectInput)inputs[0]).getPortObject();
+                    executeQueriesAndUngroupToRowsOnTheFly(new DataTableRowInput(table), (RowOutput)outputs[0], exec,
+                        table.size());
                 }
             };
         }
@@ -442,18 +532,16 @@ public StreamableOperatorInternals mergeFinal(final StreamableOperatorInternals[
     @Override
     public void finishStreamableExecution(final StreamableOperatorInternals internals, final ExecutionContext exec,
         final PortOutput[] output) throws Exception {
-        if (!isOutSpecKnown()) {
-            setWarningMessage("Node wasn't executed in streamed fashion due to its configuration.");
-        }
+        publishStatistics();
     }
 
-
     /* ----------------------- Helper Methods -------------------------- */
 
 
     /**
-     * Queries with the multiple column option will be read in as collection columns. In a second run we will expand all
-     * multiple column collections.
+     * Appends the columns of all queries, evaluated by a single {@link XPathMultiQueryCellFactory} so that the document
+     * of a row is locked only once. Only used to determine the spec before the ungroup and multiple column operations,
+     * queries with the multiple column option are represented by a value and a name collection column.
      * @param spec data table spec of the input table
      * @return the column rearranger used to do most of the work
      * @throws InvalidSettingsException
@@ -461,6 +549,30 @@ public void finishStreamableExecution(final StreamableOperatorInternals internal
     private ColumnRearranger createColumnRearranger(final DataTableSpec spec) throws InvalidSettingsException {
 
         ColumnRearranger colRearranger = new ColumnRearranger(spec);
+        XPathMultiQueryCellFactory factory = createCellFactory(spec);
+        if (factory != null) {
+            colRearranger.append(factory);
+        }
+
+        // remove input column
+        if (m_settings.getRemoveInputColumn()) {
+            String xmlColumn = m_settings.getInputColumn();
+            int xmlIndex = spec.findColumnIndex(xmlColumn);
+            colRearranger.remove(xmlIndex);
+        }
+
+        return colRearranger;
+    }
+
+    /**
+     * Creates the cell factory evaluating all queries and determines the positions of their columns.
+     *
+     * @param spec data table spec of the input table
+     * @return the cell factory or <code>null</code> if there are no queries
+     * @throws InvalidSettingsException
+     */
+    private synchronized XPathMultiQueryCellFactory createCellFactory(final DataTableSpec spec)
+        throws InvalidSettingsException {
         List<XPathSettings> xpathQueries = m_settings.getXPathQueryList();
 
         m_multiColPos = new ArrayList<Integer>();
@@ -473,58 +585,67 @@ private ColumnRearranger createColumnRearranger(final DataTableSpec spec) throws
 
         int xpsIndex = 0;
         Set<String> colNames = new HashSet<String>();
+        List<AbstractXPathCellFactory> factories = new ArrayList<AbstractXPathCellFactory>();
         for (XPathSettings xps : xpathQueries) {
             xps.setColIndexOfOutputTable(m_offset + xpsIndex);
             xpsIndex++;
 
-            // while we create the first column spec we have to ensure unique column names. therefore
-            // we reset the column names during the spec creation.
-            String currentName = xps.getNewColumn();
-            String specName = XPathNodeSettings.uniqueName(currentName, "", 0, colNames);
+            // the column specs need unique names. They are passed to the factories instead of being set at the
+            // settings, which are shared with the factories of the other partitions if the input is distributed.
+            String specName = XPathNodeSettings.uniqueName(xps.getNewColumn(), "", 0, colNames);
             colNames.add(specName);
-            xps.setNewColumn(specName);
 
             XPathMultiColOption multipleTagOption = xps.getMultipleTagOption();
             if (multipleTagOption.equals(XPathMultiColOption.MultipleColumns)) {
-                // for one multicol query we add two collection columns
-                // first contains all values and the second contains all column names
-                // columns will be expanded later
+                // the factory's spec has a value and a name collection column, which are replaced by the
+                // columns of the found names in the output spec
                 xpsIndex++;
-                colRearranger.append(XPathMultiColCollectionCellFactory.create(spec, m_settings, xps));
+                factories.add(XPathMultiColCollectionCellFactory.create(spec, m_settings, xps, specName));
 
                 // remember position of multicol query
                 m_multiColPos.add(xps.getCurrentColumnIndex());
             } else if (multipleTagOption.equals(XPathMultiColOption.SingleCell)) {
-                colRearranger.append(XPathSingleCellFactory.create(spec, m_settings, xps));
+                factories.add(XPathSingleCellFactory.create(spec, m_settings, xps, specName));
             } else if (multipleTagOption.equals(XPathMultiColOption.UngroupToRows)) {
-                colRearranger.append(XPathCollectionCellFactory.create(spec, m_settings, xps));
+                factories.add(XPathCollectionCellFactory.create(spec, m_settings, xps, specName));
                 m_ungroupIndices.add(xps.getCurrentColumnIndex());
             } else {
-                colRearranger.append(XPathCollectionCellFactory.create(spec, m_settings, xps));
+                factories.add(XPathCollectionCellFactory.create(spec, m_settings, xps, specName));
             }
-            // after the spec is created we can reset the column name to the old one.
-            // So the disabled column names in the dialog wont change.
-            xps.setNewColumn(currentName);
         }
+        return factories.isEmpty() ? null : XPathMultiQueryCellFactory.create(factories, m_statistics);
+    }
 
-        // remove input column
-        if (m_settings.getRemoveInputColumn()) {
-            String xmlColumn = m_settings.getInputColumn();
-            int xmlIndex = spec.findColumnIndex(xmlColumn);
-            colRearranger.remove(xmlIndex);
+    /**
+     * Create the out spec including the ungroup row and column operations. If column names are taken from the input
+     * data, they have to be collected before.
+     *
+     * @param inSpec
+     * @return the output spec
+     * @throws InvalidSettingsException
+     */
+    private synchronized DataTableSpec createOutSpec(final DataTableSpec inSpec) throws InvalidSettingsException {
+        DataTableSpec ungroupedSpec = createUngroupedOutSpec(inSpec);
+        if (m_multiColPos.isEmpty()) {
+            return ungroupedSpec;
+        } else {
+            // TableSpec
+            // SingleCol | (1) MC_col1 | (1) MC_col2 | CollectionCol | (2) MC_col1 | (2) MC_col2 | (2) MC_col3
+            // SingleCell| SingleCell  | SingleCell  | CollectionCell| SingleCell  | SingleCell  | SingleCell
+            return expandMultiColumns(ungroupedSpec);
         }
-
-        return colRearranger;
     }
 
     /**
-     * Create the out spec to the point where its know, also including the ungroup row operation.
+     * Create the out spec to the point where the multiple column collections are not yet expanded, also including the
+     * ungroup row operation.
      *
      * @param inSpec
-     * @return the output spec
+     * @return the output spec before expanding the multiple column collections
      * @throws InvalidSettingsException
      */
-    private DataTableSpec createKnownOutSpec(final DataTableSpec inSpec) throws InvalidSettingsException {
+    private synchronized DataTableSpec createUngroupedOutSpec(final DataTableSpec inSpec)
+        throws InvalidSettingsException {
         DataTableSpec initialOutSpec = renameSingleNameCells(createColumnRearranger(inSpec).createSpec());
 
         if (!m_ungroupIndices.isEmpty()) {
@@ -550,7 +671,7 @@ private DataTableSpec createKnownOutSpec(final DataTableSpec inSpec) throws Inva
      */
     private DataTableSpec createFinalOutSpec(final DataTableSpec inSpec) throws InvalidSettingsException {
         if (isOutSpecKnown()) {
-            return createKnownOutSpec(inSpec);
+            return createOutSpec(inSpec);
         } else {
             return null;
         }
@@ -611,15 +732,13 @@ private DataTableSpec renameSingleNameCells(final DataTableSpec intermediateResu
     }
 
     /**
-     * Expands every collection column which is marked as multiple columns. For every found column name a new column is
-     * created. Every value will be matched to its corresponding column.
+     * Expands every collection column pair which is marked as multiple columns. For every found column name a new
+     * column is created with the element type of the value collection.
      *
-     * @param in data table with collection cells for values and names
-     * @return data table with expanded collection cells
+     * @param spec spec with a value and a name collection column for every query expanded to multiple columns
+     * @return spec with the expanded columns
      */
-    private ColumnRearranger insertMultiColumns(final BufferedDataTable in) {
-        DataTableSpec spec = in.getDataTableSpec();
-        ColumnRearranger colRearranger = new ColumnRearranger(spec);
+    private DataTableSpec expandMultiColumns(final DataTableSpec spec) {
         Set<String> usedColNames = new HashSet<String>();
 
         for (int i = 0; i < spec.getNumColumns(); i++) {
@@ -630,43 +749,25 @@ private ColumnRearranger insertMultiColumns(final BufferedDataTable in) {
             }
         }
 
-        int posIndex = 0;
-        int offset = 0;
-        for (XPathSettings x : m_settings.getXPathQueryList()) {
-            if (x.getMultipleTagOption().equals(XPathMultiColOption.MultipleColumns)) {
-                List<String> columnNames = x.getColumnNames();
-                String[] colNames = new String[columnNames.size()];
-
-                for (int i = 0; i < colNames.length; i++) {
-                    String uName = XPathNodeSettings.uniqueName(columnNames.get(i), "", i, usedColNames);
-                    colNames[i] = uName;
-                    usedColNames.add(uName);
-                }
-
-                int pos = m_multiColPos.get(posIndex++);
-                DataType[] types = new DataType[colNames.length];
-                DataType t = in.getDataTableSpec().getColumnSpec(pos).getType().getCollectionElementType();
-                for (int i = 0; i < types.length; i++) {
-                    types[i] = t;
-                }
-
-                DataColumnSpec[] dcs = DataTableSpec.createColumnSpecs(colNames, types);
-
-                Map<String, Integer> reverseColNames = new HashMap<String, Integer>();
-
-                for (int i = 0; i < columnNames.size(); i++) {
-                    reverseColNames.put(columnNames.get(i), i);
-                }
-
-                colRearranger.insertAt(offset + pos + 2,
-                    XMLSplitCollectionCellFactory.create(dcs, reverseColNames, pos, pos + 1));
-                colRearranger.remove(offset + pos + 1, offset + pos);
-                offset += dcs.length;
-
-                offset -= 2;
+        Iterator<XPathSettings> multiColQueries = m_settings.getXPathQueryList().stream()
+            .filter(x -> x.getMultipleTagOption().equals(XPathMultiColOption.MultipleColumns)).iterator();
+        List<DataColumnSpec> colSpecs = new ArrayList<DataColumnSpec>();
+        for (int i = 0; i < spec.getNumColumns(); i++) {
+            if (!m_multiColPos.contains(i)) {
+                colSpecs.add(spec.getColumnSpec(i));
+                continue;
+            }
+            List<String> columnNames = multiColQueries.next().getColumnNames();
+            DataType t = spec.getColumnSpec(i).getType().getCollectionElementType();
+            for (int j = 0; j < columnNames.size(); j++) {
+                String uName = XPathNodeSettings.uniqueName(columnNames.get(j), "", j, usedColNames);
+                usedColNames.add(uName);
+                colSpecs.add(new DataColumnSpecCreator(uName, t).createSpec());
             }
+            // skip the name collection
+            i++;
         }
-        return colRearranger;
+        return new DataTableSpec(colSpecs.toArray(new DataColumnSpec[colSpecs.size()]));
     }
 
 
@@ -719,49 +820,7 @@ protected void loadValidatedSettingsFrom(final NodeSettingsRO settings) throws I
      */
     @Override
     protected void reset() {
-        m_table = null;
-    }
-
-    /**
-     * {@link RowInput} wrapping just one single row.
-     *
-     */
-    private class SingleRowInput extends RowInput {
-
-        private DataRow m_row;
-
-        /**
-         *
-         */
-        public SingleRowInput(final DataRow row) {
-            m_row = row;
-        }
-
-        /**
-         * {@inheritDoc}
-         */
-        @Override
-        public DataTableSpec getDataTableSpec() {
-            throw new UnsupportedOperationException();
-        }
-
-        /**
-         * {@inheritDoc}
-         */
-        @Override
-        public DataRow poll() throws InterruptedException {
-            DataRow r = m_row;
-            m_row = null;
-            return r;
-        }
-
-        /**
-         * {@inheritDoc}
-         */
-        @Override
-        public void close() {
-            //
-        }
-
+        m_outSpec = null;
+        m_statistics = null;
     }
 }
@@ -78,6 +78,7 @@
 import org.knime.node.parameters.layout.Layout;
 import org.knime.node.parameters.layout.Section;
 import org.knime.node.parameters.migration.LoadDefaultsForAbsentFields;
+import org.knime.node.parameters.migration.Migrate;
 import org.knime.node.parameters.persistence.Persist;
 import org.knime.node.parameters.updates.Effect;
 import org.knime.node.parameters.updates.Effect.EffectType;
@@ -893,6 +894,51 @@ interface RootsNamespacePrefixRef extends ParameterReference<String> {
     @ValueReference(RootsNamespacePrefixRef.class)
     String m_rootsNamespacePrefix = "dns";
 
+    @Section(title = "Evaluation")
+    @After(NamespaceSection.class)
+    interface EvaluationSection {
+    }
+
+    @Layout(EvaluationSection.class)
+    @Widget(title = "Evaluate simple queries without building the document (streaming)", description = """
+            Check to evaluate simple queries in a single pass over the XML text instead of on the document object
+            model. Supported are absolute paths of child steps such as <tt>/root/item[2]/@id</tt>, where every step
+            may have one predicate of the form <tt>[n]</tt>, <tt>[@attr]</tt> or <tt>[@attr='value']</tt> and the
+            last step may select an attribute or <tt>text()</tt>. Queries using multiple columns or taking the column
+            name from an attribute are always evaluated on the document object model, as are all other queries.
+            """)
+    @Persist(configKey = XPathNodeSettings.STREAMING_EVALUATION)
+    @Migrate(loadDefaultIfAbsent = true)
+    boolean m_streamingEvaluation;
+
+    @Layout(EvaluationSection.class)
+    @Widget(title = "Evaluate path queries on a compact read-only document", description = """
+            Check to parse the XML text of every row into a compact, read-only representation instead of the
+            document object model and to evaluate the queries supported by streaming evaluation on it. In addition,
+            steps may select descendants, e.g. <tt>//item[@type='a']/@id</tt>. When checked, this option replaces
+            streaming evaluation.
+            """)
+    @Persist(configKey = XPathNodeSettings.COMPACT_DOCUMENT)
+    @Migrate(loadDefaultIfAbsent = true)
+    boolean m_compactDocument;
+
+    @Layout(EvaluationSection.class)
+    @Widget(title = "Report query statistics as flow variable", description = """
+            Check to measure the time spent on every XPath query and to count its result values. The statistics are
+            pushed as JSON string in the flow variable <tt>xpath_statistics</tt> and written to the log.
+            """)
+    @Persist(configKey = XPathNodeSettings.QUERY_STATISTICS)
+    @Migrate(loadDefaultIfAbsent = true)
+    boolean m_queryStatistics;
+
+    /**
+     * Number of rows scanned for namespaces by the Swing dialog. Not shown, since this dialog collects the namespaces
+     * itself, but persisted such that saving the settings here keeps the value.
+     */
+    @Persist(configKey = XPathNodeSettings.NAMESPACE_SAMPLE_SIZE)
+    @Migrate(loadDefaultIfAbsent = true)
+    int m_namespaceSampleSize = XPathNodeSettings.DEFAULT_NAMESPACE_SAMPLE_SIZE;
+
     abstract static class XPathQueryValidationBase implements CustomValidationProvider<String> {
 
         Supplier<NamespaceSetting[]> m_namespacesSupplier;
@@ -52,10 +52,8 @@
 import java.util.List;
 import java.util.Set;
 
-import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
 import org.knime.core.data.DataTableSpec;
 import org.knime.core.data.util.LockedSupplier;
@@ -64,7 +62,6 @@
 import org.knime.core.node.NodeSettingsRO;
 import org.knime.core.node.NodeSettingsWO;
 import org.knime.node.parameters.widget.choices.Label;
-import org.knime.xml.node.xpath2.ui.XPathNamespaceContext;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 
@@ -108,6 +105,31 @@ public class XPathNodeSettings {
      */
     static final String NUMBER_OF_QUERIES = "numberOfQueries";
 
+    /**
+     * Config key for the streaming evaluation option.
+     */
+    static final String STREAMING_EVALUATION = "streamingEvaluation";
+
+    /**
+     * Config key for the compact document option.
+     */
+    static final String COMPACT_DOCUMENT = "compactDocument";
+
+    /**
+     * Config key for the query statistics option.
+     */
+    static final String QUERY_STATISTICS = "queryStatistics";
+
+    /**
+     * Config key for the number of rows the dialog scans for namespaces.
+     */
+    static final String NAMESPACE_SAMPLE_SIZE = "namespaceSampleSize";
+
+    /**
+     * Default number of rows the dialog scans for namespaces.
+     */
+    static final int DEFAULT_NAMESPACE_SAMPLE_SIZE = 100;
+
     /**
      * This enum holds all possible output types for XPath 1.0.
      *
@@ -207,6 +229,26 @@ public enum XPathMultiColOption {
      */
     private int m_numberOfQueries = 0;
 
+    /**
+     * Streaming evaluation option.
+     */
+    private boolean m_streamingEvaluation = false;
+
+    /**
+     * Compact document option.
+     */
+    private boolean m_compactDocument = false;
+
+    /**
+     * Query statistics option.
+     */
+    private boolean m_queryStatistics = false;
+
+    /**
+     * Number of rows the dialog scans for namespaces.
+     */
+    private int m_namespaceSampleSize = DEFAULT_NAMESPACE_SAMPLE_SIZE;
+
     /**
      * @return the inputColumn
      */
@@ -306,6 +348,62 @@ public void setXPathQueryList(final List<XPathSettings> list) {
         m_numberOfQueries = list.size();
     }
 
+    /**
+     * @return the streamingEvaluation
+     */
+    public boolean getStreamingEvaluation() {
+        return m_streamingEvaluation;
+    }
+
+    /**
+     * @param streamingEvaluation the streamingEvaluation to set
+     */
+    public void setStreamingEvaluation(final boolean streamingEvaluation) {
+        m_streamingEvaluation = streamingEvaluation;
+    }
+
+    /**
+     * @return the compactDocument
+     */
+    public boolean getCompactDocument() {
+        return m_compactDocument;
+    }
+
+    /**
+     * @param compactDocument the compactDocument to set
+     */
+    public void setCompactDocument(final boolean compactDocument) {
+        m_compactDocument = compactDocument;
+    }
+
+    /**
+     * @return the queryStatistics
+     */
+    public boolean getQueryStatistics() {
+        return m_queryStatistics;
+    }
+
+    /**
+     * @param queryStatistics the queryStatistics to set
+     */
+    public void setQueryStatistics(final boolean queryStatistics) {
+        m_queryStatistics = queryStatistics;
+    }
+
+    /**
+     * @return the namespaceSampleSize
+     */
+    public int getNamespaceSampleSize() {
+        return m_namespaceSampleSize;
+    }
+
+    /**
+     * @param namespaceSampleSize the namespaceSampleSize to set
+     */
+    public void setNamespaceSampleSize(final int namespaceSampleSize) {
+        m_namespaceSampleSize = namespaceSampleSize;
+    }
+
     /**
      * Called from dialog when settings are to be loaded.
      *
@@ -319,6 +417,10 @@ void loadSettingsDialog(final NodeSettingsRO settings, final DataTableSpec inSpe
         m_namespaces = settings.getStringArray(NAMESPACES, new String[0]);
         m_useRootsNS = settings.getBoolean(USE_ROOTS_NS, true);
         m_rootsNSPrefix = settings.getString(ROOTS_NS_PREFIX, "dns");
+        m_streamingEvaluation = settings.getBoolean(STREAMING_EVALUATION, false);
+        m_compactDocument = settings.getBoolean(COMPACT_DOCUMENT, false);
+        m_queryStatistics = settings.getBoolean(QUERY_STATISTICS, false);
+        m_namespaceSampleSize = settings.getInt(NAMESPACE_SAMPLE_SIZE, DEFAULT_NAMESPACE_SAMPLE_SIZE);
         m_numberOfQueries = settings.getInt(NUMBER_OF_QUERIES, 1);
         m_xpathQueryList = new ArrayList<XPathSettings>(m_numberOfQueries);
         for (int i = 0; i < m_numberOfQueries; i++) {
@@ -344,6 +446,11 @@ void loadSettingsModel(final NodeSettingsRO settings) throws InvalidSettingsExce
         if (m_useRootsNS && (m_rootsNSPrefix == null || m_rootsNSPrefix.trim().isEmpty())) {
             throw new InvalidSettingsException("The prefix of root's default namespace is not set.");
         }
+        // added in 5.9
+        m_streamingEvaluation = settings.getBoolean(STREAMING_EVALUATION, false);
+        m_compactDocument = settings.getBoolean(COMPACT_DOCUMENT, false);
+        m_queryStatistics = settings.getBoolean(QUERY_STATISTICS, false);
+        m_namespaceSampleSize = settings.getInt(NAMESPACE_SAMPLE_SIZE, DEFAULT_NAMESPACE_SAMPLE_SIZE);
         m_numberOfQueries = settings.getInt(NUMBER_OF_QUERIES);
         m_xpathQueryList = new ArrayList<XPathSettings>(m_numberOfQueries);
         for (int i = 0; i < m_numberOfQueries; i++) {
@@ -365,6 +472,10 @@ void saveSettings(final NodeSettingsWO settings) {
         settings.addStringArray(NAMESPACES, m_namespaces);
         settings.addBoolean(USE_ROOTS_NS, m_useRootsNS);
         settings.addString(ROOTS_NS_PREFIX, m_rootsNSPrefix);
+        settings.addBoolean(STREAMING_EVALUATION, m_streamingEvaluation);
+        settings.addBoolean(COMPACT_DOCUMENT, m_compactDocument);
+        settings.addBoolean(QUERY_STATISTICS, m_queryStatistics);
+        settings.addInt(NAMESPACE_SAMPLE_SIZE, m_namespaceSampleSize);
         settings.addInt(NUMBER_OF_QUERIES, m_numberOfQueries);
         for (int i = 0; i < m_xpathQueryList.size(); i++) {
             m_xpathQueryList.get(i).saveSettings(settings, i);
@@ -397,6 +508,42 @@ public static String uniqueName(final String name, final String suffix, final in
      */
     public XPathExpression createXPathExpr(final XMLValue<Document> xmlValue, final String query)
             throws InvalidSettingsException {
+        if (xmlValue == null) {
+            return createXPathExprWithRootNS(null, query);
+        }
+        try (LockedSupplier<Document> supplier = xmlValue.getDocumentSupplier()) {
+            return createXPathExprWithRootNS(getRootNSUri(supplier.get()), query);
+        }
+    }
+
+    /**
+     * @param doc the document
+     * @return the namespace URI of the document's root element
+     * @throws InvalidSettingsException thrown if the root element does not have a namespace URI
+     */
+    public static String getRootNSUri(final Document doc) throws InvalidSettingsException {
+        Node root = doc.getFirstChild();
+        while (root.getNodeType() != Node.ELEMENT_NODE) {
+            root = root.getNextSibling();
+        }
+        String rootNSUri = root.getNamespaceURI();
+        if (rootNSUri == null) {
+            throw new InvalidSettingsException("The root node does not have a namesapce URI.");
+        }
+        return rootNSUri;
+    }
+
+    /**
+     * Compiles the query with the roots namespace bound to the roots namespace prefix.
+     *
+     * @param rootNSUri the namespace URI of the root element, if <code>null</code> a made up namespace is used which
+     *            is only useful to check if the query compiles
+     * @param query xpath query
+     * @return xpath expression
+     * @throws InvalidSettingsException thrown if xpath expression is invalid
+     */
+    public XPathExpression createXPathExprWithRootNS(final String rootNSUri, final String query)
+            throws InvalidSettingsException {
         List<String> nsPrefixes = new ArrayList<String>();
         nsPrefixes.addAll(Arrays.asList(getNsPrefixes()));
         if (nsPrefixes.contains(getRootsNSPrefix())) {
@@ -406,7 +553,7 @@ public XPathExpression createXPathExpr(final XMLValue<Document> xmlValue, final
         nsPrefixes.add(getRootsNSPrefix());
         List<String> namespaces = new ArrayList<String>();
         namespaces.addAll(Arrays.asList(getNamespaces()));
-        if (xmlValue == null) {
+        if (rootNSUri == null) {
             String nsTemplate = "roots_ns_";
             int counter = 0;
             String ns = nsTemplate + counter;
@@ -416,26 +563,12 @@ public XPathExpression createXPathExpr(final XMLValue<Document> xmlValue, final
             }
             namespaces.add(ns);
         } else {
-            try (LockedSupplier<Document> supplier = xmlValue.getDocumentSupplier()) {
-                Node root = supplier.get().getFirstChild();
-                while (root.getNodeType() != Node.ELEMENT_NODE) {
-                    root = root.getNextSibling();
-                }
-                String rootNSUri = root.getNamespaceURI();
-                if (rootNSUri != null) {
-                    namespaces.add(rootNSUri);
-                } else {
-                    throw new InvalidSettingsException("The root node does not have a namesapce URI.");
-                }
-            }
+            namespaces.add(rootNSUri);
         }
 
-        XPathFactory factory = XPathFactory.newInstance();
-        XPath xpath = factory.newXPath();
-        xpath.setNamespaceContext(new XPathNamespaceContext(nsPrefixes.toArray(new String[nsPrefixes.size()]),
-            namespaces.toArray(new String[namespaces.size()])));
         try {
-            return xpath.compile(query);
+            return XPathExpressionCache.compile(query, nsPrefixes.toArray(new String[nsPrefixes.size()]),
+                namespaces.toArray(new String[namespaces.size()]));
         } catch (XPathExpressionException e) {
             throw new InvalidSettingsException("XPath query cannot be parsed.", e);
         }
@@ -448,11 +581,8 @@ public XPathExpression createXPathExpr(final XMLValue<Document> xmlValue, final
      *
      */
     public XPathExpression initXPathExpression(final String query) throws InvalidSettingsException {
-        XPathFactory factory = XPathFactory.newInstance();
-        XPath xpath = factory.newXPath();
-        xpath.setNamespaceContext(new XPathNamespaceContext(getNsPrefixes(), getNamespaces()));
         try {
-            XPathExpression xpathExpr = xpath.compile(query);
+            XPathExpression xpathExpr = XPathExpressionCache.compile(query, getNsPrefixes(), getNamespaces());
 
             if (getUseRootsNS()
                 && Arrays.binarySearch(getNsPrefixes(), getRootsNSPrefix()) >= 0) {
@@ -464,7 +594,7 @@ public XPathExpression initXPathExpression(final String query) throws InvalidSet
         } catch (XPathExpressionException e) {
             if (getUseRootsNS()) {
                 // try to compile it with roots default prefix
-                createXPathExpr(null, query);
+                createXPathExprWithRootNS(null, query);
                 // the xpath compiles with the roots default prefix
                 return null;
             } else {
@@ -51,6 +51,9 @@
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.knime.core.data.DataTableSpec;
 import org.knime.core.data.DataType;
@@ -121,7 +124,11 @@ public class XPathSettings {
 
     private int m_currentColumnIndex = 0;
 
-    private List<String> m_colNameMap = new ArrayList<String>();
+    /** Column names found during execution, filled concurrently by the cell factories. */
+    private final Set<String> m_colNames = ConcurrentHashMap.newKeySet();
+
+    /** The column name of a single cell query, the first name found during execution. */
+    private final AtomicReference<String> m_singleColName = new AtomicReference<>();
 
 
     /**
@@ -406,7 +413,8 @@ void loadSettingsModel(final NodeSettingsRO settings, final int index) throws In
             throw new InvalidSettingsException("No multi tag option defined.");
         }
 
-        m_colNameMap =  new ArrayList<String>();
+        m_colNames.clear();
+        m_singleColName.set(null);
     }
 
     /**
@@ -475,10 +483,12 @@ public String getAttributeForColName() {
     /**
      * @param colNames a column name
      */
-    public synchronized void addMultiColName(final List<StringCell> colNames) {
+    public void addMultiColName(final List<StringCell> colNames) {
         for (StringCell colName : colNames) {
-            if (!m_colNameMap.contains(colName.getStringValue())) {
-                m_colNameMap.add(colName.getStringValue());
+            final String name = colName.getStringValue();
+            // the names are usually known already, avoid the write in that case
+            if (!m_colNames.contains(name)) {
+                m_colNames.add(name);
             }
         }
     }
@@ -487,21 +497,22 @@ public synchronized void addMultiColName(final List<StringCell> colNames) {
      * @param string a column name
      * @return false if more than one column name should be inserted
      */
-    public synchronized boolean addSingleColname(final String string) {
-        if (m_colNameMap.isEmpty()) {
-            m_colNameMap.add(string);
-            return true;
-        } else {
-            return m_colNameMap.contains(string);
-        }
+    public boolean addSingleColname(final String string) {
+        m_singleColName.compareAndSet(null, string);
+        return string.equals(m_singleColName.get());
     }
 
     /**
      * @return column names list (sorted)
      */
-    public synchronized List<String> getColumnNames() {
-        Collections.sort(m_colNameMap);
-        return m_colNameMap;
+    public List<String> getColumnNames() {
+        List<String> colNames = new ArrayList<String>(m_colNames);
+        final String singleColName = m_singleColName.get();
+        if (singleColName != null) {
+            colNames.add(singleColName);
+        }
+        Collections.sort(colNames);
+        return colNames;
     }
 
     /**
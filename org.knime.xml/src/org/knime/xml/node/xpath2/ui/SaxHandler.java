@@ -110,6 +110,10 @@ public void setDocumentLocator(final Locator locator) {
     @Override
     public void startElement(final String uri, final String localName, final String qName, final Attributes attributes)
         throws SAXException {
+        if (Thread.currentThread().isInterrupted()) {
+            // the preview is not needed anymore
+            throw new StopParsingException();
+        }
         String localQNmae = qName;
         List<String> attr = new ArrayList<String>();
 
@@ -0,0 +1,256 @@
+/*
+ * ------------------------------------------------------------------------
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.xpath2.ui;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.knime.core.data.util.LockedSupplier;
+import org.knime.core.data.xml.XMLValue;
+import org.knime.core.node.NodeLogger;
+import org.knime.core.util.xml.NoExternalEntityResolver;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+
+/**
+ * Preview of a XML cell in the XPath dialog. Only a bounded prefix of the XML is shown and parsed into the XML
+ * hierarchy tree, such that large cells neither freeze the dialog nor exhaust the memory.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+public final class XMLPreview {
+
+    private static final NodeLogger LOGGER = NodeLogger.getLogger(XMLPreview.class);
+
+    /**
+     * Maximum number of lines of the preview.
+     */
+    public static final int MAX_LINES = 2000;
+
+    /**
+     * Maximum number of characters of the preview, which also bounds documents without line breaks.
+     */
+    public static final int MAX_CHARS = 1 << 20;
+
+    private final String m_text;
+
+    private final XMLTreeNode m_root;
+
+    private final String[] m_keys;
+
+    private final String[] m_values;
+
+    private XMLPreview(final String text, final XMLTreeNode root, final String[] keys, final String[] values) {
+        m_text = text;
+        m_root = root;
+        m_keys = keys;
+        m_values = values;
+    }
+
+    /**
+     * Creates the preview of the XML value and its hierarchy tree. The document is serialized only up to the limits
+     * of the preview. If the preview is not a complete document, the tree contains the elements up to the end of the
+     * preview. Parsing stops if the current thread is interrupted.
+     *
+     * @param xmlValue the XML value
+     * @return the preview
+     * @throws ParserConfigurationException if the SAX parser cannot be created
+     * @throws SAXException if the preview cannot be parsed
+     * @throws IOException if the preview cannot be read
+     * @throws TransformerException if the document cannot be serialized
+     */
+    public static XMLPreview create(final XMLValue<Document> xmlValue) throws ParserConfigurationException,
+        SAXException, IOException, TransformerException {
+        final PreviewWriter writer = new PreviewWriter();
+        try (LockedSupplier<Document> supplier = xmlValue.getDocumentSupplier()) {
+            final Transformer transformer = TransformerFactory.newInstance().newTransformer();
+            transformer.transform(new DOMSource(supplier.get()), new StreamResult(writer));
+        } catch (TransformerException e) {
+            // the writer stops the serialization once the preview is complete
+            if (!writer.isFull()) {
+                throw e;
+            }
+        }
+        final String text = writer.getText();
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setValidating(true);
+        SAXParser saxParser = factory.newSAXParser();
+        XMLTreeNode root = new XMLTreeNode("", "root");
+
+        SaxHandler handler = new SaxHandler(root, true);
+        XMLReader reader = saxParser.getXMLReader();
+        reader.setContentHandler(handler);
+        reader.setErrorHandler(handler);
+        // set no-op entity resolver to ignore any 'DOCTYPE' declarations in the xml string
+        reader.setEntityResolver(NoExternalEntityResolver.getInstance());
+        try {
+            reader.parse(new InputSource(new StringReader(text)));
+        } catch (SAXParseException | StopParsingException e) {
+            LOGGER.debug("A SAXException occured while parsing the preview.", e);
+        }
+        return new XMLPreview(text, root, handler.getKeys(), handler.getValues());
+    }
+
+    private static boolean isLineBreak(final char c) {
+        return c == '\n' || c == '\r';
+    }
+
+    /**
+     * Keeps the first {@link #MAX_LINES} non-empty lines of the written XML, but at most {@link #MAX_CHARS}
+     * characters. Lines are separated by <code>\n</code>, <code>\r</code> or <code>\r\n</code> in the XML and by
+     * <code>\n</code> in the preview. Writing beyond these limits fails, which stops the serialization.
+     */
+    private static final class PreviewWriter extends Writer {
+
+        private final StringBuilder m_buf = new StringBuilder();
+
+        private int m_lines = 0;
+
+        /** <code>true</code> if characters of the current line were kept. */
+        private boolean m_inLine = false;
+
+        private boolean m_full = false;
+
+        @Override
+        public void write(final char[] cbuf, final int off, final int len) throws IOException {
+            for (int i = off; i < off + len; i++) {
+                write(cbuf[i]);
+            }
+        }
+
+        private void write(final char c) throws IOException {
+            if (m_full) {
+                throw new IOException("The preview is complete.");
+            }
+            if (isLineBreak(c)) {
+                if (m_inLine) {
+                    m_buf.append('\n');
+                    m_lines++;
+                    m_inLine = false;
+                }
+                return;
+            }
+            if (!m_inLine && m_lines == MAX_LINES - 1) {
+                m_buf.append("Only the first " + MAX_LINES + " lines of the \ninput xml are set as preview.\n");
+                m_full = true;
+            } else if (m_buf.length() >= MAX_CHARS) {
+                if (m_inLine) {
+                    m_buf.append('\n');
+                }
+                m_buf.append("Only the first " + MAX_CHARS + " characters of the \ninput xml are set as preview.\n");
+                m_full = true;
+            } else {
+                m_buf.append(c);
+                m_inLine = true;
+                return;
+            }
+            throw new IOException("The preview is complete.");
+        }
+
+        boolean isFull() {
+            return m_full;
+        }
+
+        String getText() {
+            if (m_inLine) {
+                m_buf.append('\n');
+                m_inLine = false;
+            }
+            return m_buf.toString();
+        }
+
+        @Override
+        public void flush() {
+            // nothing to flush
+        }
+
+        @Override
+        public void close() {
+            // nothing to close
+        }
+    }
+
+    /**
+     * @return the text of the preview
+     */
+    public String getText() {
+        return m_text;
+    }
+
+    /**
+     * @return the root of the XML hierarchy tree of the preview
+     */
+    public XMLTreeNode getRoot() {
+        return m_root;
+    }
+
+    /**
+     * @return the prefixes of the namespaces in the preview
+     */
+    public String[] getKeys() {
+        return m_keys;
+    }
+
+    /**
+     * @return the namespace URIs in the preview
+     */
+    public String[] getValues() {
+        return m_values;
+    }
+}
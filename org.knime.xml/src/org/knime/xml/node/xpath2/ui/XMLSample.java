@@ -0,0 +1,240 @@
+/*
+ * ------------------------------------------------------------------------
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.xpath2.ui;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.container.CloseableRowIterator;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.KNIMEConstants;
+import org.knime.core.node.NodeLogger;
+import org.knime.core.util.ThreadPool;
+import org.knime.core.util.ThreadUtils;
+import org.knime.core.util.xml.NoExternalEntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+/**
+ * Namespaces and element structure of the XML cells of the first rows of a table. The cells are parsed in parallel
+ * on the {@link KNIMEConstants#GLOBAL_THREAD_POOL global thread pool} with a SAX parser, no document object model is
+ * created. The structures of all cells are merged into a single tree
+ * which counts in how many documents an element occurs.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+public final class XMLSample {
+
+    private static final NodeLogger LOGGER = NodeLogger.getLogger(XMLSample.class);
+
+    private final XMLStructureNode m_root = new XMLStructureNode("", "", 0);
+
+    /**
+     * Namespace URIs mapped to their prefixes, in the order they were found.
+     */
+    private final Map<String, String> m_prefixes = new LinkedHashMap<String, String>();
+
+    private XMLSample(final String[] prefixes, final String[] uris) {
+        for (int i = 0; i < prefixes.length; i++) {
+            m_prefixes.putIfAbsent(uris[i], prefixes[i]);
+        }
+    }
+
+    /**
+     * Scans the XML cells of the first rows of the table. Namespaces which are not among the given ones get the
+     * prefix used in the document or, for default namespaces, a prefix like <code>dns</code>. Prefixes are made
+     * unique by appending a number.
+     *
+     * @param table the input table
+     * @param column index of the XML column
+     * @param maxRows the number of rows to scan
+     * @param prefixes prefixes of the already known namespaces, e.g. the ones of the preview
+     * @param uris URIs of the already known namespaces
+     * @return the sample
+     * @throws InterruptedException if the current thread is interrupted
+     * @throws ExecutionException if a cell cannot be parsed for other reasons than invalid XML
+     */
+    public static XMLSample create(final BufferedDataTable table, final int column, final int maxRows,
+        final String[] prefixes, final String[] uris) throws InterruptedException, ExecutionException {
+        final XMLSample sample = new XMLSample(prefixes, uris);
+        final int threads = Math.max(1, Math.min(maxRows, Runtime.getRuntime().availableProcessors()));
+        final ThreadPool pool = KNIMEConstants.GLOBAL_THREAD_POOL.createSubPool(threads);
+        // the results are merged in the order of the rows, such that the prefixes do not depend on the scheduling
+        final Deque<Future<XMLStructureHandler>> pending = new ArrayDeque<Future<XMLStructureHandler>>();
+        try (CloseableRowIterator it = table.iterator()) {
+            for (int r = 0; r < maxRows && it.hasNext(); r++) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException();
+                }
+                final DataCell cell = it.next().getCell(column);
+                if (cell.isMissing()) {
+                    continue;
+                }
+                pending.add(pool.enqueue(ThreadUtils.callableWithContext(() -> parse(cell))));
+                // bounds the number of cells held by the pending tasks
+                if (pending.size() >= 2 * threads) {
+                    sample.add(pending.poll().get());
+                }
+            }
+            while (!pending.isEmpty()) {
+                sample.add(pending.poll().get());
+            }
+        } finally {
+            // only left if scanning failed or was interrupted
+            for (Future<XMLStructureHandler> f : pending) {
+                f.cancel(true);
+            }
+        }
+        return sample;
+    }
+
+    private static XMLStructureHandler parse(final DataCell cell)
+        throws ParserConfigurationException, SAXException, IOException {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        XMLReader reader = factory.newSAXParser().getXMLReader();
+        XMLStructureHandler handler = new XMLStructureHandler();
+        reader.setContentHandler(handler);
+        // set no-op entity resolver to ignore any 'DOCTYPE' declarations in the xml string
+        reader.setEntityResolver(NoExternalEntityResolver.getInstance());
+        try {
+            reader.parse(new InputSource(new StringReader(cell.toString())));
+        } catch (StopParsingException e) {
+            throw e;
+        } catch (SAXException e) {
+            // the structure up to the error is kept
+            LOGGER.debug("A SAXException occured while scanning the namespaces.", e);
+        }
+        return handler;
+    }
+
+    private void add(final XMLStructureHandler handler) {
+        m_root.merge(handler.getRoot());
+        for (Map.Entry<String, String> e : handler.getNamespaces().entrySet()) {
+            if (!m_prefixes.containsKey(e.getKey())) {
+                final String prefix = e.getValue().isEmpty() ? "dns" : e.getValue();
+                String unique = prefix;
+                int i = 0;
+                while (m_prefixes.containsValue(unique)) {
+                    unique = prefix + i++;
+                }
+                m_prefixes.put(e.getKey(), unique);
+            }
+        }
+    }
+
+    /**
+     * @return the number of scanned documents
+     */
+    public int getNumDocuments() {
+        return m_root.getOccurrences();
+    }
+
+    /**
+     * @return the root of the merged structure, its children are the document elements
+     */
+    public XMLStructureNode getRoot() {
+        return m_root;
+    }
+
+    /**
+     * @return the prefixes of the namespaces
+     */
+    public String[] getKeys() {
+        return m_prefixes.values().toArray(new String[m_prefixes.size()]);
+    }
+
+    /**
+     * @return the namespace URIs
+     */
+    public String[] getValues() {
+        return m_prefixes.keySet().toArray(new String[m_prefixes.size()]);
+    }
+
+    /**
+     * Looks up an absolute path of the XML hierarchy tree, such as <code>/dns:root/dns:item[2]/@id</code>, in the
+     * merged structure. Positions are ignored and attributes are counted like their element.
+     *
+     * @param path the path using the prefixes of this sample
+     * @return the number of scanned documents containing the path, -1 if the path uses an unknown prefix
+     */
+    public int getOccurrences(final String path) {
+        final Map<String, String> uris = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, String> e : m_prefixes.entrySet()) {
+            uris.put(e.getValue(), e.getKey());
+        }
+        XMLStructureNode node = m_root;
+        for (String step : path.split("/")) {
+            if (step.isEmpty()) {
+                continue;
+            } else if (step.startsWith("@")) {
+                break;
+            }
+            final int bracket = step.indexOf('[');
+            final String name = bracket < 0 ? step : step.substring(0, bracket);
+            final int colon = name.indexOf(':');
+            final String uri = colon < 0 ? "" : uris.get(name.substring(0, colon));
+            if (uri == null) {
+                return -1;
+            }
+            node = node.getChild(uri, name.substring(colon + 1));
+            if (node == null) {
+                return 0;
+            }
+        }
+        return node.getOccurrences();
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * ------------------------------------------------------------------------
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.xpath2.ui;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * SAX handler collecting the element structure and the namespaces of the elements of a single document. Repeated
+ * elements are collected only once, hence the memory needed is bounded by the size of the structure and not by the
+ * size of the document.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class XMLStructureHandler extends DefaultHandler {
+
+    private final XMLStructureNode m_root = new XMLStructureNode("", "", 1);
+
+    /**
+     * Namespace URIs of the elements mapped to the prefix used in the document, empty for the default namespace.
+     */
+    private final Map<String, String> m_namespaces = new LinkedHashMap<String, String>();
+
+    private XMLStructureNode[] m_stack = new XMLStructureNode[16];
+
+    private int m_depth = 0;
+
+    XMLStructureHandler() {
+        m_stack[0] = m_root;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void startElement(final String uri, final String localName, final String qName, final Attributes attributes)
+        throws SAXException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new StopParsingException();
+        }
+        if (!uri.isEmpty() && !m_namespaces.containsKey(uri)) {
+            final int colon = qName.indexOf(':');
+            m_namespaces.put(uri, colon < 0 ? "" : qName.substring(0, colon));
+        }
+        final XMLStructureNode child = m_stack[m_depth].getOrAddChild(uri, localName);
+        if (++m_depth == m_stack.length) {
+            XMLStructureNode[] stack = new XMLStructureNode[m_stack.length * 2];
+            System.arraycopy(m_stack, 0, stack, 0, m_stack.length);
+            m_stack = stack;
+        }
+        m_stack[m_depth] = child;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+        m_depth--;
+    }
+
+    /**
+     * @return the root of the structure, its children are the document elements
+     */
+    XMLStructureNode getRoot() {
+        return m_root;
+    }
+
+    /**
+     * @return the namespace URIs of the elements mapped to the prefix used in the document, empty for the default
+     *         namespace
+     */
+    Map<String, String> getNamespaces() {
+        return m_namespaces;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * ------------------------------------------------------------------------
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ------------------------------------------------------------------------
+ */
+package org.knime.xml.node.xpath2.ui;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Node of the merged element structure of several XML documents. Unlike {@link XMLTreeNode}, repeated elements share
+ * a single node and elements are identified by their namespace URI and local name, such that the structures of
+ * different documents can be merged.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+public final class XMLStructureNode {
+
+    private final String m_uri;
+
+    private final String m_localName;
+
+    private final Map<String, XMLStructureNode> m_children = new LinkedHashMap<String, XMLStructureNode>();
+
+    /**
+     * Number of documents containing this element.
+     */
+    private int m_occurrences;
+
+    /**
+     * @param uri namespace URI of the element, empty for no namespace
+     * @param localName local name of the element, empty for the document root
+     * @param occurrences number of documents containing the element
+     */
+    XMLStructureNode(final String uri, final String localName, final int occurrences) {
+        m_uri = uri;
+        m_localName = localName;
+        m_occurrences = occurrences;
+    }
+
+    private static String key(final String uri, final String localName) {
+        return uri.isEmpty() ? localName : "{" + uri + "}" + localName;
+    }
+
+    /**
+     * Returns the child element with the given name, a new child is added if there is none yet. The occurrences of a
+     * new child are 1, i.e. children are added while a single document is parsed.
+     *
+     * @param uri namespace URI of the child, empty for no namespace
+     * @param localName local name of the child
+     * @return the child
+     */
+    XMLStructureNode getOrAddChild(final String uri, final String localName) {
+        return m_children.computeIfAbsent(key(uri, localName), k -> new XMLStructureNode(uri, localName, 1));
+    }
+
+    /**
+     * Adds the occurrences of the other node and merges the children of the other node into the children of this
+     * node.
+     *
+     * @param other the node of another document at the same position in the structure
+     */
+    void merge(final XMLStructureNode other) {
+        m_occurrences += other.m_occurrences;
+        for (Map.Entry<String, XMLStructureNode> e : other.m_children.entrySet()) {
+            XMLStructureNode child = m_children.get(e.getKey());
+            if (child == null) {
+                m_children.put(e.getKey(), e.getValue());
+            } else {
+                child.merge(e.getValue());
+            }
+        }
+    }
+
+    /**
+     * @param uri namespace URI of the child, empty for no namespace
+     * @param localName local name of the child
+     * @return the child or <code>null</code> if there is no such child
+     */
+    public XMLStructureNode getChild(final String uri, final String localName) {
+        return m_children.get(key(uri, localName));
+    }
+
+    /**
+     * @return the child elements
+     */
+    public Collection<XMLStructureNode> getChildren() {
+        return m_children.values();
+    }
+
+    /**
+     * @return the namespace URI, empty for no namespace
+     */
+    public String getURI() {
+        return m_uri;
+    }
+
+    /**
+     * @return the local name
+     */
+    public String getLocalName() {
+        return m_localName;
+    }
+
+    /**
+     * @return the number of documents containing this element, or the number of documents for the document root
+     */
+    public int getOccurrences() {
+        return m_occurrences;
+    }
+}